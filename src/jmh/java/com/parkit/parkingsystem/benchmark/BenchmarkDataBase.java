@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Embedded in-memory H2 database (in MySQL mode) with the tables of {@code resources/Data.sql}
+ * and the migrations of {@code db/migration}, so the DAOs can be benchmarked without a MySQL server.
+ * Stored procedures are MySQL only and left out: the benchmarks don't use the {@code ParkingEntryDAO}.
+ */
+public class BenchmarkDataBase extends DataBaseConfig {
+
+    private static final String CREATE_PROCEDURE = "create procedure";
+
+    private final String name;
+
+    public BenchmarkDataBase(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected String getUrl() {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    /**
+     * Creates the tables, empty except for the given number of available spots of each type.
+     */
+    public void create(int carSpots, int bikeSpots) throws Exception {
+        Connection con = getConnection();
+        try (Statement statement = con.createStatement()) {
+            statement.execute("drop table if exists parking_rollup");
+            statement.execute("drop table if exists ticket");
+            statement.execute("drop table if exists parking");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME,"
+                    + " FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            for (SchemaMigrator.Migration migration : SchemaMigrator.getMigrations()) {
+                for (String sql : migration.getStatements()) {
+                    if (!sql.regionMatches(true, 0, CREATE_PROCEDURE, 0, CREATE_PROCEDURE.length())) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(?,true,?)")) {
+            for (int number = 1; number <= carSpots + bikeSpots; number++) {
+                ps.setInt(1, number);
+                ps.setString(2, number <= carSpots ? "CAR" : "BIKE");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } finally {
+            closeConnection(con);
+        }
+    }
+}
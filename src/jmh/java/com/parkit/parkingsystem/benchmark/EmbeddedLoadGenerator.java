@@ -0,0 +1,28 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.service.LoadGenerator;
+
+/**
+ * Runs the {@link LoadGenerator} against an embedded database instead of MySQL, to compare builds
+ * without a database server.
+ */
+public class EmbeddedLoadGenerator {
+
+    public static final int CAR_SPOTS = 500;
+    public static final int BIKE_SPOTS = 200;
+
+    /**
+     * @param args the {@link LoadGenerator.Profile#parse(String...) profile} arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator.Profile profile = LoadGenerator.Profile.parse(args);
+        BenchmarkDataBase dataBase = new BenchmarkDataBase("load-generator");
+        dataBase.create(CAR_SPOTS, BIKE_SPOTS);
+        try {
+            System.out.println(LoadGenerator.run(dataBase, profile));
+        } finally {
+            DataBaseConfig.closePools();
+        }
+    }
+}
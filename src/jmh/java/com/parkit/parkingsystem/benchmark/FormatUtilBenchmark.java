@@ -0,0 +1,40 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.util.FormatUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rounding of prices to cents.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatUtilBenchmark {
+
+    @Param({ "0", "1.425", "3.5625", "1234.5678" })
+    public double price;
+
+    @Benchmark
+    public double roundToTwoDecimals() {
+        return FormatUtil.roundToTwoDecimals(price);
+    }
+
+    @Benchmark
+    public long toCents() {
+        return FormatUtil.toCents(price);
+    }
+}
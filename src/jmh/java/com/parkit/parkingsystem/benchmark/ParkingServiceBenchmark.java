@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.InMemoryParkingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full entry then exit of a vehicle through {@link ParkingService}, against an embedded database or the
+ * {@link InMemoryParkingStore}. Each cycle uses a new vehicle, so every entry is a first visit.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkingServiceBenchmark {
+
+    private final AtomicLong vehicles = new AtomicLong();
+
+    @Param({ "jdbc", "memory" })
+    public String store;
+
+    private BenchmarkDataBase dataBase;
+    private TicketDAO ticketDAO;
+    private ParkingService parkingService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("memory".equals(store)) {
+            Map<ParkingType, Integer> spots = new EnumMap<>(ParkingType.class);
+            spots.put(ParkingType.CAR, 100);
+            spots.put(ParkingType.BIKE, 100);
+            InMemoryParkingStore memoryStore = InMemoryParkingStore.withSpots(spots);
+            parkingService = new ParkingService(memoryStore, memoryStore);
+            return;
+        }
+        dataBase = new BenchmarkDataBase("parking-service-benchmark");
+        dataBase.create(100, 100);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBase;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBase;
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (ticketDAO != null) {
+            ticketDAO.close();
+        }
+    }
+
+    @Benchmark
+    public ExitResult entryExitCycle() {
+        String vehicleRegNumber = "C" + vehicles.incrementAndGet();
+        EntryResult entry = parkingService.enter(ParkingType.CAR, vehicleRegNumber);
+        if (!entry.isEntered()) {
+            throw new IllegalStateException("Entry refused: " + entry.getStatus());
+        }
+        return parkingService.exit(vehicleRegNumber);
+    }
+}
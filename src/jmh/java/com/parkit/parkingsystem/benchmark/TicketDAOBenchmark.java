@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ticket lookups of the entry and exit paths, against an embedded database holding
+ * {@link #VEHICLES} parked vehicles, each with a history of past visits.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketDAOBenchmark {
+
+    public static final int VEHICLES = 1_000;
+    public static final int PAST_VISITS = 5;
+
+    private BenchmarkDataBase dataBase;
+    private TicketDAO ticketDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBase = new BenchmarkDataBase("ticket-dao-benchmark");
+        dataBase.create(VEHICLES, 0);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBase;
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBase;
+
+        for (int vehicle = 0; vehicle < VEHICLES; vehicle++) {
+            int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+            for (int visit = PAST_VISITS; visit >= 0; visit--) {
+                Calendar inTime = Calendar.getInstance();
+                inTime.add(Calendar.DAY_OF_MONTH, -visit);
+                Ticket ticket = new Ticket();
+                ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+                ticket.setVehicleRegNumber(vehicleRegNumber(vehicle));
+                ticket.setInTime(inTime);
+                if (visit > 0) {
+                    Calendar outTime = (Calendar) inTime.clone();
+                    outTime.add(Calendar.HOUR, 2);
+                    ticket.setOutTime(outTime);
+                }
+                ticketDAO.saveTicket(ticket);
+            }
+        }
+        ticketDAO.loadActiveTicketIndex();
+        ticketDAO.clearVisitCounters();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ticketDAO.close();
+    }
+
+    private static String vehicleRegNumber(int vehicle) {
+        return "BENCH" + vehicle;
+    }
+
+    private static String randomVehicle() {
+        return vehicleRegNumber(ThreadLocalRandom.current().nextInt(VEHICLES));
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket(randomVehicle());
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket(randomVehicle());
+    }
+
+    @Benchmark
+    public boolean isVehicleAlreadyInParking() {
+        return ticketDAO.isVehicleAlreadyInParking(randomVehicle());
+    }
+}
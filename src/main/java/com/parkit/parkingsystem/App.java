@@ -1,5 +1,7 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,6 +10,17 @@ public class App {
     private static final Logger logger = LogManager.getLogger("App");
     public static void main(String args[]){
         logger.info("Initializing Parking System");
+        if (InteractiveShell.usesMemoryStore()) {
+            InteractiveShell.loadInterface();
+            return;
+        }
+        try {
+            new SchemaMigrator(new DataBaseConfig()).migrate();
+        } catch (Exception e) {
+            logger.error("Unable to migrate the database schema", e);
+            System.out.println("Unable to prepare the database. Please check the logs.");
+            return;
+        }
         InteractiveShell.loadInterface();
     }
 }
@@ -0,0 +1,27 @@
+package com.parkit.parkingsystem.allocation;
+
+/**
+ * How a {@link SpotAllocator} chooses a free spot for a vehicle coming in at an entrance.
+ *
+ * <p>Spots are grouped by zone, a level or an area of the lot with its own entrance, and the entrances are
+ * numbered like the zones they lead to. A strategy gives the order in which the zones are searched and,
+ * within a zone, the rank of each free spot: the free spot of lowest rank is taken first.</p>
+ *
+ * @see StandardAllocationStrategy
+ */
+public interface AllocationStrategy {
+
+    /**
+     * @param entranceZone the zone of the entrance the vehicle comes in at.
+     * @param zoneCount    the number of zones of the lot.
+     * @param turn         a number incremented at each allocation, for strategies that take turns.
+     * @return the zones to search, first choice first; zones left out are not searched.
+     */
+    int[] zoneOrder(int entranceZone, int zoneCount, long turn);
+
+    /**
+     * @param freedAtMillis when the spot was last freed, or 0 if it has not been taken since the lot was loaded.
+     * @return the rank of a free spot within its zone; ties go to the lowest spot number.
+     */
+    long rank(int number, long freedAtMillis);
+}
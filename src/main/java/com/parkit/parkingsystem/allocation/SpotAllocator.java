@@ -0,0 +1,159 @@
+package com.parkit.parkingsystem.allocation;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses free spots of a {@link SpotAvailabilityIndex} with an {@link AllocationStrategy}.
+ *
+ * <p>The free spots of each parking type and zone are kept in a priority queue ordered by the rank the strategy
+ * gives them, each queue with its own lock: gates taking spots in different zones never wait for each other.
+ * Taking or freeing a spot is O(log n) in the number of spots of its zone.</p>
+ *
+ * <p>The index stays the record of which spot is free. A spot is queued each time the index marks it free,
+ * and the spot taken from a queue is claimed in the index with a compare-and-set; a queued spot that was
+ * taken in the meantime, by another path or because it was queued twice, is dropped.</p>
+ */
+public class SpotAllocator {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final SpotAvailabilityIndex spots;
+    private final AllocationStrategy strategy;
+    private final int zoneCount;
+    // by parking type, then zone
+    private final ZoneQueue[][] queues;
+    private final AtomicLong turns = new AtomicLong();
+
+    /**
+     * Queues the free spots of the index, and the spots it frees from now on.
+     */
+    public SpotAllocator(SpotAvailabilityIndex spots, AllocationStrategy strategy) {
+        this.spots = spots;
+        this.strategy = strategy;
+        this.zoneCount = spots.getZoneCount();
+        this.queues = new ZoneQueue[PARKING_TYPES.length][zoneCount];
+        for (ZoneQueue[] typeQueues : queues) {
+            for (int zone = 0; zone < zoneCount; zone++) {
+                typeQueues[zone] = new ZoneQueue();
+            }
+        }
+        // listen first: a spot freed during the scan is queued twice at worst
+        spots.setFreedSpotListener(this::spotFreed);
+        for (int number = 1; number <= spots.getMaxSpotNumber(); number++) {
+            if (spots.isAvailable(number)) {
+                queue(number, 0);
+            }
+        }
+    }
+
+    public SpotAvailabilityIndex getSpots() {
+        return spots;
+    }
+
+    public AllocationStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Takes a free spot of the given type for a vehicle coming in at an entrance. Concurrent callers never
+     * get the same spot.
+     *
+     * @param entrance the zone of the entrance; entrances out of the zones of the lot count as zone 0.
+     * @return the spot number, or 0 if no spot of the zones searched by the strategy is free.
+     */
+    public int claim(ParkingType parkingType, int entrance) {
+        int entranceZone = entrance >= 0 && entrance < zoneCount ? entrance : 0;
+        ZoneQueue[] typeQueues = queues[parkingType.ordinal()];
+        for (int zone : strategy.zoneOrder(entranceZone, zoneCount, turns.getAndIncrement())) {
+            ZoneQueue queue = typeQueues[zone];
+            int number;
+            while ((number = queue.poll()) != 0) {
+                if (spots.claim(number)) {
+                    return number;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void spotFreed(int number) {
+        queue(number, System.currentTimeMillis());
+    }
+
+    private void queue(int number, long freedAtMillis) {
+        ParkingType parkingType = spots.getParkingType(number);
+        int zone = spots.getZone(number);
+        if (parkingType == null || zone >= zoneCount) {
+            return;
+        }
+        queues[parkingType.ordinal()][zone].add(strategy.rank(number, freedAtMillis), number);
+    }
+
+    /**
+     * Binary min-heap of spot numbers by rank, then number, in parallel primitive arrays.
+     */
+    private static final class ZoneQueue {
+        private long[] ranks = new long[16];
+        private int[] numbers = new int[16];
+        private int size;
+
+        private synchronized void add(long rank, int number) {
+            if (size == ranks.length) {
+                ranks = Arrays.copyOf(ranks, size * 2);
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(rank, number, ranks[parent], numbers[parent])) {
+                    break;
+                }
+                ranks[i] = ranks[parent];
+                numbers[i] = numbers[parent];
+                i = parent;
+            }
+            ranks[i] = rank;
+            numbers[i] = number;
+        }
+
+        /**
+         * @return the spot number of lowest rank, removed from the queue, or 0 if the queue is empty.
+         */
+        private synchronized int poll() {
+            if (size == 0) {
+                return 0;
+            }
+            int first = numbers[0];
+            size--;
+            long rank = ranks[size];
+            int number = numbers[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(ranks[child + 1], numbers[child + 1], ranks[child], numbers[child])) {
+                    child++;
+                }
+                if (!before(ranks[child], numbers[child], rank, number)) {
+                    break;
+                }
+                ranks[i] = ranks[child];
+                numbers[i] = numbers[child];
+                i = child;
+            }
+            ranks[i] = rank;
+            numbers[i] = number;
+            return first;
+        }
+
+        private static boolean before(long rank, int number, long otherRank, int otherNumber) {
+            return rank < otherRank || (rank == otherRank && number < otherNumber);
+        }
+    }
+}
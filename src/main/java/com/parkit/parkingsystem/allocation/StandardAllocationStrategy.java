@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.allocation;
+
+/**
+ * The allocation strategies chosen with {@code -Dparkit.allocation}. Spots of a zone are expected to be
+ * numbered from its entrance, so that the lowest number of a zone is the nearest to its entrance.
+ */
+public enum StandardAllocationStrategy implements AllocationStrategy {
+
+    /**
+     * Lowest zone first, then lowest spot number: the lowest free spot of the lot when zones follow the
+     * spot numbers.
+     */
+    LOWEST_NUMBER {
+        @Override
+        public int[] zoneOrder(int entranceZone, int zoneCount, long turn) {
+            return rotation(0, zoneCount);
+        }
+    },
+
+    /**
+     * The zone of the entrance first, then the zones next to it, nearest first; within a zone, the lowest
+     * spot number. Gates at different entrances take spots from different zones until theirs is full.
+     */
+    NEAREST_TO_ENTRANCE {
+        @Override
+        public int[] zoneOrder(int entranceZone, int zoneCount, long turn) {
+            return outwardFrom(entranceZone, zoneCount);
+        }
+    },
+
+    /**
+     * Each allocation starts from the zone after the one the previous allocation started from, to spread
+     * vehicles over the levels; within a zone, the lowest spot number.
+     */
+    ROUND_ROBIN {
+        @Override
+        public int[] zoneOrder(int entranceZone, int zoneCount, long turn) {
+            return rotation((int) Math.floorMod(turn, (long) zoneCount), zoneCount);
+        }
+    },
+
+    /**
+     * Zones searched as with {@link #NEAREST_TO_ENTRANCE}; within a zone, the spot freed the longest time ago,
+     * to spread the wear over the spots.
+     */
+    LEAST_RECENTLY_USED {
+        @Override
+        public int[] zoneOrder(int entranceZone, int zoneCount, long turn) {
+            return outwardFrom(entranceZone, zoneCount);
+        }
+
+        @Override
+        public long rank(int number, long freedAtMillis) {
+            return freedAtMillis;
+        }
+    };
+
+    @Override
+    public long rank(int number, long freedAtMillis) {
+        return number;
+    }
+
+    private static int[] rotation(int firstZone, int zoneCount) {
+        int[] zones = new int[zoneCount];
+        for (int i = 0; i < zoneCount; i++) {
+            zones[i] = (firstZone + i) % zoneCount;
+        }
+        return zones;
+    }
+
+    /**
+     * @return the zones by distance to {@code firstZone}, the lower one first at equal distance.
+     */
+    private static int[] outwardFrom(int firstZone, int zoneCount) {
+        int[] zones = new int[zoneCount];
+        zones[0] = firstZone;
+        int count = 1;
+        for (int distance = 1; count < zoneCount; distance++) {
+            if (firstZone - distance >= 0) {
+                zones[count++] = firstZone - distance;
+            }
+            if (firstZone + distance < zoneCount) {
+                zones[count++] = firstZone + distance;
+            }
+        }
+        return zones;
+    }
+}
@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the open tickets (tickets without {@code OUT_TIME}), keyed by vehicle registration number.
+ *
+ * <p>It answers "is this vehicle already parked?" and "which ticket does this vehicle exit with?"
+ * without a database round trip. Tickets are copied on the way in and out, so callers may modify the
+ * ticket they get without changing the index.</p>
+ */
+public class ActiveTicketIndex {
+
+    private final Map<String, Ticket> openTickets = new ConcurrentHashMap<>();
+
+    public boolean contains(String vehicleRegNumber) {
+        return openTickets.containsKey(vehicleRegNumber);
+    }
+
+    /**
+     * @return a copy of the open ticket of the vehicle, or null if the vehicle is not parked.
+     */
+    public Ticket get(String vehicleRegNumber) {
+        Ticket ticket = openTickets.get(vehicleRegNumber);
+        return ticket == null ? null : copyOf(ticket);
+    }
+
+    public void put(Ticket ticket) {
+        openTickets.put(ticket.getVehicleRegNumber(), copyOf(ticket));
+    }
+
+    /**
+     * Removes the open ticket of the vehicle, if it is the given ticket.
+     */
+    public void remove(Ticket ticket) {
+        openTickets.computeIfPresent(ticket.getVehicleRegNumber(),
+                (vehicleRegNumber, openTicket) -> openTicket.getId() == ticket.getId() ? null : openTicket);
+    }
+
+    /**
+     * @return a copy of every open ticket.
+     */
+    public List<Ticket> getTickets() {
+        List<Ticket> tickets = new ArrayList<>(openTickets.size());
+        for (Ticket ticket : openTickets.values()) {
+            tickets.add(copyOf(ticket));
+        }
+        return tickets;
+    }
+
+    public int size() {
+        return openTickets.size();
+    }
+
+    private static Ticket copyOf(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        if (parkingSpot != null) {
+            copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        }
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTimeMillis(ticket.getInTimeMillis());
+        copy.setOutTimeMillis(ticket.getOutTimeMillis());
+        return copy;
+    }
+}
@@ -0,0 +1,197 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-memory indexes of the DAOs, written to a local file so that a restarted process starts from them
+ * rather than from full scans of the {@code parking} and {@code ticket} tables: spot availability, open
+ * tickets and visit counters, with the {@link HighWaterMark} of the tables when they were taken.
+ *
+ * <p>The file is a header followed by fixed-size spot entries, the open tickets and the visits per day of
+ * each vehicle, most recently used last. It is replaced atomically once written, and read back through a
+ * memory mapping.</p>
+ */
+public class CacheSnapshot {
+
+    private static final int SNAPSHOT_MAGIC = 0x504B4353;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int NO_SPOT = -1;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final HighWaterMark mark;
+    private final SpotAvailabilityIndex spots;
+    private final List<Ticket> openTickets;
+    private final long visitsDay;
+    private final Map<String, int[]> visits;
+
+    /**
+     * @param visits the visits per day of each vehicle, as exported by {@link VisitCounterCache#exportVisits(long)}
+     *               for {@code visitsDay}.
+     */
+    public CacheSnapshot(HighWaterMark mark, SpotAvailabilityIndex spots, List<Ticket> openTickets, long visitsDay,
+                         Map<String, int[]> visits) {
+        this.mark = mark;
+        this.spots = spots;
+        this.openTickets = openTickets;
+        this.visitsDay = visitsDay;
+        this.visits = visits;
+    }
+
+    public HighWaterMark getMark() {
+        return mark;
+    }
+
+    public SpotAvailabilityIndex getSpots() {
+        return spots;
+    }
+
+    public List<Ticket> getOpenTickets() {
+        return openTickets;
+    }
+
+    public long getVisitsDay() {
+        return visitsDay;
+    }
+
+    public Map<String, int[]> getVisits() {
+        return visits;
+    }
+
+    /**
+     * Writes the snapshot to the file, replacing it atomically once the new content is on disk.
+     */
+    public void write(Path path) throws IOException {
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(mark.getMaxTicketId());
+            out.writeLong(mark.getTimeMillis());
+            out.writeInt(spots.getMaxSpotNumber());
+            for (int number = 1; number <= spots.getMaxSpotNumber(); number++) {
+                ParkingType parkingType = spots.getParkingType(number);
+                out.writeByte(parkingType == null ? NO_SPOT : parkingType.ordinal());
+                out.writeInt(Math.max(spots.getZone(number), 0));
+                out.writeBoolean(spots.isAvailable(number));
+            }
+            out.writeInt(openTickets.size());
+            for (Ticket ticket : openTickets) {
+                out.writeInt(ticket.getId());
+                out.writeInt(ticket.getParkingSpot().getId());
+                out.writeByte(ticket.getParkingSpot().getParkingType().ordinal());
+                writeString(out, ticket.getVehicleRegNumber());
+                out.writeDouble(ticket.getPrice());
+                out.writeLong(ticket.getInTimeMillis());
+            }
+            out.writeLong(visitsDay);
+            out.writeInt(visits.size());
+            for (Map.Entry<String, int[]> entry : visits.entrySet()) {
+                writeString(out, entry.getKey());
+                int[] visitsPerDay = entry.getValue();
+                out.writeShort(visitsPerDay.length);
+                for (int dayVisits : visitsPerDay) {
+                    out.writeInt(dayVisits);
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}.
+     *
+     * @throws IOException if the file can't be read or is not a complete snapshot.
+     */
+    public static CacheSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a cache snapshot: " + path);
+            }
+            HighWaterMark mark = new HighWaterMark(in.getInt(), in.getLong());
+            int maxSpotNumber = in.getInt();
+            if (maxSpotNumber < 0) {
+                throw new IOException("Invalid spot count in " + path + ": " + maxSpotNumber);
+            }
+            SpotAvailabilityIndex spots = new SpotAvailabilityIndex(maxSpotNumber);
+            for (int number = 1; number <= maxSpotNumber; number++) {
+                int parkingType = in.get();
+                int zone = in.getInt();
+                boolean available = in.get() != 0;
+                if (parkingType != NO_SPOT) {
+                    spots.addSpot(number, parkingType(parkingType, path), zone, available);
+                }
+            }
+            int ticketCount = in.getInt();
+            List<Ticket> openTickets = new ArrayList<>(Math.max(ticketCount, 0));
+            for (int i = 0; i < ticketCount; i++) {
+                Ticket ticket = new Ticket();
+                ticket.setId(in.getInt());
+                int parkingNumber = in.getInt();
+                ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType(in.get(), path), false));
+                ticket.setVehicleRegNumber(readString(in));
+                ticket.setPrice(in.getDouble());
+                ticket.setInTimeMillis(in.getLong());
+                openTickets.add(ticket);
+            }
+            long visitsDay = in.getLong();
+            int vehicleCount = in.getInt();
+            Map<String, int[]> visits = new LinkedHashMap<>();
+            for (int i = 0; i < vehicleCount; i++) {
+                String vehicleRegNumber = readString(in);
+                int[] visitsPerDay = new int[in.getShort() & 0xFFFF];
+                for (int day = 0; day < visitsPerDay.length; day++) {
+                    visitsPerDay[day] = in.getInt();
+                }
+                visits.put(vehicleRegNumber, visitsPerDay);
+            }
+            return new CacheSnapshot(mark, spots, openTickets, visitsDay, visits);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt cache snapshot: " + path, e);
+        }
+    }
+
+    private static ParkingType parkingType(int ordinal, Path path) throws IOException {
+        if (ordinal < 0 || ordinal >= PARKING_TYPES.length) {
+            throw new IOException("Invalid parking type " + ordinal + " in " + path);
+        }
+        return PARKING_TYPES[ordinal];
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
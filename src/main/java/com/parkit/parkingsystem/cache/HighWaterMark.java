@@ -0,0 +1,29 @@
+package com.parkit.parkingsystem.cache;
+
+/**
+ * How far the {@code ticket} table was when a {@link CacheSnapshot} was taken: its highest ticket id and the
+ * database time, as read by the database.
+ */
+public class HighWaterMark {
+
+    private final int maxTicketId;
+    private final long timeMillis;
+
+    public HighWaterMark(int maxTicketId, long timeMillis) {
+        this.maxTicketId = maxTicketId;
+        this.timeMillis = timeMillis;
+    }
+
+    public int getMaxTicketId() {
+        return maxTicketId;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ticket " + maxTicketId + " at " + timeMillis;
+    }
+}
@@ -0,0 +1,203 @@
+package com.parkit.parkingsystem.cache;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory copy of the {@code AVAILABLE} column of the {@code parking} table.
+ *
+ * <p>Each {@link ParkingType} has its own bitset, packed 64 spots per {@code long}: bit {@code n}
+ * is set when spot number {@code n} is of that type and free. Finding the lowest free spot is a
+ * scan over the words with {@link Long#numberOfTrailingZeros(long)}, without any database round trip.</p>
+ *
+ * <p>The database stays the durable record: the index is loaded from it and the DAO updates it
+ * once the database accepted the change.</p>
+ *
+ * <p>Each spot also belongs to a zone, numbered from 0, which a
+ * {@link com.parkit.parkingsystem.allocation.SpotAllocator} uses to choose spots by entrance.</p>
+ */
+public class SpotAvailabilityIndex {
+
+    private final int maxSpotNumber;
+    private final ParkingType[] spotTypes;
+    private final int[] spotZones;
+    private final AtomicLongArray[] availableSpots;
+    private int zoneCount = 1;
+    private volatile IntConsumer freedSpotListener;
+
+    public SpotAvailabilityIndex(int maxSpotNumber) {
+        this.maxSpotNumber = maxSpotNumber;
+        this.spotTypes = new ParkingType[maxSpotNumber + 1];
+        this.spotZones = new int[maxSpotNumber + 1];
+        this.availableSpots = new AtomicLongArray[ParkingType.values().length];
+        int words = (maxSpotNumber >>> 6) + 1;
+        for (int i = 0; i < availableSpots.length; i++) {
+            availableSpots[i] = new AtomicLongArray(words);
+        }
+    }
+
+    /**
+     * Registers a spot read from the {@code parking} table.
+     */
+    public void addSpot(int number, ParkingType parkingType, boolean available) {
+        addSpot(number, parkingType, 0, available);
+    }
+
+    /**
+     * Registers a spot of a zone read from the {@code parking} table.
+     */
+    public void addSpot(int number, ParkingType parkingType, int zone, boolean available) {
+        checkNumber(number);
+        if (zone < 0) {
+            throw new IllegalArgumentException("Zone of parking number " + number + " out of range: " + zone);
+        }
+        spotTypes[number] = parkingType;
+        spotZones[number] = zone;
+        zoneCount = Math.max(zoneCount, zone + 1);
+        setAvailable(number, available);
+    }
+
+    public int getMaxSpotNumber() {
+        return maxSpotNumber;
+    }
+
+    /**
+     * @return the number of zones, one more than the highest zone of a spot.
+     */
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    /**
+     * @return the zone of the spot, or -1 if the spot is not part of the index.
+     */
+    public int getZone(int number) {
+        return contains(number) ? spotZones[number] : -1;
+    }
+
+    /**
+     * Sets what to call with the number of a spot each time it goes from taken to free.
+     */
+    public void setFreedSpotListener(IntConsumer freedSpotListener) {
+        this.freedSpotListener = freedSpotListener;
+    }
+
+    public boolean contains(int number) {
+        return number > 0 && number <= maxSpotNumber && spotTypes[number] != null;
+    }
+
+    public ParkingType getParkingType(int number) {
+        return contains(number) ? spotTypes[number] : null;
+    }
+
+    /**
+     * Marks a known spot as free or taken.
+     *
+     * @return false if the spot is not part of the index.
+     */
+    public boolean setAvailable(int number, boolean available) {
+        if (!contains(number)) {
+            return false;
+        }
+        AtomicLongArray words = availableSpots[spotTypes[number].ordinal()];
+        int wordIndex = number >>> 6;
+        long mask = 1L << number;
+        long word;
+        do {
+            word = words.get(wordIndex);
+        } while (!words.compareAndSet(wordIndex, word, available ? word | mask : word & ~mask));
+        IntConsumer listener = freedSpotListener;
+        if (available && (word & mask) == 0 && listener != null) {
+            listener.accept(number);
+        }
+        return true;
+    }
+
+    /**
+     * Atomically takes the given spot if it is free.
+     *
+     * @return false if the spot is taken or not part of the index.
+     */
+    public boolean claim(int number) {
+        if (!contains(number)) {
+            return false;
+        }
+        AtomicLongArray words = availableSpots[spotTypes[number].ordinal()];
+        int wordIndex = number >>> 6;
+        long mask = 1L << number;
+        long word;
+        do {
+            word = words.get(wordIndex);
+            if ((word & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIndex, word, word & ~mask));
+        return true;
+    }
+
+    public boolean isAvailable(int number) {
+        if (!contains(number)) {
+            return false;
+        }
+        return (availableSpots[spotTypes[number].ordinal()].get(number >>> 6) & (1L << number)) != 0;
+    }
+
+    /**
+     * @return the lowest free spot number of the given type, or 0 if every spot of that type is taken.
+     */
+    public int findFirstAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically takes the lowest free spot of the given type. Concurrent callers never get the
+     * same spot: the bit is cleared with a compare-and-set and the search restarts if another
+     * caller changed the word in between.
+     *
+     * @return the claimed spot number, or 0 if every spot of that type is taken.
+     */
+    public int claimFirstAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        int i = 0;
+        while (i < words.length()) {
+            long word = words.get(i);
+            if (word == 0) {
+                i++;
+                continue;
+            }
+            long lowestBit = word & -word;
+            if (words.compareAndSet(i, word, word & ~lowestBit)) {
+                return (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+            }
+            // lost the race on this word: read it again
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of free spots of the given type.
+     */
+    public int countAvailable(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    private void checkNumber(int number) {
+        if (number <= 0 || number > maxSpotNumber) {
+            throw new IllegalArgumentException("Parking number out of range: " + number);
+        }
+    }
+}
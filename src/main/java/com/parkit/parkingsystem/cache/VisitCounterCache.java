@@ -0,0 +1,293 @@
+package com.parkit.parkingsystem.cache;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps, for recently seen vehicles, how many times they entered the parking over the last days.
+ *
+ * <p>Each vehicle has a ring of daily buckets covering the window ({@link #WINDOW_DAYS} days back plus
+ * today). Buckets that fall out of the window are cleared lazily, the next time the vehicle is read or
+ * counted. The number of vehicles kept is bounded: the least recently used one is evicted first and will
+ * be loaded again from the database if it comes back.</p>
+ *
+ * <p>Vehicles are spread over stripes, each with its own lock and its own least recently used order, so
+ * gates counting different vehicles rarely wait for each other.</p>
+ *
+ * <p>A visit recorded for a vehicle that is not loaded yet is kept by its in-time until the vehicle is
+ * loaded, then counted unless the database already had it: a load racing with a save neither loses nor
+ * double counts the visit.</p>
+ *
+ * <p>Counting is done per calendar day: a visit made on the first day of the window counts for the whole
+ * day, where the SQL count used an exact {@code now - 30 days} cut-off.</p>
+ */
+public class VisitCounterCache {
+
+    public static final int WINDOW_DAYS = 30;
+
+    private static final int BUCKETS = WINDOW_DAYS + 1;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final int MAX_STRIPES = 64;
+    private static final int MIN_VEHICLES_PER_STRIPE = 1024;
+    // DATETIME columns keep whole seconds: an in-time read back is within a second of the one saved
+    private static final long SAME_VISIT_MILLIS = 1000;
+
+    private final Stripe[] stripes;
+
+    public VisitCounterCache(int maxVehicles) {
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, Integer.highestOneBit(maxVehicles / MIN_VEHICLES_PER_STRIPE)));
+        stripes = new Stripe[stripeCount];
+        int maxVehiclesPerStripe = (maxVehicles + stripeCount - 1) / stripeCount;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxVehiclesPerStripe);
+        }
+    }
+
+    private Stripe stripe(String vehicleRegNumber) {
+        int hash = vehicleRegNumber.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * @return the number of visits of the vehicle within the window ending on {@code today},
+     * or -1 if the vehicle is not loaded in the cache.
+     */
+    public int count(String vehicleRegNumber, long today) {
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            VisitRing ring = stripe.rings.get(vehicleRegNumber);
+            return ring == null || ring.unloadedVisits != null ? -1 : ring.count(today);
+        }
+    }
+
+    /**
+     * Loads the counters of a vehicle with the visits read from the database, adding the visits recorded
+     * since that the database didn't have. Does nothing if the vehicle has been loaded meanwhile.
+     *
+     * @param inTimesMillis the in-time of each visit.
+     */
+    public void load(String vehicleRegNumber, long today, List<Long> inTimesMillis) {
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            VisitRing ring = stripe.rings.get(vehicleRegNumber);
+            if (ring != null && ring.unloadedVisits == null) {
+                return;
+            }
+            VisitRing loadedRing = new VisitRing(today);
+            for (long inTimeMillis : inTimesMillis) {
+                loadedRing.add(epochDay(inTimeMillis));
+            }
+            if (ring != null) {
+                for (long inTimeMillis : ring.unloadedVisits) {
+                    if (!containsVisit(inTimesMillis, inTimeMillis)) {
+                        loadedRing.add(epochDay(inTimeMillis));
+                    }
+                }
+            }
+            stripe.rings.put(vehicleRegNumber, loadedRing);
+        }
+    }
+
+    private static boolean containsVisit(List<Long> inTimesMillis, long inTimeMillis) {
+        for (long loadedInTimeMillis : inTimesMillis) {
+            if (Math.abs(loadedInTimeMillis - inTimeMillis) < SAME_VISIT_MILLIS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts a new visit. For a vehicle not loaded yet, the visit is kept until it is.
+     */
+    public void recordVisit(String vehicleRegNumber, long inTimeMillis) {
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            VisitRing ring = stripe.rings.get(vehicleRegNumber);
+            if (ring == null) {
+                ring = new VisitRing(epochDay(inTimeMillis));
+                ring.unloadedVisits = new ArrayList<>(1);
+                stripe.rings.put(vehicleRegNumber, ring);
+            }
+            if (ring.unloadedVisits == null) {
+                ring.add(epochDay(inTimeMillis));
+            } else {
+                ring.unloadedVisits.add(inTimeMillis);
+            }
+        }
+    }
+
+    /**
+     * Cancels a visit counted with {@link #recordVisit(String, long)}, for a ticket that was not saved after all.
+     */
+    public void removeVisit(String vehicleRegNumber, long inTimeMillis) {
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            VisitRing ring = stripe.rings.get(vehicleRegNumber);
+            if (ring == null) {
+                return;
+            }
+            if (ring.unloadedVisits == null) {
+                ring.remove(epochDay(inTimeMillis));
+            } else {
+                ring.unloadedVisits.remove(Long.valueOf(inTimeMillis));
+            }
+        }
+    }
+
+    /**
+     * Forgets the counters of a vehicle, which will be loaded again from the database.
+     */
+    public void remove(String vehicleRegNumber) {
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            stripe.rings.remove(vehicleRegNumber);
+        }
+    }
+
+    /**
+     * @return for each loaded vehicle, least recently used first within its stripe, its visits on each day of
+     * the window ending on {@code today}, first day first.
+     */
+    public Map<String, int[]> exportVisits(long today) {
+        Map<String, int[]> visits = new LinkedHashMap<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                // iterating doesn't change the access order
+                for (Map.Entry<String, VisitRing> entry : stripe.rings.entrySet()) {
+                    if (entry.getValue().unloadedVisits == null) {
+                        visits.put(entry.getKey(), entry.getValue().visitsPerDay(today));
+                    }
+                }
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * Replaces the counters of a vehicle with visits exported by {@link #exportVisits(long)}.
+     */
+    public void importVisits(String vehicleRegNumber, long today, int[] visitsPerDay) {
+        VisitRing ring = new VisitRing(today);
+        long firstDay = firstDayOfWindow(today);
+        for (int i = 0; i < visitsPerDay.length && i < BUCKETS; i++) {
+            ring.visits[(int) Math.floorMod(firstDay + i, (long) BUCKETS)] = visitsPerDay[i];
+        }
+        Stripe stripe = stripe(vehicleRegNumber);
+        synchronized (stripe) {
+            stripe.rings.put(vehicleRegNumber, ring);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.rings.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.rings.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the day number (days since 1970-01-01) of the instant, in the system time zone.
+     */
+    public static long epochDay(long epochMillis) {
+        long offsetMillis = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(epochMillis + offsetMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * @return the first day counted in a window ending on {@code today}.
+     */
+    public static long firstDayOfWindow(long today) {
+        return today - WINDOW_DAYS;
+    }
+
+    /**
+     * Vehicles of one stripe, least recently used first; guarded by the stripe itself.
+     */
+    private static final class Stripe {
+        private final Map<String, VisitRing> rings;
+
+        private Stripe(int maxVehicles) {
+            this.rings = new LinkedHashMap<String, VisitRing>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, VisitRing> eldest) {
+                    return size() > maxVehicles;
+                }
+            };
+        }
+    }
+
+    private static final class VisitRing {
+        private final int[] visits = new int[BUCKETS];
+        private long lastDay;
+        // in-times of the visits recorded before the vehicle was loaded, null once loaded
+        private List<Long> unloadedVisits;
+
+        private VisitRing(long today) {
+            this.lastDay = today;
+        }
+
+        private void add(long day) {
+            advanceTo(day);
+            if (day > lastDay - BUCKETS) {
+                visits[(int) Math.floorMod(day, (long) BUCKETS)]++;
+            }
+        }
+
+        private void remove(long day) {
+            int bucket = (int) Math.floorMod(day, (long) BUCKETS);
+            if (day > lastDay - BUCKETS && day <= lastDay && visits[bucket] > 0) {
+                visits[bucket]--;
+            }
+        }
+
+        private int count(long today) {
+            advanceTo(today);
+            int count = 0;
+            long firstDay = firstDayOfWindow(today);
+            for (long day = Math.max(firstDay, lastDay - BUCKETS + 1); day <= Math.min(today, lastDay); day++) {
+                count += visits[(int) Math.floorMod(day, (long) BUCKETS)];
+            }
+            return count;
+        }
+
+        private int[] visitsPerDay(long today) {
+            advanceTo(today);
+            int[] visitsPerDay = new int[BUCKETS];
+            long firstDay = firstDayOfWindow(today);
+            for (long day = Math.max(firstDay, lastDay - BUCKETS + 1); day <= Math.min(today, lastDay); day++) {
+                visitsPerDay[(int) (day - firstDay)] = visits[(int) Math.floorMod(day, (long) BUCKETS)];
+            }
+            return visitsPerDay;
+        }
+
+        /**
+         * Moves the ring forward to {@code day}, clearing the buckets of the days that left the window.
+         */
+        private void advanceTo(long day) {
+            if (day <= lastDay) {
+                return;
+            }
+            long daysToClear = Math.min(day - lastDay, BUCKETS);
+            for (long i = 1; i <= daysToClear; i++) {
+                visits[(int) Math.floorMod(lastDay + i, (long) BUCKETS)] = 0;
+            }
+            lastDay = day;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of physical JDBC connections.
+ *
+ * <p>Callers borrow a connection with {@link #borrow()} and give it back by calling
+ * {@link Connection#close()} on it, exactly as they would with a plain
+ * {@code DriverManager} connection. The physical connection is then kept for the next caller.</p>
+ *
+ * <p>The pool:
+ * <ul>
+ * <li>never opens more than {@code maxSize} connections, callers wait up to {@code maxWaitMillis} for one ;</li>
+ * <li>validates connections that have been idle for a while before handing them out ;</li>
+ * <li>closes connections that stayed idle longer than {@code idleTimeoutMillis} ;</li>
+ * <li>retires connections older than {@code maxLifetimeMillis} ;</li>
+ * <li>keeps counters (active, idle, wait time) that can be read at any time.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>With a statement cache size above 0, each connection also keeps up to that many prepared statements
+ * open across borrowers, see {@link StatementCache}.</p>
+ */
+public final class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private static final long VALIDATION_THRESHOLD_MILLIS = 1000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * Opens a new physical connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis,
+            long idleTimeoutMillis, long maxLifetimeMillis) {
+        this(connectionFactory, maxSize, maxWaitMillis, idleTimeoutMillis, maxLifetimeMillis, 0);
+    }
+
+    /**
+     * @param statementCacheSize how many prepared statements each connection keeps open, 0 for none.
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long maxWaitMillis,
+            long idleTimeoutMillis, long maxLifetimeMillis, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size can't be negative");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 2);
+        housekeeper.scheduleAtFixedRate(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting at most {@code maxWaitMillis} when the pool is exhausted.
+     *
+     * @return a connection which goes back to the pool when closed.
+     * @throws SQLException if no connection could be obtained in time or the database refused a new one.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLException("Timed out after " + maxWaitMillis + "ms waiting for a connection (pool size " + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = new PooledConnection(connectionFactory.create());
+                totalConnections.incrementAndGet();
+            }
+            activeConnections.incrementAndGet();
+            borrowCount.increment();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (isExpired(pooled, now)) {
+                discard(pooled);
+            } else if (now - pooled.lastUsedAt > VALIDATION_THRESHOLD_MILLIS && !isValid(pooled)) {
+                logger.info("Discarding broken pooled connection");
+                discard(pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return now - pooled.createdAt >= maxLifetimeMillis || now - pooled.lastUsedAt >= idleTimeoutMillis;
+    }
+
+    private void release(PooledConnection pooled) {
+        activeConnections.decrementAndGet();
+        try {
+            if (pooled.statements != null) {
+                pooled.statements.closeLeased();
+            }
+            boolean reusable = !closed && System.currentTimeMillis() - pooled.createdAt < maxLifetimeMillis;
+            if (reusable) {
+                reusable = reset(pooled);
+            }
+            if (reusable) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Undoes whatever state the previous borrower left behind.
+     *
+     * @return false if the connection can't be reused.
+     */
+    private boolean reset(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error while resetting pooled connection", e);
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            if (pooled.statements != null) {
+                pooled.statements.close();
+            }
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+
+    /**
+     * Closes idle connections that stayed unused or open for too long.
+     */
+    void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.iterator();
+        while (iterator.hasNext()) {
+            PooledConnection pooled = iterator.next();
+            if (isExpired(pooled, now) && idleConnections.removeFirstOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and refuses new borrowers. Connections still in use are
+     * closed when they are given back.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum() + timeoutCount.sum();
+        return borrows == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveConnections() + ", idle=" + getIdleConnections()
+                + ", total=" + getTotalConnections() + ", max=" + maxSize + ", waiting=" + getWaitingThreads()
+                + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) + ", timeouts=" + getTimeoutCount()
+                + ", statementCacheHits=" + getStatementCacheHits() + ", statementCacheMisses=" + getStatementCacheMisses() + "]";
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses) : null;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        /**
+         * Wraps the physical connection in a handle that is valid until it is closed once.
+         */
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed": {
+                    return released || pooled.physical.isClosed();
+                }
+                case "prepareStatement": {
+                    if (!released && pooled.statements != null && isCacheable(args)) {
+                        return pooled.statements.prepare((Connection) proxy, (String) args[0],
+                                args.length == 2 ? (Integer) args[1] : null);
+                    }
+                    return invokePhysical(method, args);
+                }
+                case "equals": {
+                    return proxy == args[0];
+                }
+                case "hashCode": {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString": {
+                    return "PooledConnection[" + pooled.physical + "]";
+                }
+                default: {
+                    return invokePhysical(method, args);
+                }
+            }
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws Throwable {
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * @return true for {@code prepareStatement(sql)} and {@code prepareStatement(sql, autoGeneratedKeys)}.
+         */
+        private boolean isCacheable(Object[] args) {
+            return args.length == 1 || (args.length == 2 && args[1] instanceof Integer);
+        }
+    }
+}
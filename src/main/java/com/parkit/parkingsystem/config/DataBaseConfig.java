@@ -4,16 +4,188 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Provides the DAOs with connections to the database.
+ *
+ * <p>Connections are borrowed from a {@link ConnectionPool} shared by every config pointing
+ * at the same URL, so creating several {@code DataBaseConfig} instances does not create several pools.
+ * Subclasses only need to override {@link #getUrl()} (and the credentials) to target another database.</p>
+ *
+ * <p>Read-only statements may be served by read replicas of the database, listed in the
+ * {@value #REPLICAS_PROPERTY} system property: DAOs take such connections from
+ * {@link #getReadConnection(String)} and report the vehicles they modify with {@link #recordWrite(String)}.
+ * Reads about a vehicle written less than {@link #getReplicaStalenessMillis()} ago go to the primary, as do
+ * reads within a unit of work that already wrote.</p>
+ */
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    private static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
+
+    public static final int POOL_MAX_SIZE = 10;
+    public static final long POOL_MAX_WAIT_MILLIS = 5_000;
+    public static final long POOL_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    public static final long POOL_MAX_LIFETIME_MILLIS = 30 * 60 * 1000;
+    public static final int POOL_STATEMENT_CACHE_SIZE = 64;
+
+    /**
+     * System property listing the JDBC URLs of the read replicas, separated by commas.
+     */
+    public static final String REPLICAS_PROPERTY = "parkit.db.replicas";
+
+    /**
+     * How long the replicas may lag the primary.
+     */
+    public static final long REPLICA_STALENESS_MILLIS = 2_000;
+
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private static final Map<String, ReplicaRouter> routers = new ConcurrentHashMap<>();
+
+    /**
+     * @return the connection of the unit of work open on this thread, if any, otherwise a pooled connection.
+     * @see UnitOfWork
+     */
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod?serverTimezone=Europe/Paris","root","rootroot");
+        ConnectionPool pool = getPool();
+        Connection unitOfWorkConnection = UnitOfWork.getConnection(pool);
+        return unitOfWorkConnection != null ? unitOfWorkConnection : pool.borrow();
+    }
+
+    /**
+     * Connection for a read-only statement: a replica if one is configured and may be used, otherwise the
+     * primary, as {@link #getConnection()}. Falls back to the primary if the replica can't be reached.
+     *
+     * @param vehicleRegNumber the vehicle read, or null if the read is not about one vehicle.
+     */
+    public Connection getReadConnection(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        ConnectionPool pool = getPool();
+        Connection unitOfWorkConnection = UnitOfWork.getOpenConnection(pool);
+        if (unitOfWorkConnection != null) {
+            return unitOfWorkConnection;
+        }
+        ConnectionPool replica = getReplicaRouter().route(vehicleRegNumber);
+        if (replica != null) {
+            try {
+                return replica.borrow();
+            } catch (SQLException e) {
+                logger.warn("Unable to read from replica, reading from the primary", e);
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Sends the reads about this vehicle to the primary until the replicas have caught up, once the current
+     * unit of work, if any, has committed. To be called by every write about a vehicle.
+     */
+    public void recordWrite(String vehicleRegNumber) throws ClassNotFoundException {
+        ReplicaRouter router = getReplicaRouter();
+        UnitOfWork.afterCommit(() -> router.recordWrite(vehicleRegNumber));
+    }
+
+    /**
+     * @return the number of read replicas of this config's database.
+     */
+    public int getReplicaCount() throws ClassNotFoundException {
+        return getReplicaRouter().getReplicaCount();
+    }
+
+    private ReplicaRouter getReplicaRouter() throws ClassNotFoundException {
+        ReplicaRouter router = routers.get(getUrl());
+        if (router == null) {
+            getPool();
+            router = routers.computeIfAbsent(getUrl(), url -> {
+                List<ConnectionPool> replicas = new ArrayList<>();
+                for (String replicaUrl : getReplicaUrls()) {
+                    replicas.add(pools.computeIfAbsent(replicaUrl, replica -> {
+                        logger.info("Create DB connection pool for replica {}", replica);
+                        return createReplicaPool(replica);
+                    }));
+                }
+                return new ReplicaRouter(replicas, getReplicaStalenessMillis());
+            });
+        }
+        return router;
+    }
+
+    /**
+     * @return the pool serving this config's URL, created on first use.
+     */
+    public ConnectionPool getPool() throws ClassNotFoundException {
+        ConnectionPool pool = pools.get(getUrl());
+        if (pool == null) {
+            Class.forName(DRIVER_CLASS);
+            pool = pools.computeIfAbsent(getUrl(), url -> {
+                logger.info("Create DB connection pool for {}", url);
+                return createPool();
+            });
+        }
+        return pool;
+    }
+
+    protected ConnectionPool createPool() {
+        return new ConnectionPool(() -> DriverManager.getConnection(getUrl(), getUser(), getPassword()),
+                POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_MAX_LIFETIME_MILLIS, POOL_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens replica connections read-only, with the credentials of the primary.
+     */
+    protected ConnectionPool createReplicaPool(String url) {
+        return new ConnectionPool(() -> {
+            Connection connection = DriverManager.getConnection(url, getUser(), getPassword());
+            connection.setReadOnly(true);
+            return connection;
+        }, POOL_MAX_SIZE, POOL_MAX_WAIT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_MAX_LIFETIME_MILLIS, POOL_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @return the JDBC URLs of the read replicas, from the {@value #REPLICAS_PROPERTY} system property.
+     */
+    protected List<String> getReplicaUrls() {
+        List<String> replicaUrls = new ArrayList<>();
+        String property = System.getProperty(REPLICAS_PROPERTY);
+        if (property != null) {
+            for (String replicaUrl : property.split(",")) {
+                if (!replicaUrl.trim().isEmpty()) {
+                    replicaUrls.add(replicaUrl.trim());
+                }
+            }
+        }
+        return replicaUrls;
+    }
+
+    protected long getReplicaStalenessMillis() {
+        return REPLICA_STALENESS_MILLIS;
+    }
+
+    protected String getUrl() {
+        // useCursorFetch: statements with a fetch size (such as the re-rating job's) stream their rows
+        // useServerPrepStmts: statements are parsed once by the server, and kept by the pool's statement cache
+        return "jdbc:mysql://localhost:3306/prod?serverTimezone=Europe/Paris&useCursorFetch=true&useServerPrepStmts=true";
+    }
+
+    protected String getUser() {
+        return "root";
+    }
+
+    protected String getPassword() {
+        return "rootroot";
+    }
+
+    /**
+     * Closes every pool. Meant to be called once, when the application shuts down.
+     */
+    public static void closePools() {
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+        routers.clear();
     }
 
     public void closeConnection(Connection con){
@@ -0,0 +1,69 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the replica serving a read, round robin, unless the vehicle read was written too recently for
+ * the replicas to have caught up.
+ *
+ * <p>Replicas are assumed to lag the primary by less than the staleness window. Writes are recorded per
+ * registration number once committed, and reads about a vehicle written within the window go to the primary.
+ * Expired writes are purged at most once per window.</p>
+ */
+class ReplicaRouter {
+
+    private final List<ConnectionPool> replicas;
+    private final long stalenessNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+
+    ReplicaRouter(List<ConnectionPool> replicas, long stalenessMillis) {
+        this.replicas = replicas;
+        this.stalenessNanos = TimeUnit.MILLISECONDS.toNanos(stalenessMillis);
+    }
+
+    /**
+     * @param vehicleRegNumber the vehicle read, or null if the read is not about one vehicle.
+     * @return the replica to read from, or null to read from the primary.
+     */
+    ConnectionPool route(String vehicleRegNumber) {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        if (vehicleRegNumber != null) {
+            Long writtenAt = recentWrites.get(vehicleRegNumber);
+            if (writtenAt != null) {
+                if (System.nanoTime() - writtenAt < stalenessNanos) {
+                    return null;
+                }
+                recentWrites.remove(vehicleRegNumber, writtenAt);
+            }
+        }
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * Sends the reads about this vehicle to the primary for the staleness window.
+     */
+    void recordWrite(String vehicleRegNumber) {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        recentWrites.put(vehicleRegNumber, now);
+        long purgedAt = lastPurge.get();
+        if (now - purgedAt >= stalenessNanos && lastPurge.compareAndSet(purgedAt, now)) {
+            recentWrites.values().removeIf(writtenAt -> now - writtenAt >= stalenessNanos);
+        }
+    }
+
+    int getReplicaCount() {
+        return replicas.size();
+    }
+}
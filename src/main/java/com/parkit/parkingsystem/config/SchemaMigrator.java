@@ -0,0 +1,284 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date when the application starts.
+ *
+ * <p>Migrations are SQL scripts named {@code V<version>__<description>.sql} under {@code db/migration}
+ * on the classpath, listed in order in {@code db/migration/migrations.list}. Each applied migration is
+ * recorded in the {@code schema_version} table with a checksum of its script: a migration is applied
+ * only once, and the runner refuses to start if an applied script has been modified since.</p>
+ *
+ * <p>MySQL commits each DDL statement on its own, so a migration of several statements that failed halfway
+ * is not recorded but partly applied. When it is run again, statements failing because their table, column,
+ * index or routine already exists are skipped.</p>
+ *
+ * <p>{@code resources/Data.sql} still creates the initial tables; migrations only describe what changed
+ * after that, so the {@code prod} and {@code test} databases end up with the same schema.</p>
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger("SchemaMigrator");
+
+    public static final String MIGRATION_LOCATION = "db/migration/";
+    private static final String MIGRATION_LIST = MIGRATION_LOCATION + "migrations.list";
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String DELIMITER_COMMAND = "DELIMITER ";
+
+    private static final String CREATE_VERSION_TABLE = "create table if not exists schema_version("
+            + "VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, CHECKSUM bigint NOT NULL, APPLIED_ON DATETIME NOT NULL)";
+    private static final String GET_APPLIED_VERSIONS = "select VERSION, CHECKSUM from schema_version";
+    private static final String SAVE_VERSION = "insert into schema_version(VERSION, DESCRIPTION, CHECKSUM, APPLIED_ON) values(?,?,?,?)";
+    private static final String GET_LOCK = "select GET_LOCK('parkit_schema_migration', 60)";
+    private static final String RELEASE_LOCK = "select RELEASE_LOCK('parkit_schema_migration')";
+
+    /**
+     * MySQL errors of a DDL statement whose change is already there: table, column, index or routine exists.
+     */
+    private static final Set<Integer> ALREADY_APPLIED_ERRORS = Set.of(1050, 1060, 1061, 1304);
+
+    private final DataBaseConfig dataBaseConfig;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    /**
+     * A versioned SQL script.
+     */
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final String script;
+        private final long checksum;
+
+        public Migration(int version, String description, String script) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            CRC32 crc = new CRC32();
+            crc.update(script.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Splits the script on {@code ;}. As in the mysql client, a {@code DELIMITER //} line changes the
+         * delimiter until the next {@code DELIMITER} line, for routines whose body holds {@code ;}.
+         *
+         * @return the statements of the script, without comments and without the trailing delimiter.
+         */
+        public List<String> getStatements() {
+            List<String> statements = new ArrayList<>();
+            StringBuilder statement = new StringBuilder();
+            String delimiter = ";";
+            for (String line : script.split("\\R")) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                if (statement.length() == 0 && trimmed.regionMatches(true, 0, DELIMITER_COMMAND, 0, DELIMITER_COMMAND.length())) {
+                    delimiter = trimmed.substring(DELIMITER_COMMAND.length()).trim();
+                    continue;
+                }
+                statement.append(line).append('\n');
+                if (trimmed.endsWith(delimiter)) {
+                    statements.add(statement.substring(0, statement.lastIndexOf(delimiter)).trim());
+                    statement.setLength(0);
+                }
+            }
+            if (statement.toString().trim().length() > 0) {
+                statements.add(statement.toString().trim());
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * Applies the pending migrations, in version order.
+     *
+     * @return the number of migrations applied.
+     * @throws IllegalStateException if an applied migration has been modified.
+     */
+    public int migrate() throws Exception {
+        List<Migration> migrations = getMigrations();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            acquireLock(con);
+            Exception failure = null;
+            try {
+                execute(con, CREATE_VERSION_TABLE);
+                Map<Integer, Long> appliedVersions = getAppliedVersions(con);
+                int applied = 0;
+                for (Migration migration : migrations) {
+                    Long appliedChecksum = appliedVersions.get(migration.getVersion());
+                    if (appliedChecksum == null) {
+                        apply(con, migration);
+                        applied++;
+                    } else if (appliedChecksum != migration.getChecksum()) {
+                        throw new IllegalStateException("Migration V" + migration.getVersion()
+                                + " has been modified after it was applied");
+                    }
+                }
+                logger.info("Database schema is up to date ({} migration(s) applied)", applied);
+                return applied;
+            } catch (Exception e) {
+                failure = e;
+                throw e;
+            } finally {
+                try {
+                    execute(con, RELEASE_LOCK);
+                } catch (SQLException e) {
+                    if (failure != null) {
+                        failure.addSuppressed(e);
+                    } else {
+                        logger.error("Unable to release the schema migration lock", e);
+                    }
+                }
+            }
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if another instance held the lock for too long, or MySQL refused it.
+     */
+    private void acquireLock(Connection con) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement(GET_LOCK);
+            rs = ps.executeQuery();
+            int locked = rs.next() ? rs.getInt(1) : 0;
+            if (locked != 1 || rs.wasNull()) {
+                throw new IllegalStateException("Unable to take the schema migration lock, is another instance migrating?");
+            }
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private void apply(Connection con, Migration migration) throws SQLException {
+        logger.info("Applying migration V{} {}", migration.getVersion(), migration.getDescription());
+        for (String statement : migration.getStatements()) {
+            try {
+                execute(con, statement);
+            } catch (SQLException e) {
+                if (!ALREADY_APPLIED_ERRORS.contains(e.getErrorCode())) {
+                    throw e;
+                }
+                // DDL is not transactional: a migration stopped halfway left this statement applied
+                logger.warn("Statement of migration V{} was already applied, skipping it: {}",
+                        migration.getVersion(), e.getMessage());
+            }
+        }
+        PreparedStatement ps = null;
+        try {
+            ps = con.prepareStatement(SAVE_VERSION);
+            ps.setInt(1, migration.getVersion());
+            ps.setString(2, migration.getDescription());
+            ps.setLong(3, migration.getChecksum());
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+
+    private Map<Integer, Long> getAppliedVersions(Connection con) throws SQLException {
+        Map<Integer, Long> appliedVersions = new HashMap<>();
+        PreparedStatement ps = con.prepareStatement(GET_APPLIED_VERSIONS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            appliedVersions.put(rs.getInt(1), rs.getLong(2));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return appliedVersions;
+    }
+
+    private void execute(Connection con, String sql) throws SQLException {
+        Statement statement = con.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Reads the migrations listed in {@code db/migration/migrations.list}.
+     *
+     * @return the migrations sorted by version.
+     */
+    public static List<Migration> getMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (String name : readResource(MIGRATION_LIST).split("\\R")) {
+            name = name.trim();
+            if (name.isEmpty() || name.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = MIGRATION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid migration name: " + name);
+            }
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                    readResource(MIGRATION_LOCATION + name)));
+        }
+        Collections.sort(migrations, (a, b) -> Integer.compare(a.getVersion(), b.getVersion()));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).getVersion() == migrations.get(i - 1).getVersion()) {
+                throw new IllegalStateException("Duplicate migration version V" + migrations.get(i).getVersion());
+            }
+        }
+        return migrations;
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing migration resource " + name);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one pooled connection, kept open from one borrower to the next.
+ *
+ * <p>Statements are keyed by their SQL (and generated-keys flag). Closing a statement handed out by
+ * {@link #prepare(Connection, String, Integer)} clears its parameters and keeps it for the next caller
+ * preparing the same SQL; at most {@code maxSize} statements are kept, the least recently used one is
+ * closed first. Statements a borrower did not close are closed for good when the connection goes back
+ * to the pool, so a forgotten {@code close()} can't leak them.</p>
+ */
+class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<Key, PreparedStatement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<PreparedStatement, StatementHandler> leasedStatements = new IdentityHashMap<>();
+    private boolean closed;
+
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * @param lease the connection handed to the borrower, returned by the statement's {@code getConnection()}.
+     * @param autoGeneratedKeys the flag given to {@code prepareStatement}, or null if none was given.
+     */
+    PreparedStatement prepare(Connection lease, String sql, Integer autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = idleStatements.remove(key);
+        }
+        if (statement != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            statement = autoGeneratedKeys == null ? physical.prepareStatement(sql) : physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        StatementHandler handler = new StatementHandler(statement, key, lease);
+        synchronized (this) {
+            leasedStatements.put(statement, handler);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, handler);
+    }
+
+    private void giveBack(PreparedStatement statement) {
+        StatementHandler handler;
+        synchronized (this) {
+            handler = leasedStatements.remove(statement);
+        }
+        if (handler == null) {
+            // already closed with the connection
+            return;
+        }
+        Key key = handler.key;
+        try {
+            ResultSet resultSet = statement.getResultSet();
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            logger.error("Error while resetting cached statement", e);
+            closeStatement(statement);
+            return;
+        }
+        List<PreparedStatement> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed || idleStatements.containsKey(key)) {
+                evicted.add(statement);
+            } else {
+                idleStatements.put(key, statement);
+                Iterator<PreparedStatement> leastRecentlyUsed = idleStatements.values().iterator();
+                while (idleStatements.size() > maxSize) {
+                    evicted.add(leastRecentlyUsed.next());
+                    leastRecentlyUsed.remove();
+                }
+            }
+        }
+        evicted.forEach(StatementCache::closeStatement);
+    }
+
+    /**
+     * Closes the statements the borrower did not close. Called when the connection goes back to the pool.
+     */
+    void closeLeased() {
+        List<PreparedStatement> leaked;
+        synchronized (this) {
+            leaked = new ArrayList<>(leasedStatements.keySet());
+            leasedStatements.values().forEach(handler -> handler.returned = true);
+            leasedStatements.clear();
+        }
+        if (!leaked.isEmpty()) {
+            logger.warn("Closing {} prepared statements left open by the last borrower", leaked.size());
+            leaked.forEach(StatementCache::closeStatement);
+        }
+    }
+
+    /**
+     * Closes every statement. Called before the physical connection is closed.
+     */
+    void close() {
+        closeLeased();
+        List<PreparedStatement> idle;
+        synchronized (this) {
+            closed = true;
+            idle = new ArrayList<>(idleStatements.values());
+            idleStatements.clear();
+        }
+        idle.forEach(StatementCache::closeStatement);
+    }
+
+    synchronized int size() {
+        return idleStatements.size() + leasedStatements.size();
+    }
+
+    private static void closeStatement(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached statement", e);
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final Integer autoGeneratedKeys;
+
+        private Key(String sql, Integer autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return sql.equals(other.sql) && Objects.equals(autoGeneratedKeys, other.autoGeneratedKeys);
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode() * 31 + Objects.hashCode(autoGeneratedKeys);
+        }
+    }
+
+    /**
+     * Hands out a cached statement until it is closed once, or until its connection goes back to the pool.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final Key key;
+        private final Connection lease;
+        private volatile boolean returned;
+
+        private StatementHandler(PreparedStatement statement, Key key, Connection lease) {
+            this.statement = statement;
+            this.key = key;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (!returned) {
+                        returned = true;
+                        giveBack(statement);
+                    }
+                    return null;
+                }
+                case "isClosed": {
+                    return returned || statement.isClosed();
+                }
+                case "getConnection": {
+                    return lease;
+                }
+                case "equals": {
+                    return proxy == args[0];
+                }
+                case "hashCode": {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString": {
+                    return "CachedStatement[" + statement + "]";
+                }
+                default: {
+                    if (returned) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several DAO calls on one connection, in one transaction, with one commit.
+ *
+ * <p>A unit of work is bound to the current thread. While it is open, {@link DataBaseConfig#getConnection()}
+ * hands every DAO the same connection (borrowed on first use, with auto-commit off), and closing that
+ * connection does nothing. Typical use:</p>
+ *
+ * <pre>
+ * try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+ *     ... DAO calls ...
+ *     unitOfWork.commit();
+ * }
+ * </pre>
+ *
+ * <p>Closing the unit of work without committing rolls the transaction back. DAOs that keep in-memory
+ * state register with {@link #onRollback(Runnable)} how to undo their changes, and report failed writes
+ * with {@link #setRollbackOnly()} so that the unit of work cannot be committed half done.</p>
+ *
+ * <p>Beginning a unit of work while one is already open on the thread joins it: only the outermost one
+ * commits.</p>
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("UnitOfWork");
+
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final UnitOfWork outer;
+    private ConnectionPool pool;
+    private Connection connection;
+    private Connection sharedConnection;
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
+    private boolean rollbackOnly;
+    private boolean completed;
+
+    private UnitOfWork(UnitOfWork outer) {
+        this.outer = outer;
+    }
+
+    /**
+     * Opens a unit of work on the current thread, or joins the one already open.
+     */
+    public static UnitOfWork begin() {
+        UnitOfWork active = current.get();
+        if (active != null) {
+            return new UnitOfWork(active);
+        }
+        UnitOfWork unitOfWork = new UnitOfWork(null);
+        current.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * @return true if a unit of work is open on the current thread.
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Registers an action undoing an in-memory change if the current unit of work is rolled back.
+     * Does nothing outside a unit of work.
+     */
+    public static void onRollback(Runnable action) {
+        UnitOfWork active = current.get();
+        if (active != null) {
+            active.rollbackActions.add(action);
+        }
+    }
+
+    /**
+     * Registers an action to run once the current unit of work has committed, typically to hand
+     * work to something outside the transaction. Runs the action at once outside a unit of work.
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork active = current.get();
+        if (active != null) {
+            active.afterCommitActions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Prevents the current unit of work from committing. Does nothing outside a unit of work.
+     */
+    public static void setRollbackOnly() {
+        UnitOfWork active = current.get();
+        if (active != null) {
+            active.rollbackOnly = true;
+        }
+    }
+
+    /**
+     * @return the connection of the current unit of work for this pool, or null outside a unit of work.
+     */
+    static Connection getConnection(ConnectionPool pool) throws SQLException {
+        UnitOfWork active = current.get();
+        if (active == null) {
+            return null;
+        }
+        if (active.connection == null) {
+            active.pool = pool;
+            active.connection = pool.borrow();
+            active.connection.setAutoCommit(false);
+            active.sharedConnection = sharedView(active.connection);
+        } else if (active.pool != pool) {
+            throw new SQLException("A unit of work can't span two databases");
+        }
+        return active.sharedConnection;
+    }
+
+    /**
+     * @return the connection the current unit of work already holds for this pool, or null if it has none yet.
+     */
+    static Connection getOpenConnection(ConnectionPool pool) {
+        UnitOfWork active = current.get();
+        return active != null && active.connection != null && active.pool == pool ? active.sharedConnection : null;
+    }
+
+    /**
+     * Commits the work done so far and ends the unit of work.
+     *
+     * @throws SQLException if a step failed and the work has been rolled back instead.
+     * @throws RuntimeException thrown by an {@link #afterCommit(Runnable)} action, after the commit.
+     */
+    public void commit() throws SQLException {
+        if (completed) {
+            throw new IllegalStateException("Unit of work already completed");
+        }
+        if (outer != null) {
+            completed = true;
+            return;
+        }
+        if (rollbackOnly) {
+            rollback();
+            throw new SQLException("A step of the unit of work failed, all its changes have been rolled back");
+        }
+        try {
+            if (connection != null) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        }
+        completed = true;
+        List<Runnable> actions = new ArrayList<>(afterCommitActions);
+        end();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Rolls back the work if it hasn't been committed.
+     */
+    @Override
+    public void close() {
+        if (completed) {
+            return;
+        }
+        if (outer != null) {
+            completed = true;
+            outer.rollbackOnly = true;
+            return;
+        }
+        rollback();
+    }
+
+    private void rollback() {
+        completed = true;
+        try {
+            if (connection != null) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            logger.error("Error while rolling back unit of work", e);
+        } finally {
+            for (int i = rollbackActions.size() - 1; i >= 0; i--) {
+                try {
+                    rollbackActions.get(i).run();
+                } catch (RuntimeException e) {
+                    logger.error("Error while undoing in-memory changes", e);
+                }
+            }
+            end();
+        }
+    }
+
+    private void end() {
+        current.remove();
+        rollbackActions.clear();
+        afterCommitActions.clear();
+        if (connection != null) {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.error("Error while restoring auto-commit", e);
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Wraps the connection so that DAOs closing it, as they do outside a unit of work, don't release it.
+     */
+    private static Connection sharedView(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close": {
+                            return null;
+                        }
+                        case "equals": {
+                            return proxy == args[0];
+                        }
+                        case "hashCode": {
+                            return System.identityHashCode(proxy);
+                        }
+                        default: {
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    }
+                });
+    }
+}
@@ -3,12 +3,39 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE, ZONE from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
+    public static final String UPDATE_OPEN_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and OUT_TIME IS NULL";
+    // gate journal replay: tickets are identified by vehicle and in-time (to the second, as stored), since
+    // replaying a record twice must not insert a second ticket
+    public static final String SAVE_JOURNALED_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ?,?,0,?,null from dual where not exists (select 1 from ticket where VEHICLE_REG_NUMBER=? and IN_TIME between ? and ?)";
+    public static final String CLOSE_JOURNALED_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and IN_TIME between ? and ?";
     public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc, t.ID desc limit 1";
 
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME IS NULL order by t.IN_TIME, t.ID";
+
     public static final String GET_NB_TICKETS = "select COUNT(*) FROM ticket where VEHICLE_REG_NUMBER=? AND IN_TIME>=?";
+    public static final String GET_TICKET_IN_TIMES = "select IN_TIME FROM ticket where VEHICLE_REG_NUMBER=? AND IN_TIME>=?";
+    public static final String GET_TICKETS_FOR_RERATING = "select t.ID, t.VEHICLE_REG_NUMBER, t.IN_TIME, t.OUT_TIME, t.PRICE, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number order by t.VEHICLE_REG_NUMBER, t.IN_TIME, t.ID";
+    // keyset pagination for exports: the page after (IN_TIME, ID), up to an in-time excluded
+    public static final String GET_TICKET_PAGE = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t,parking p where p.parking_number = t.parking_number and (t.IN_TIME, t.ID) > (?, ?) and t.IN_TIME < ? order by t.IN_TIME, t.ID limit ?";
     public static final String CHECK_VEHICLE_IN_WITHOUT_OUT = "select 1 from ticket where OUT_TIME IS NULL and VEHICLE_REG_NUMBER=? LIMIT 1";
+
+    public static final String ADD_ROLLUP = "insert into parking_rollup(PERIOD, PERIOD_START, TYPE, VISITS, EXITS, REVENUE_CENTS) values(?,?,?,?,?,?) on duplicate key update VISITS = VISITS + values(VISITS), EXITS = EXITS + values(EXITS), REVENUE_CENTS = REVENUE_CENTS + values(REVENUE_CENTS)";
+    public static final String GET_ROLLUPS_SINCE = "select PERIOD, PERIOD_START, TYPE, VISITS, EXITS, REVENUE_CENTS from parking_rollup where PERIOD_START >= ?";
+    // CacheSnapshot: high-water mark of the ticket table, and rows changed since a mark (UPDATED_AT of migration V6)
+    public static final String GET_HIGH_WATER_MARK = "select coalesce(max(ID), 0), current_timestamp(3) from ticket";
+    public static final String GET_PARKING_SPOTS_CHANGED_SINCE = "select PARKING_NUMBER, AVAILABLE, TYPE, ZONE from parking where UPDATED_AT >= ?";
+    public static final String GET_TICKETS_CHANGED_SINCE = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.UPDATED_AT >= ? order by t.IN_TIME, t.ID";
+    public static final String COUNT_OPEN_TICKETS_BY_TYPE = "select p.TYPE, count(*) from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME IS NULL group by p.TYPE";
+
+    // stored procedure of migration V3: returns STATUS, PARKING_NUMBER, TICKET_ID, VISITS
+    public static final String ENTER_VEHICLE = "call ENTER_VEHICLE(?,?,?,?)";
+    public static final int ENTER_VEHICLE_ENTERED = 0;
+    public static final int ENTER_VEHICLE_ALREADY_IN_PARKING = 1;
+    public static final int ENTER_VEHICLE_PARKING_FULL = 2;
 }
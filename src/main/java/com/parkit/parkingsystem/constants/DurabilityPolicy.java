@@ -0,0 +1,13 @@
+package com.parkit.parkingsystem.constants;
+
+/**
+ * When a ticket insert or update is considered done.
+ */
+public enum DurabilityPolicy {
+    /** Written and committed by the calling thread, one statement per call. */
+    SYNC,
+    /** Queued, written in a batch with other gates' writes; the caller waits for the batch commit. */
+    GROUP_COMMIT,
+    /** Queued, written in a batch later; the caller does not wait. A crash may lose the queued writes. */
+    ASYNC
+}
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.cache.ActiveTicketIndex;
+import com.parkit.parkingsystem.cache.CacheSnapshot;
+import com.parkit.parkingsystem.cache.HighWaterMark;
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the in-memory indexes of a {@link ParkingSpotDAO} and a {@link TicketDAO} to a {@link CacheSnapshot}
+ * file, and starts them from it after a restart rather than from full scans of the tables.
+ *
+ * <p>The high-water mark is read before the indexes are copied, so whatever changes while they are copied is
+ * read again on start: the spots and tickets whose {@code UPDATED_AT} is at or after the mark, less
+ * {@link #CATCH_UP_MARGIN_MILLIS} for the transactions that were still open when it was read. A snapshot
+ * taken while the {@code ticket} table held more tickets than it does now is ignored.</p>
+ *
+ * <p>The indexes are copied with the changes of the units of work still open, and a unit of work that rolls
+ * back afterwards leaves no trace for the catch-up to read. On start, open tickets recent enough to have been
+ * read again but not found are dropped, and spots taken with no open ticket on them are read again.</p>
+ *
+ * <p>Like the indexes themselves, this relies on the tables being modified through the DAOs only. Ticket
+ * writes queued by a {@link TicketWriteBehind} or a gate journal aren't in the table yet, so snapshots are
+ * only meant for {@link com.parkit.parkingsystem.constants.DurabilityPolicy#SYNC} writes.</p>
+ */
+public class CacheSnapshotter implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("CacheSnapshotter");
+
+    public static final long CATCH_UP_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    private ScheduledExecutorService snapshotScheduler;
+    private Path snapshotPath;
+
+    public CacheSnapshotter(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    /**
+     * Copies the indexes of the DAOs, loading them first if needed.
+     */
+    public CacheSnapshot takeSnapshot() throws Exception {
+        // read first: what changes from here on is read again on start
+        HighWaterMark mark = ticketDAO.readHighWaterMark();
+        ActiveTicketIndex activeTicketIndex = ticketDAO.getActiveTicketIndex();
+        if (activeTicketIndex == null) {
+            throw new IllegalStateException("Open tickets could not be loaded");
+        }
+        long today = VisitCounterCache.epochDay(System.currentTimeMillis());
+        return new CacheSnapshot(mark, parkingSpotDAO.getAvailabilityIndex(), activeTicketIndex.getTickets(), today,
+                ticketDAO.exportVisitCounters(today));
+    }
+
+    public void snapshot(Path path) throws Exception {
+        long start = System.nanoTime();
+        CacheSnapshot snapshot = takeSnapshot();
+        snapshot.write(path);
+        logger.debug("Wrote {} open tickets and {} visit counters to {} in {} ms", snapshot.getOpenTickets().size(),
+                snapshot.getVisits().size(), path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Starts the indexes of the DAOs from the snapshot file, then reads the spots and tickets changed since it
+     * was taken.
+     *
+     * @return false if there is no usable snapshot; the DAOs then load their indexes from the tables.
+     */
+    public boolean warmStart(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.read(path);
+            HighWaterMark mark = snapshot.getMark();
+            HighWaterMark current = ticketDAO.readHighWaterMark();
+            if (current.getMaxTicketId() < mark.getMaxTicketId()) {
+                logger.warn("Ignoring snapshot {} of {}: the database is at {}", path, mark, current);
+                return false;
+            }
+            long changedSince = mark.getTimeMillis() - CATCH_UP_MARGIN_MILLIS;
+            parkingSpotDAO.warmStart(snapshot, changedSince);
+            ticketDAO.warmStart(snapshot, changedSince);
+            parkingSpotDAO.reconcileTakenSpots(heldSpots(ticketDAO.getActiveTicketIndex()));
+            logger.info("Warm started from snapshot {} of {} in {} ms", path, mark,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (Exception e) {
+            logger.error("Unable to warm start from snapshot {}, loading from the database", path, e);
+            return false;
+        }
+    }
+
+    private static Set<Integer> heldSpots(ActiveTicketIndex activeTicketIndex) {
+        Set<Integer> heldSpots = new HashSet<>();
+        for (Ticket ticket : activeTicketIndex.getTickets()) {
+            if (ticket.getParkingSpot() != null) {
+                heldSpots.add(ticket.getParkingSpot().getId());
+            }
+        }
+        return heldSpots;
+    }
+
+    /**
+     * Writes a snapshot to the file at a fixed interval, from a daemon thread, and a last one on {@link #close()}.
+     */
+    public synchronized void snapshotEvery(Path path, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalSeconds);
+        }
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots already scheduled to " + snapshotPath);
+        }
+        snapshotPath = path;
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(this::writeScheduledSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void writeScheduledSnapshot() {
+        try {
+            snapshot(snapshotPath);
+        } catch (Exception e) {
+            logger.error("Unable to write snapshot {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Stops the scheduled snapshots, after writing a last one.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = snapshotScheduler;
+            snapshotScheduler = null;
+        }
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeScheduledSnapshot();
+    }
+}
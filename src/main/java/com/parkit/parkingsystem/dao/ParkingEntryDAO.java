@@ -0,0 +1,145 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.store.EntryStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Records vehicle entries with the {@code ENTER_VEHICLE} stored procedure: the duplicate check, the spot
+ * claim, the ticket insert and the visit count run on the server in one call and one transaction, instead
+ * of one round trip each.
+ *
+ * <p>The in-memory indexes of the {@link ParkingSpotDAO} and the {@link TicketDAO} are updated with the
+ * outcome. The procedure's duplicate check takes a gap lock, so gates entering neighbouring plates can
+ * deadlock: the call is then retried a few times. The ticket is written synchronously, so the ticket DAO must use {@code DurabilityPolicy.SYNC}:
+ * the procedure can't see writes still queued by a write-behind.</p>
+ */
+public class ParkingEntryDAO implements EntryStore {
+
+    private static final Logger logger = LogManager.getLogger("ParkingEntryDAO");
+
+    /**
+     * SQL state of a transaction InnoDB rolled back to break a deadlock.
+     */
+    private static final String DEADLOCK_SQL_STATE = "40001";
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final OperationMetrics ENTER_VEHICLE = Metrics.operation("ParkingEntryDAO.enterVehicle");
+
+    public DataBaseConfig dataBaseConfig;
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    public ParkingEntryDAO(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.dataBaseConfig = ticketDAO.dataBaseConfig;
+    }
+
+    /**
+     * @throws IllegalStateException if called within a unit of work, as the procedure commits on its own.
+     */
+    public EntryResult enterVehicle(ParkingType parkingType, String vehicleRegNumber, long inTimeMillis) {
+        if (UnitOfWork.isActive()) {
+            throw new IllegalStateException("ENTER_VEHICLE commits its own transaction, it can't join a unit of work");
+        }
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            long visitsSince = TicketDAO.startOfDay(VisitCounterCache.firstDayOfWindow(VisitCounterCache.epochDay(inTimeMillis)));
+            con = dataBaseConfig.getConnection();
+            int[] outcome;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    outcome = callEnterVehicle(con, parkingType, vehicleRegNumber, inTimeMillis, visitsSince);
+                    break;
+                } catch (SQLException e) {
+                    if (!DEADLOCK_SQL_STATE.equals(e.getSQLState()) || attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    // two gates entering plates in the same index gap: the procedure rolled back, run it again
+                    logger.warn("Deadlock recording the entry of vehicle {} (attempt {}/{}), retrying",
+                            vehicleRegNumber, attempt, MAX_ATTEMPTS);
+                }
+            }
+            int status = outcome[0];
+            int parkingNumber = outcome[1];
+            int ticketId = outcome[2];
+            int visits = outcome[3];
+
+            switch (status) {
+                case DBConstants.ENTER_VEHICLE_ENTERED: {
+                    Ticket ticket = new Ticket();
+                    ticket.setId(ticketId);
+                    ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+                    ticket.setVehicleRegNumber(vehicleRegNumber);
+                    ticket.setPrice(0);
+                    ticket.setInTimeMillis(inTimeMillis);
+                    parkingSpotDAO.trackClaimedSlot(ticket.getParkingSpot());
+                    ticketDAO.trackEnteredTicket(ticket);
+                    dataBaseConfig.recordWrite(vehicleRegNumber);
+                    return EntryResult.entered(ticket, visits >= Fare.MIN_USES_FOR_FREQUENT_USER);
+                }
+                case DBConstants.ENTER_VEHICLE_ALREADY_IN_PARKING: {
+                    logger.info("Entry attempt failure: the vehicle {} has never exited since the last entry", vehicleRegNumber);
+                    return EntryResult.rejected(EntryResult.Status.ALREADY_IN_PARKING, vehicleRegNumber);
+                }
+                case DBConstants.ENTER_VEHICLE_PARKING_FULL: {
+                    return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber);
+                }
+                default: {
+                    throw new IllegalStateException("Unknown ENTER_VEHICLE status " + status);
+                }
+            }
+        } catch (Exception e) {
+            ENTER_VEHICLE.error();
+            logger.error("Unable to record the entry of vehicle {}", vehicleRegNumber, e);
+            return EntryResult.rejected(EntryResult.Status.ERROR, vehicleRegNumber);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            ENTER_VEHICLE.record(start);
+        }
+    }
+
+    /**
+     * @return the status, parking number, ticket id and visits returned by the procedure.
+     */
+    private int[] callEnterVehicle(Connection con, ParkingType parkingType, String vehicleRegNumber, long inTimeMillis,
+            long visitsSince) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement(DBConstants.ENTER_VEHICLE);
+            ps.setString(1, parkingType.name());
+            ps.setString(2, vehicleRegNumber);
+            ps.setTimestamp(3, new Timestamp(inTimeMillis));
+            ps.setTimestamp(4, new Timestamp(visitsSince));
+            rs = ps.executeQuery();
+            if (!rs.next()) {
+                throw new IllegalStateException("ENTER_VEHICLE returned no outcome");
+            }
+            return new int[] {rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4)};
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }
+    }
+}
@@ -1,59 +1,359 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.allocation.SpotAllocator;
+import com.parkit.parkingsystem.cache.CacheSnapshot;
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.store.SpotStore;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements SpotStore {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final OperationMetrics GET_NEXT_AVAILABLE_SLOT = Metrics.operation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationMetrics CLAIM_NEXT_AVAILABLE_SLOT = Metrics.operation("ParkingSpotDAO.claimNextAvailableSlot");
+    private static final OperationMetrics UPDATE_PARKING = Metrics.operation("ParkingSpotDAO.updateParking");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private volatile SpotAvailabilityIndex availabilityIndex;
+    private volatile AllocationStrategy allocationStrategy;
+    private volatile SpotAllocator allocator;
+
+    /**
+     * Finds the lowest free spot of the given type in the in-memory availability index.
+     * The index is loaded from the {@code parking} table on first use.
+     *
+     * @return the spot number, 0 if no spot is free, -1 if the index could not be loaded.
+     */
     public int getNextAvailableSlot(ParkingType parkingType){
-        Connection con = null;
-        int result=-1;
+        long start = System.nanoTime();
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
-            ps.setString(1, parkingType.toString());
-            ResultSet rs = ps.executeQuery();
-            if(rs.next()){
-                result = rs.getInt(1);;
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            return getAvailabilityIndex().findFirstAvailable(parkingType);
         }catch (Exception ex){
+            GET_NEXT_AVAILABLE_SLOT.error();
             logger.error("Error fetching next available slot",ex);
         }finally {
-            dataBaseConfig.closeConnection(con);
+            GET_NEXT_AVAILABLE_SLOT.record(start);
+        }
+        return -1;
+    }
+
+    /**
+     * Reserves a free spot of the given type for a vehicle coming in at an entrance: the one chosen by the
+     * allocation strategy, or the lowest free spot without one.
+     *
+     * <p>The spot is first taken in the in-memory index with a compare-and-set, so two gates never
+     * pick the same candidate, then confirmed with a conditional update that only succeeds if the
+     * spot is still available in the database. If the database says the spot is already taken
+     * (changed by another process), the next candidate is tried.</p>
+     *
+     * @return the reserved spot number, 0 if the lot is full for this type, -1 on error.
+     */
+    public int claimNextAvailableSlot(ParkingType parkingType, int entrance) {
+        long start = System.nanoTime();
+        int parkingNumber = claimSlot(parkingType, entrance);
+        if (parkingNumber < 0) {
+            CLAIM_NEXT_AVAILABLE_SLOT.error();
+        }
+        CLAIM_NEXT_AVAILABLE_SLOT.record(start);
+        return parkingNumber;
+    }
+
+    private int claimSlot(ParkingType parkingType, int entrance) {
+        SpotAvailabilityIndex index;
+        try {
+            index = getAvailabilityIndex();
+        } catch (Exception ex) {
+            logger.error("Error fetching next available slot", ex);
+            return -1;
+        }
+
+        int parkingNumber;
+        while ((parkingNumber = claimInIndex(index, parkingType, entrance)) > 0) {
+            Connection con = null;
+            PreparedStatement ps = null;
+            try {
+                con = dataBaseConfig.getConnection();
+                ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+                ps.setInt(1, parkingNumber);
+                int updateRowCount = ps.executeUpdate();
+                if (updateRowCount == 1) {
+                    int claimedNumber = parkingNumber;
+                    UnitOfWork.onRollback(() -> index.setAvailable(claimedNumber, true));
+                    return parkingNumber;
+                }
+                // the spot is already taken in the database: leave it marked as taken and try the next one
+                logger.info("Parking spot {} was already taken, trying the next one", parkingNumber);
+            } catch (Exception ex) {
+                index.setAvailable(parkingNumber, true);
+                UnitOfWork.setRollbackOnly();
+                logger.error("Error claiming parking spot {}", parkingNumber, ex);
+                return -1;
+            } finally {
+                dataBaseConfig.closePreparedStatement(ps);
+                dataBaseConfig.closeConnection(con);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Takes a free spot of the given type, chosen as by {@link #claimNextAvailableSlot(ParkingType, int)}, in the
+     * in-memory availability index only, for an entry written to the
+     * {@link com.parkit.parkingsystem.journal.GateJournal gate journal} rather than to the {@code parking} table.
+     *
+     * @return the spot number, 0 if the lot is full for this type, -1 if the index could not be loaded.
+     */
+    public int reserveNextAvailableSlot(ParkingType parkingType, int entrance) {
+        try {
+            return claimInIndex(getAvailabilityIndex(), parkingType, entrance);
+        } catch (Exception ex) {
+            logger.error("Error fetching next available slot", ex);
+            return -1;
+        }
+    }
+
+    /**
+     * Frees a spot in the in-memory availability index only, see {@link #reserveNextAvailableSlot(ParkingType, int)}.
+     */
+    public void releaseReservedSlot(int parkingNumber) {
+        SpotAvailabilityIndex index = availabilityIndex;
+        if (index != null) {
+            index.setAvailable(parkingNumber, true);
         }
-        return result;
     }
 
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
+        long start = System.nanoTime();
         Connection con = null;
+        PreparedStatement ps = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
             ps.setBoolean(1, parkingSpot.isAvailable());
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
-            dataBaseConfig.closePreparedStatement(ps);
+            if (updateRowCount == 1) {
+                updateAvailabilityIndex(parkingSpot);
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
+            UPDATE_PARKING.error();
+            UnitOfWork.setRollbackOnly();
             logger.error("Error updating parking info",ex);
             return false;
         }finally {
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            UPDATE_PARKING.record(start);
         }
     }
 
+    /**
+     * Reads the whole {@code parking} table and replaces the in-memory availability index.
+     * Must be called again if the table is modified by anything else than this DAO.
+     */
+    public void loadAvailabilityIndex() throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            rs = ps.executeQuery();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            List<Integer> zones = new ArrayList<>();
+            int maxSpotNumber = 0;
+            while (rs.next()) {
+                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+                parkingSpots.add(parkingSpot);
+                zones.add(rs.getInt(4));
+                maxSpotNumber = Math.max(maxSpotNumber, parkingSpot.getId());
+            }
+
+            SpotAvailabilityIndex index = new SpotAvailabilityIndex(maxSpotNumber);
+            for (int i = 0; i < parkingSpots.size(); i++) {
+                ParkingSpot parkingSpot = parkingSpots.get(i);
+                index.addSpot(parkingSpot.getId(), parkingSpot.getParkingType(), zones.get(i), parkingSpot.isAvailable());
+            }
+            availabilityIndex = index;
+            logger.info("Loaded availability of {} parking spots", parkingSpots.size());
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Chooses spots with the strategy rather than taking the lowest free one, or with none if null.
+     */
+    public void setAllocationStrategy(AllocationStrategy allocationStrategy) {
+        this.allocationStrategy = allocationStrategy;
+    }
+
+    private int claimInIndex(SpotAvailabilityIndex index, ParkingType parkingType, int entrance) {
+        AllocationStrategy strategy = allocationStrategy;
+        if (strategy == null) {
+            return index.claimFirstAvailable(parkingType);
+        }
+        return getAllocator(index, strategy).claim(parkingType, entrance);
+    }
+
+    /**
+     * @return the allocator of the index, created again when the index is loaded again.
+     */
+    private SpotAllocator getAllocator(SpotAvailabilityIndex index, AllocationStrategy strategy) {
+        SpotAllocator spotAllocator = allocator;
+        if (spotAllocator == null || spotAllocator.getSpots() != index || spotAllocator.getStrategy() != strategy) {
+            synchronized (this) {
+                spotAllocator = allocator;
+                if (spotAllocator == null || spotAllocator.getSpots() != index || spotAllocator.getStrategy() != strategy) {
+                    spotAllocator = new SpotAllocator(index, strategy);
+                    allocator = spotAllocator;
+                }
+            }
+        }
+        return spotAllocator;
+    }
+
+    /**
+     * Replaces the availability index with the one of a snapshot, once the spots changed since
+     * {@code changedSinceMillis} are read again. Reads the whole table instead if a spot was added or changed type or zone since.
+     */
+    public void warmStart(CacheSnapshot snapshot, long changedSinceMillis) throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS_CHANGED_SINCE);
+            ps.setTimestamp(1, new Timestamp(changedSinceMillis));
+            rs = ps.executeQuery();
+            List<ParkingSpot> changedSpots = new ArrayList<>();
+            List<Integer> zones = new ArrayList<>();
+            while (rs.next()) {
+                changedSpots.add(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2)));
+                zones.add(rs.getInt(4));
+            }
+
+            SpotAvailabilityIndex index = snapshot.getSpots();
+            for (int i = 0; i < changedSpots.size(); i++) {
+                ParkingSpot parkingSpot = changedSpots.get(i);
+                if (index.getParkingType(parkingSpot.getId()) != parkingSpot.getParkingType()
+                        || index.getZone(parkingSpot.getId()) != zones.get(i)) {
+                    logger.info("Parking spot {} changed since the snapshot, reading every spot", parkingSpot.getId());
+                    loadAvailabilityIndex();
+                    return;
+                }
+                index.setAvailable(parkingSpot.getId(), parkingSpot.isAvailable());
+            }
+            availabilityIndex = index;
+            logger.info("Loaded availability of parking spots from a snapshot, {} changed since", changedSpots.size());
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Reads again the spots taken in the availability index that no open ticket is parked on. After a warm
+     * start those may have been claimed by a unit of work that rolled back after the snapshot was taken, which
+     * leaves their {@code UPDATED_AT} as it was.
+     *
+     * @param heldSpots the spots of the open tickets.
+     */
+    void reconcileTakenSpots(Set<Integer> heldSpots) throws Exception {
+        SpotAvailabilityIndex index = availabilityIndex;
+        if (index == null) {
+            return;
+        }
+        Set<Integer> suspectSpots = new HashSet<>();
+        for (int number = 1; number <= index.getMaxSpotNumber(); number++) {
+            if (index.contains(number) && !index.isAvailable(number) && !heldSpots.contains(number)) {
+                suspectSpots.add(number);
+            }
+        }
+        if (suspectSpots.isEmpty()) {
+            return;
+        }
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            rs = ps.executeQuery();
+            int freed = 0;
+            while (rs.next()) {
+                int number = rs.getInt(1);
+                if (suspectSpots.contains(number) && rs.getBoolean(2)) {
+                    index.setAvailable(number, true);
+                    freed++;
+                }
+            }
+            if (freed > 0) {
+                logger.warn("Freed {} parking spots taken in the snapshot but free in the database", freed);
+            }
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    SpotAvailabilityIndex getAvailabilityIndex() throws Exception {
+        SpotAvailabilityIndex index = availabilityIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (availabilityIndex == null) {
+                    loadAvailabilityIndex();
+                }
+                index = availabilityIndex;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Marks a spot taken in the availability index, for a spot claimed by {@link ParkingEntryDAO}.
+     */
+    void trackClaimedSlot(ParkingSpot parkingSpot) {
+        updateAvailabilityIndex(parkingSpot);
+    }
+
+    private void updateAvailabilityIndex(ParkingSpot parkingSpot) {
+        SpotAvailabilityIndex index = availabilityIndex;
+        if (index == null) {
+            return;
+        }
+        int parkingNumber = parkingSpot.getId();
+        boolean wasAvailable = index.isAvailable(parkingNumber);
+        if (index.setAvailable(parkingNumber, parkingSpot.isAvailable())) {
+            UnitOfWork.onRollback(() -> index.setAvailable(parkingNumber, wasAvailable));
+        } else {
+            // a spot added to the table after the index was loaded
+            availabilityIndex = null;
+        }
+    }
 }
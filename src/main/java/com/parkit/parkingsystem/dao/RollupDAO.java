@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.rollup.RollupRow;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and adds to the {@code parking_rollup} table of the
+ * {@link com.parkit.parkingsystem.rollup.ParkingRollups}.
+ */
+public class RollupDAO {
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    /**
+     * Adds the increments to the rows of their period and type, creating them if needed, in one transaction.
+     */
+    public void addRollups(List<RollupRow> increments) throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(DBConstants.ADD_ROLLUP);
+            for (RollupRow increment : increments) {
+                ps.setString(1, increment.getPeriod().name());
+                ps.setTimestamp(2, new Timestamp(increment.getPeriodStartMillis()));
+                ps.setString(3, increment.getParkingType().name());
+                ps.setLong(4, increment.getVisits());
+                ps.setLong(5, increment.getExits());
+                ps.setLong(6, increment.getRevenueCents());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            con.commit();
+        } catch (Exception e) {
+            if (con != null) {
+                con.rollback();
+            }
+            throw e;
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * @return the rows of the periods starting at or after this time.
+     */
+    public List<RollupRow> loadRollups(long sinceMillis) throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_ROLLUPS_SINCE);
+            ps.setTimestamp(1, new Timestamp(sinceMillis));
+            rs = ps.executeQuery();
+            List<RollupRow> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(new RollupRow(RollupRow.Period.valueOf(rs.getString(1)), rs.getTimestamp(2).getTime(),
+                        ParkingType.valueOf(rs.getString(3)), rs.getLong(4), rs.getLong(5), rs.getLong(6)));
+            }
+            return rows;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * @return the number of open tickets of each parking type, to start the occupancy counters from.
+     */
+    public Map<ParkingType, Long> countOpenTickets() throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.COUNT_OPEN_TICKETS_BY_TYPE);
+            rs = ps.executeQuery();
+            Map<ParkingType, Long> openTickets = new EnumMap<>(ParkingType.class);
+            while (rs.next()) {
+                openTickets.put(ParkingType.valueOf(rs.getString(1)), rs.getLong(2));
+            }
+            return openTickets;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+}
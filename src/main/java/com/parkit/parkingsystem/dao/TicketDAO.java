@@ -1,106 +1,187 @@
 package com.parkit.parkingsystem.dao;
 
+import com.parkit.parkingsystem.cache.ActiveTicketIndex;
+import com.parkit.parkingsystem.cache.CacheSnapshot;
+import com.parkit.parkingsystem.cache.HighWaterMark;
+import com.parkit.parkingsystem.cache.VisitCounterCache;
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.DurabilityPolicy;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketPage;
+import com.parkit.parkingsystem.util.FormatUtil;
+import com.parkit.parkingsystem.store.SpotStore;
+import com.parkit.parkingsystem.store.TicketStore;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class TicketDAO {
+public class TicketDAO implements TicketStore {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    public static final int VISIT_COUNTER_MAX_VEHICLES = 100_000;
+    public static final int WRITE_BEHIND_QUEUE_CAPACITY = 10_000;
+    public static final int WRITE_BEHIND_MAX_BATCH_SIZE = 500;
+    public static final long WRITE_BEHIND_MAX_DELAY_MILLIS = 20;
+
+    private static final OperationMetrics SAVE_TICKET = Metrics.operation("TicketDAO.saveTicket");
+    private static final OperationMetrics GET_TICKET = Metrics.operation("TicketDAO.getTicket");
+    private static final OperationMetrics UPDATE_TICKET = Metrics.operation("TicketDAO.updateTicket");
+    private static final OperationMetrics IS_VEHICLE_ALREADY_IN_PARKING = Metrics.operation("TicketDAO.isVehicleAlreadyInParking");
+    private static final OperationMetrics GET_NB_TICKET = Metrics.operation("TicketDAO.getNbTicket");
+    private static final OperationMetrics READ_TICKET_PAGE = Metrics.operation("TicketDAO.readTicketPage");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private volatile ActiveTicketIndex activeTicketIndex;
+
+    private final VisitCounterCache visitCounterCache = new VisitCounterCache(VISIT_COUNTER_MAX_VEHICLES);
+
+    private volatile DurabilityPolicy durabilityPolicy = DurabilityPolicy.SYNC;
+    private volatile TicketWriteBehind writeBehind;
+    private volatile SpotStore spotStore;
+    // vehicles whose visit counters are being loaded in the background
+    private final Set<String> visitCounterLoads = ConcurrentHashMap.newKeySet();
+
     public boolean saveTicket(Ticket ticket){
+        long start = System.nanoTime();
+        if (durabilityPolicy != DurabilityPolicy.SYNC) {
+            boolean queued = saveTicketWriteBehind(ticket);
+            SAVE_TICKET.record(start);
+            return queued;
+        }
         Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet generatedKeys = null;
         boolean result = false;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             //ps.setInt(1,ticket.getId());
             ps.setInt(1,ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
             ps.setDouble(3, ticket.getPrice());
-            ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTimeInMillis()));
-            ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTimeInMillis())) );
-            result = ps.execute();
+            ps.setTimestamp(4, new Timestamp(ticket.getInTimeMillis()));
+            ps.setTimestamp(5, ticket.hasOutTime() ? new Timestamp(ticket.getOutTimeMillis()) : null);
+            ps.execute();
+            result = true;
+            generatedKeys = ps.getGeneratedKeys();
+            if (generatedKeys.next()) {
+                ticket.setId(generatedKeys.getInt(1));
+            }
+            dataBaseConfig.recordWrite(ticket.getVehicleRegNumber());
+
+            trackSavedTicket(ticket);
         }catch (Exception e){
+            SAVE_TICKET.error();
+            UnitOfWork.setRollbackOnly();
             logger.error("Error fetching next available slot",e);
         }finally {
+            dataBaseConfig.closeResultSet(generatedKeys);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            SAVE_TICKET.record(start);
         }
         return result;
     }
 
+    /**
+     * Returns the open ticket of the vehicle from the active-ticket index, or its latest
+     * ticket from the database if the vehicle is not parked.
+     *
+     * @param vehicleRegNumber the registration number of the vehicle.
+     * @return the ticket, or null if the vehicle has no ticket.
+     */
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        ActiveTicketIndex index = getActiveTicketIndexOrNull();
+        if (index != null) {
+            Ticket openTicket = index.get(vehicleRegNumber);
+            if (openTicket != null) {
+                GET_TICKET.record(start);
+                return openTicket;
+            }
+        }
+
         Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
         Ticket ticket = null;
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
+            flushPendingWrites();
+            con = dataBaseConfig.getReadConnection(vehicleRegNumber);
+            ps = con.prepareStatement(DBConstants.GET_TICKET);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             ps.setString(1,vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
+            rs = ps.executeQuery();
             if(rs.next()){
-                ticket = new Ticket();
-                Calendar inTime = Calendar.getInstance();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
-                
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                inTime.setTimeInMillis(rs.getTimestamp(4).getTime());
-                ticket.setInTime(inTime);              
-                Timestamp outTime = rs.getTimestamp(5);
-
-                if (outTime != null) {
-                    Calendar outCalendar = Calendar.getInstance();
-                    outCalendar.setTime(outTime);
-                    ticket.setOutTime(outCalendar);
-                } else {
-                    ticket.setOutTime(null);
-                }
+                ticket = mapTicket(rs, vehicleRegNumber);
             }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception e){
+            GET_TICKET.error();
             logger.error("Error fetching next available slot", e);
         }finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            GET_TICKET.record(start);
         }
             
         return ticket;
     }
 
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        if (durabilityPolicy != DurabilityPolicy.SYNC) {
+            boolean queued = updateTicketWriteBehind(ticket);
+            UPDATE_TICKET.record(start);
+            return queued;
+        }
         Connection con = null;
+        PreparedStatement ps = null;
         try {
             con = dataBaseConfig.getConnection();
     
-            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
             ps.setDouble(1, ticket.getPrice());
-            ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTimeInMillis()));
+            ps.setTimestamp(2, new Timestamp(ticket.getOutTimeMillis()));
             ps.setInt(3,ticket.getId());
             ps.executeUpdate();
-            
-            dataBaseConfig.closeConnection(con);
+            dataBaseConfig.recordWrite(ticket.getVehicleRegNumber());
+
+            trackClosedTicket(ticket);
 
             return true;
         }catch (Exception e){
+            UPDATE_TICKET.error();
+            UnitOfWork.setRollbackOnly();
             logger.error("Error saving ticket info", e);
         }finally {
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            UPDATE_TICKET.record(start);
         }
 
         return false;
@@ -114,27 +195,42 @@ public class TicketDAO {
      * false otherwise. 
      */
     public boolean isVehicleAlreadyInParking(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        ActiveTicketIndex index = getActiveTicketIndexOrNull();
+        if (index != null) {
+            boolean isInParking = index.contains(vehicleRegNumber);
+            if (isInParking) {
+                logger.info("Entry attempt failure: the vehicle {} has never exited since the last entry", vehicleRegNumber);
+            }
+            IS_VEHICLE_ALREADY_IN_PARKING.record(start);
+            return isInParking;
+        }
 
         Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
         boolean isInParking = false;
 
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getReadConnection(vehicleRegNumber);
 
-            PreparedStatement ps = con.prepareStatement(DBConstants.CHECK_VEHICLE_IN_WITHOUT_OUT);
+            ps = con.prepareStatement(DBConstants.CHECK_VEHICLE_IN_WITHOUT_OUT);
             ps.setString(1, vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
+            rs = ps.executeQuery();
 
             if (rs.next()) {
                 logger.info("Entry attempt failure: the vehicle {} has never exited since the last entry", vehicleRegNumber);
 
                 isInParking = true;
             }
-
         } catch(Exception e) {
+            IS_VEHICLE_ALREADY_IN_PARKING.error();
             logger.error("An error occurred : ", e);
         } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);    
+            IS_VEHICLE_ALREADY_IN_PARKING.record(start);
         }
 
         return isInParking;
@@ -143,35 +239,517 @@ public class TicketDAO {
 
     /**
      * This method verifies how many times a vehicle has used the service in the last 30 days. 
+     * The count is answered from the visit counter cache; the visits of a vehicle missing from
+     * the cache are read once from the database.
      * 
      * @param vehicleRegNumber the registration number of the vehicle.
      * @return the number of times the vehicle has used the service within the last 30 days. 
      */
     public int getNbTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        long today = VisitCounterCache.epochDay(System.currentTimeMillis());
+        int count = visitCounterCache.count(vehicleRegNumber, today);
+        if (count >= 0) {
+            GET_NB_TICKET.record(start);
+            return count;
+        }
+
         Connection con = null;
-        int count = 0;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        count = 0;
 
         try {
-            con = dataBaseConfig.getConnection();
+            flushPendingWrites();
+            con = dataBaseConfig.getReadConnection(vehicleRegNumber);
 
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKETS);
+            ps = con.prepareStatement(DBConstants.GET_TICKET_IN_TIMES);
             ps.setString(1, vehicleRegNumber);
-            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000)));
-            ResultSet rs = ps.executeQuery();
+            ps.setTimestamp(2, new Timestamp(startOfDay(VisitCounterCache.firstDayOfWindow(today))));
+            rs = ps.executeQuery();
 
-            if (rs.next()) {
-                count = rs.getInt(1);
+            List<Long> inTimes = new ArrayList<>();
+            while (rs.next()) {
+                inTimes.add(rs.getTimestamp(1).getTime());
             }
 
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
-
+            visitCounterCache.load(vehicleRegNumber, today, inTimes);
+            count = visitCounterCache.count(vehicleRegNumber, today);
         } catch(Exception e) {
+            GET_NB_TICKET.error();
             logger.error("Error fetching ticket count for vehicle {}", vehicleRegNumber, e);
         } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
+            GET_NB_TICKET.record(start);
         }
 
         return count;
     }
+
+    /**
+     * Answers from the visit counter cache only. The visits of a vehicle missing from the cache are read from
+     * the database in the background, for the next call.
+     *
+     * @return the number of visits, or -1 if the vehicle is not in the cache yet.
+     */
+    @Override
+    public int getCachedNbTicket(String vehicleRegNumber) {
+        int count = visitCounterCache.count(vehicleRegNumber, VisitCounterCache.epochDay(System.currentTimeMillis()));
+        if (count < 0 && visitCounterLoads.add(vehicleRegNumber)) {
+            Thread.ofVirtual().name("visit-counter-loader").start(() -> {
+                try {
+                    getNbTicket(vehicleRegNumber);
+                } finally {
+                    visitCounterLoads.remove(vehicleRegNumber);
+                }
+            });
+        }
+        return count;
+    }
+
+    /**
+     * Reads in the background the visits of the parked vehicles missing from the visit counter cache, so that
+     * their exits can be priced from the cache.
+     */
+    public void loadVisitCountersOfParkedVehicles() {
+        ActiveTicketIndex index = getActiveTicketIndexOrNull();
+        if (index == null) {
+            return;
+        }
+        List<Ticket> openTickets = index.getTickets();
+        Thread.ofVirtual().name("visit-counter-loader").start(() -> {
+            for (Ticket ticket : openTickets) {
+                getNbTicket(ticket.getVehicleRegNumber());
+            }
+            logger.info("Loaded the visit counters of {} parked vehicles", openTickets.size());
+        });
+    }
+
+    /**
+     * Reads the tickets following (afterInTime, afterId) in (in-time, id) order, as many as fit in the page.
+     * Each page is a short query of its own, served by a replica if there is one, so reading a whole table
+     * page by page neither buffers it nor holds a connection or a transaction open in between.
+     *
+     * @param afterInTimeMillis the in-time of the last ticket of the previous page, or the start of the range
+     * with {@code afterId} 0.
+     * @param toInTimeMillis the end of the range, excluded.
+     * @param page filled with the tickets read, after being cleared.
+     * @return the number of tickets read; less than the capacity of the page on the last page.
+     */
+    public int readTicketPage(long afterInTimeMillis, int afterId, long toInTimeMillis, TicketPage page) throws Exception {
+        long start = System.nanoTime();
+        page.clear();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getReadConnection(null);
+            ps = con.prepareStatement(DBConstants.GET_TICKET_PAGE);
+            ps.setTimestamp(1, new Timestamp(afterInTimeMillis));
+            ps.setInt(2, afterId);
+            ps.setTimestamp(3, new Timestamp(toInTimeMillis));
+            ps.setInt(4, page.capacity());
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                Timestamp outTime = rs.getTimestamp(7);
+                page.add(rs.getInt(1), rs.getInt(2), ParkingType.valueOf(rs.getString(3)), rs.getString(4),
+                        FormatUtil.toCents(rs.getDouble(5)), rs.getTimestamp(6).getTime(),
+                        outTime == null ? Ticket.NO_TIME : outTime.getTime());
+            }
+            return page.size();
+        } catch (Exception e) {
+            READ_TICKET_PAGE.error();
+            throw e;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            READ_TICKET_PAGE.record(start);
+        }
+    }
+
+    /**
+     * Returns the open ticket of the vehicle from the active-ticket index only, as the database may not have
+     * caught up with the {@link com.parkit.parkingsystem.journal.GateJournal gate journal} yet. Falls back to
+     * the database if the index can't be loaded.
+     *
+     * @return the open ticket, or null if the vehicle is not parked.
+     */
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        ActiveTicketIndex index = getActiveTicketIndexOrNull();
+        if (index != null) {
+            return index.get(vehicleRegNumber);
+        }
+        Ticket ticket = getTicket(vehicleRegNumber);
+        return ticket != null && !ticket.hasOutTime() ? ticket : null;
+    }
+
+    /**
+     * Updates the open tickets and visit counts for a ticket saved in the gate journal rather than by this DAO.
+     */
+    public void trackJournaledEntry(Ticket ticket) {
+        getActiveTicketIndexOrNull();
+        // counted once the vehicle is loaded if it isn't, unless the database has it by then
+        trackSavedTicket(ticket);
+    }
+
+    /**
+     * Updates the open tickets for a ticket closed in the gate journal rather than by this DAO.
+     */
+    public void trackJournaledExit(Ticket ticket) {
+        trackClosedTicket(ticket);
+    }
+
+    /**
+     * Updates the open tickets and visit counts for a ticket saved by {@link ParkingEntryDAO}.
+     */
+    void trackEnteredTicket(Ticket ticket) {
+        trackSavedTicket(ticket);
+    }
+
+    /**
+     * Forgets every cached visit count. Must be called if the {@code ticket} table is
+     * modified by anything else than this DAO.
+     */
+    public void clearVisitCounters() {
+        visitCounterCache.clear();
+    }
+
+    static long startOfDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Chooses how ticket inserts and updates are written. With {@link DurabilityPolicy#GROUP_COMMIT} and
+     * {@link DurabilityPolicy#ASYNC}, writes go through a {@link TicketWriteBehind} queue and are written
+     * by a background thread after the caller's unit of work has committed; {@link #close()} must then be
+     * called before shutting down so that nothing queued is lost.
+     */
+    public synchronized void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        if (durabilityPolicy != DurabilityPolicy.SYNC && writeBehind == null) {
+            writeBehind = new TicketWriteBehind(dataBaseConfig, WRITE_BEHIND_QUEUE_CAPACITY,
+                    WRITE_BEHIND_MAX_BATCH_SIZE, WRITE_BEHIND_MAX_DELAY_MILLIS);
+        }
+        this.durabilityPolicy = durabilityPolicy;
+    }
+
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durabilityPolicy;
+    }
+
+    /**
+     * Sets where to free the spot of an entry whose queued ticket insert is lost, once the unit of work that
+     * claimed it has committed. Without it, such spots stay taken until freed by hand.
+     */
+    public void setSpotStore(SpotStore spotStore) {
+        this.spotStore = spotStore;
+    }
+
+    /**
+     * Writes every queued ticket write and stops the background writer, if any.
+     * Later writes are done synchronously.
+     */
+    public synchronized void close() {
+        TicketWriteBehind writer = writeBehind;
+        if (writer == null) {
+            return;
+        }
+        durabilityPolicy = DurabilityPolicy.SYNC;
+        try {
+            writer.close();
+            logger.info("Queued ticket writes flushed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while flushing queued ticket writes", e);
+        }
+        writeBehind = null;
+    }
+
+    private boolean saveTicketWriteBehind(Ticket ticket) {
+        try {
+            // make sure the visit counter of the vehicle is cached, as the database won't see this visit yet
+            getNbTicket(ticket.getVehicleRegNumber());
+            trackSavedTicket(ticket);
+            Ticket queuedTicket = copyForWriteBehind(ticket);
+            UnitOfWork.afterCommit(() -> queueWrite(queuedTicket, true));
+            return true;
+        } catch (Exception e) {
+            SAVE_TICKET.error();
+            UnitOfWork.setRollbackOnly();
+            logger.error("Error queuing ticket", e);
+            return false;
+        }
+    }
+
+    private boolean updateTicketWriteBehind(Ticket ticket) {
+        try {
+            trackClosedTicket(ticket);
+            Ticket queuedTicket = copyForWriteBehind(ticket);
+            UnitOfWork.afterCommit(() -> queueWrite(queuedTicket, false));
+            return true;
+        } catch (Exception e) {
+            UPDATE_TICKET.error();
+            UnitOfWork.setRollbackOnly();
+            logger.error("Error queuing ticket update", e);
+            return false;
+        }
+    }
+
+    private void queueWrite(Ticket ticket, boolean insert) {
+        CompletableFuture<Void> written;
+        try {
+            TicketWriteBehind writer = writeBehind;
+            if (writer == null) {
+                throw new IllegalStateException("Ticket writer closed before the ticket of vehicle "
+                        + ticket.getVehicleRegNumber() + " was queued");
+            }
+            written = insert ? writer.insert(ticket) : writer.update(ticket);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (insert) {
+                untrackLostTicket(ticket);
+            }
+            throw new IllegalStateException("Interrupted while queuing ticket write", e);
+        } catch (RuntimeException e) {
+            if (insert) {
+                untrackLostTicket(ticket);
+            }
+            throw e;
+        }
+        if (insert) {
+            // undone before a group commit caller sees the failure, so that the gate can let the vehicle in again
+            written = written.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    untrackLostTicket(ticket);
+                }
+            });
+        }
+        if (durabilityPolicy == DurabilityPolicy.GROUP_COMMIT) {
+            written.join();
+        }
+    }
+
+    /**
+     * Undoes {@link #trackSavedTicket(Ticket)} for a ticket whose insert was lost after its unit of work
+     * committed, and frees its spot.
+     */
+    private void untrackLostTicket(Ticket ticket) {
+        ActiveTicketIndex index = activeTicketIndex;
+        if (index != null) {
+            index.remove(ticket);
+        }
+        visitCounterCache.removeVisit(ticket.getVehicleRegNumber(), ticket.getInTimeMillis());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        SpotStore store = spotStore;
+        if (store == null || !store.updateParking(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), true))) {
+            logger.error("Spot {} of the lost ticket of vehicle {} is still taken", parkingSpot.getId(),
+                    ticket.getVehicleRegNumber());
+        }
+    }
+
+    /**
+     * Waits for the queued writes before reading from the database, so that reads see them.
+     * Skipped inside a unit of work, whose locks the background writer could be waiting for.
+     */
+    private void flushPendingWrites() throws InterruptedException {
+        TicketWriteBehind writer = writeBehind;
+        if (writer != null && !UnitOfWork.isActive()) {
+            writer.flush();
+        }
+    }
+
+    private static Ticket copyForWriteBehind(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setParkingSpot(ticket.getParkingSpot());
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTimeMillis(ticket.getInTimeMillis());
+        copy.setOutTimeMillis(ticket.getOutTimeMillis());
+        return copy;
+    }
+
+    private void trackSavedTicket(Ticket ticket) {
+        ActiveTicketIndex index = activeTicketIndex;
+        if (index != null && !ticket.hasOutTime()) {
+            index.put(ticket);
+            UnitOfWork.onRollback(() -> index.remove(ticket));
+        }
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        long inTimeMillis = ticket.getInTimeMillis();
+        visitCounterCache.recordVisit(vehicleRegNumber, inTimeMillis);
+        UnitOfWork.onRollback(() -> visitCounterCache.removeVisit(vehicleRegNumber, inTimeMillis));
+    }
+
+    private void trackClosedTicket(Ticket ticket) {
+        ActiveTicketIndex index = activeTicketIndex;
+        if (index != null) {
+            Ticket openTicket = index.get(ticket.getVehicleRegNumber());
+            index.remove(ticket);
+            if (openTicket != null && openTicket.getId() == ticket.getId()) {
+                UnitOfWork.onRollback(() -> index.put(openTicket));
+            }
+        }
+    }
+
+    /**
+     * Reads every open ticket (without out-time) and replaces the in-memory active-ticket index.
+     * Must be called again if the {@code ticket} table is modified by anything else than this DAO.
+     */
+    public void loadActiveTicketIndex() throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+            rs = ps.executeQuery();
+            ActiveTicketIndex index = new ActiveTicketIndex();
+            // ordered by in-time: the latest open ticket of a vehicle wins, as in GET_TICKET
+            while (rs.next()) {
+                index.put(mapTicket(rs, rs.getString(7)));
+            }
+            activeTicketIndex = index;
+            logger.info("Loaded {} open tickets", index.size());
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * @return the highest ticket id and the current time of the database.
+     */
+    public HighWaterMark readHighWaterMark() throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_HIGH_WATER_MARK);
+            rs = ps.executeQuery();
+            rs.next();
+            HighWaterMark mark = new HighWaterMark(rs.getInt(1), rs.getTimestamp(2).getTime());
+            return mark;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Replaces the open tickets and visit counts with those of a snapshot, once the tickets changed since
+     * {@code changedSinceMillis} are read again. The visits of the vehicles of those tickets are counted
+     * again from the database when next needed.
+     *
+     * <p>An open ticket of the snapshot that is recent enough to have been read again, but wasn't, was saved
+     * by a unit of work that rolled back after the snapshot was taken, and is dropped.</p>
+     */
+    public void warmStart(CacheSnapshot snapshot, long changedSinceMillis) throws Exception {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<Ticket> changedTickets = new ArrayList<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_TICKETS_CHANGED_SINCE);
+            ps.setTimestamp(1, new Timestamp(changedSinceMillis));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                changedTickets.add(mapTicket(rs, rs.getString(7)));
+            }
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+
+        Set<Integer> changedIds = new HashSet<>();
+        for (Ticket ticket : changedTickets) {
+            changedIds.add(ticket.getId());
+        }
+        ActiveTicketIndex index = new ActiveTicketIndex();
+        int rolledBack = 0;
+        for (Ticket ticket : snapshot.getOpenTickets()) {
+            if ((ticket.getId() > snapshot.getMark().getMaxTicketId() || ticket.getInTimeMillis() >= changedSinceMillis)
+                    && !changedIds.contains(ticket.getId())) {
+                rolledBack++;
+                continue;
+            }
+            index.put(ticket);
+        }
+        if (rolledBack > 0) {
+            logger.warn("Dropped {} open tickets of the snapshot that are not in the database", rolledBack);
+        }
+        visitCounterCache.clear();
+        for (Map.Entry<String, int[]> visits : snapshot.getVisits().entrySet()) {
+            visitCounterCache.importVisits(visits.getKey(), snapshot.getVisitsDay(), visits.getValue());
+        }
+        // ordered by in-time: the latest open ticket of a vehicle wins, as in loadActiveTicketIndex
+        for (Ticket ticket : changedTickets) {
+            String vehicleRegNumber = ticket.getVehicleRegNumber();
+            if (!ticket.hasOutTime()) {
+                index.put(ticket);
+            } else {
+                Ticket openTicket = index.get(vehicleRegNumber);
+                if (openTicket != null && openTicket.getInTimeMillis() <= ticket.getInTimeMillis()) {
+                    index.remove(openTicket);
+                }
+            }
+            visitCounterCache.remove(vehicleRegNumber);
+        }
+        activeTicketIndex = index;
+        logger.info("Loaded {} open tickets from a snapshot, {} tickets changed since", index.size(), changedTickets.size());
+    }
+
+    /**
+     * @return the active-ticket index, loaded on first use, or null if it could not be loaded.
+     */
+    ActiveTicketIndex getActiveTicketIndex() {
+        return getActiveTicketIndexOrNull();
+    }
+
+    /**
+     * @return the visit counts of the cached vehicles, see {@link VisitCounterCache#exportVisits(long)}.
+     */
+    Map<String, int[]> exportVisitCounters(long today) {
+        return visitCounterCache.exportVisits(today);
+    }
+
+    /**
+     * @return the active-ticket index, loaded on first use, or null if it could not be loaded.
+     */
+    private ActiveTicketIndex getActiveTicketIndexOrNull() {
+        ActiveTicketIndex index = activeTicketIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (activeTicketIndex == null) {
+                    try {
+                        loadActiveTicketIndex();
+                    } catch (Exception e) {
+                        logger.error("Error loading open tickets, falling back to database lookups", e);
+                    }
+                }
+                index = activeTicketIndex;
+            }
+        }
+        return index;
+    }
+
+    private Ticket mapTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)),false);
+
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTimeMillis(rs.getTimestamp(4).getTime());
+        Timestamp outTime = rs.getTimestamp(5);
+        ticket.setOutTimeMillis(outTime == null ? Ticket.NO_TIME : outTime.getTime());
+        return ticket;
+    }
 }
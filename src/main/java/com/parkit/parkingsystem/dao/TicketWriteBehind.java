@@ -0,0 +1,239 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes ticket inserts and updates to the database from a background thread.
+ *
+ * <p>Writes are queued in a bounded queue (callers block when it is full) and written in groups:
+ * a group is closed when it reaches {@code maxBatchSize} writes or when its oldest write is
+ * {@code maxDelayMillis} old. Each group is sent with JDBC batches and committed once. Writes are
+ * applied in the order they were queued.</p>
+ *
+ * <p>Updates identify the ticket by its vehicle and missing out-time rather than by ID, since a
+ * queued insert has no ID yet.</p>
+ */
+public class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger("TicketWriteBehind");
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private enum WriteType { INSERT, UPDATE, FLUSH }
+
+    private static final class PendingWrite {
+        private final WriteType type;
+        private final Ticket ticket;
+        private final long queuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(WriteType type, Ticket ticket) {
+            this.type = type;
+            this.ticket = ticket;
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    public TicketWriteBehind(DataBaseConfig dataBaseConfig, int queueCapacity, int maxBatchSize, long maxDelayMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::writeLoop, "ticket-write-behind");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the insert of a new ticket.
+     *
+     * @return completed once the group containing the insert has been committed.
+     */
+    public CompletableFuture<Void> insert(Ticket ticket) throws InterruptedException {
+        return enqueue(new PendingWrite(WriteType.INSERT, ticket));
+    }
+
+    /**
+     * Queues the update of the price and out-time of the open ticket of the vehicle.
+     *
+     * @return completed once the group containing the update has been committed.
+     */
+    public CompletableFuture<Void> update(Ticket ticket) throws InterruptedException {
+        return enqueue(new PendingWrite(WriteType.UPDATE, ticket));
+    }
+
+    /**
+     * Waits until every write queued so far has been written.
+     */
+    public void flush() throws InterruptedException {
+        if (!writerThread.isAlive()) {
+            return;
+        }
+        PendingWrite marker = new PendingWrite(WriteType.FLUSH, null);
+        queue.put(marker);
+        marker.done.join();
+    }
+
+    /**
+     * Writes what is queued, then stops the background writer. Later writes are refused.
+     */
+    public void close() throws InterruptedException {
+        flush();
+        closed = true;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public int getQueuedWrites() {
+        return queue.size();
+    }
+
+    private CompletableFuture<Void> enqueue(PendingWrite write) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Ticket writer is closed");
+        }
+        queue.put(write);
+        return write.done;
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.take();
+                group.add(first);
+                long deadline = first.queuedAt + maxDelayMillis;
+                while (group.size() < maxBatchSize && first.type != WriteType.FLUSH) {
+                    PendingWrite next = queue.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    if (next.type == WriteType.FLUSH) {
+                        break;
+                    }
+                }
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void writeGroup(List<PendingWrite> group) {
+        if (group.stream().allMatch(write -> write.type == WriteType.FLUSH)) {
+            group.forEach(write -> write.done.complete(null));
+            return;
+        }
+        Exception failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                executeGroup(group);
+                group.forEach(write -> write.done.complete(null));
+                return;
+            } catch (SQLException | ClassNotFoundException e) {
+                failure = e instanceof SQLException ? e : new SQLException(e);
+                logger.error("Error writing a group of {} ticket writes (attempt {}/{})", group.size(), attempt, MAX_ATTEMPTS, e);
+            } catch (RuntimeException e) {
+                // not worth retrying, and must not stop the writer thread
+                failure = e;
+                logger.error("Error writing a group of {} ticket writes", group.size(), e);
+                break;
+            }
+        }
+        for (PendingWrite write : group) {
+            if (write.type != WriteType.FLUSH) {
+                logger.error("Lost ticket {} of vehicle {}", write.type,
+                        write.ticket == null ? null : write.ticket.getVehicleRegNumber());
+            }
+            write.done.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Writes the group in one transaction, sending consecutive writes of the same type as one JDBC batch.
+     */
+    private void executeGroup(List<PendingWrite> group) throws SQLException, ClassNotFoundException {
+        Connection con = null;
+        PreparedStatement insert = null;
+        PreparedStatement update = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            insert = con.prepareStatement(DBConstants.SAVE_TICKET);
+            update = con.prepareStatement(DBConstants.UPDATE_OPEN_TICKET);
+            WriteType batched = null;
+            for (PendingWrite write : group) {
+                if (write.type == WriteType.FLUSH) {
+                    continue;
+                }
+                if (batched != null && batched != write.type) {
+                    (batched == WriteType.INSERT ? insert : update).executeBatch();
+                }
+                batched = write.type;
+                Ticket ticket = write.ticket;
+                if (write.type == WriteType.INSERT) {
+                    insert.setInt(1, ticket.getParkingSpot().getId());
+                    insert.setString(2, ticket.getVehicleRegNumber());
+                    insert.setDouble(3, ticket.getPrice());
+                    insert.setTimestamp(4, new Timestamp(ticket.getInTimeMillis()));
+                    insert.setTimestamp(5, ticket.hasOutTime() ? new Timestamp(ticket.getOutTimeMillis()) : null);
+                    insert.addBatch();
+                } else {
+                    update.setDouble(1, ticket.getPrice());
+                    update.setTimestamp(2, new Timestamp(ticket.getOutTimeMillis()));
+                    update.setString(3, ticket.getVehicleRegNumber());
+                    update.addBatch();
+                }
+            }
+            if (batched != null) {
+                (batched == WriteType.INSERT ? insert : update).executeBatch();
+            }
+            con.commit();
+            for (PendingWrite write : group) {
+                if (write.type != WriteType.FLUSH) {
+                    dataBaseConfig.recordWrite(write.ticket.getVehicleRegNumber());
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackError) {
+                    // the connection is likely gone: keep the cause
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            dataBaseConfig.closePreparedStatement(insert);
+            dataBaseConfig.closePreparedStatement(update);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+}
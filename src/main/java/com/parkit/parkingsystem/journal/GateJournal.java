@@ -0,0 +1,297 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only journal of the vehicles entering and leaving, on a memory-mapped file.
+ *
+ * <p>Records have a fixed size of {@value #RECORD_SIZE} bytes and end with a CRC32C of their content. They are
+ * numbered from 1 and record {@code n} lives in slot {@code (n - 1) % capacity}, so the file is a ring of
+ * fixed size: once the {@link JournalReplayer} has applied records to the database, their slots are reused.
+ * The header keeps the sequence of the last applied record. Each append is forced to disk before it returns,
+ * so an acknowledged entry or exit survives a crash of the application or of the machine.</p>
+ *
+ * <p>On open, the records following the last applied one are read back for as long as they hold the expected
+ * sequence and a valid checksum; a record torn by a crash while being written ends the journal there.</p>
+ */
+public class GateJournal implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("GateJournal");
+
+    public static final int RECORD_SIZE = 128;
+    public static final int MAX_VEHICLE_REG_NUMBER_BYTES = 64;
+
+    private static final int MAGIC = 0x504B4A31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 128;
+
+    // header layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_APPLIED_SEQUENCE = 16;
+
+    // record layout
+    private static final int RECORD_SEQUENCE = 0;
+    private static final int RECORD_TYPE = 8;
+    private static final int RECORD_PARKING_TYPE = 9;
+    private static final int RECORD_VEHICLE_REG_NUMBER_LENGTH = 10;
+    private static final int RECORD_PARKING_NUMBER = 12;
+    private static final int RECORD_IN_TIME = 16;
+    private static final int RECORD_OUT_TIME = 24;
+    private static final int RECORD_PRICE_CENTS = 32;
+    private static final int RECORD_VEHICLE_REG_NUMBER = 40;
+    private static final int RECORD_CHECKSUM = RECORD_SIZE - Integer.BYTES;
+
+    private static final JournalRecord.Type[] TYPES = JournalRecord.Type.values();
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final Path path;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32C checksum = new CRC32C();
+    private long appliedSequence;
+    private long lastSequence;
+    private boolean closed;
+
+    private GateJournal(Path path, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.capacity = capacity;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the journal, creating the file if it does not exist.
+     *
+     * @param capacity how many records can wait to be applied; must be the one the file was created with.
+     * @throws IOException if the file can't be mapped or is not a journal of this capacity.
+     */
+    public static GateJournal open(Path path, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity too large to map: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (!created && channel.size() != size) {
+                throw new IOException("Journal " + path + " has " + channel.size() + " bytes, expected " + size);
+            }
+            GateJournal journal = new GateJournal(path, capacity, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            if (created) {
+                journal.writeHeader();
+            } else {
+                journal.readHeader();
+            }
+            journal.recover();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+        buffer.putInt(HEADER_CAPACITY, capacity);
+        buffer.putLong(HEADER_APPLIED_SEQUENCE, 0);
+        buffer.force(0, HEADER_SIZE);
+    }
+
+    private void readHeader() throws IOException {
+        if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION
+                || buffer.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE || buffer.getInt(HEADER_CAPACITY) != capacity) {
+            throw new IOException("Not a gate journal of capacity " + capacity + ": " + path);
+        }
+        appliedSequence = buffer.getLong(HEADER_APPLIED_SEQUENCE);
+    }
+
+    private void recover() {
+        lastSequence = appliedSequence;
+        while (lastSequence - appliedSequence < capacity && read(lastSequence + 1) != null) {
+            lastSequence++;
+        }
+        if (lastSequence > appliedSequence) {
+            logger.info("Journal {} has {} records to apply, from #{}", path, lastSequence - appliedSequence, appliedSequence + 1);
+        }
+    }
+
+    /**
+     * Writes the record and forces it to disk.
+     *
+     * @return the sequence given to the record.
+     * @throws IOException if the journal is full of records not applied yet.
+     */
+    public synchronized long append(JournalRecord record) throws IOException {
+        checkOpen();
+        if (lastSequence - appliedSequence >= capacity) {
+            throw new IOException("Journal full: " + capacity + " records are waiting to be applied");
+        }
+        byte[] vehicleRegNumber = record.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (vehicleRegNumber.length > MAX_VEHICLE_REG_NUMBER_BYTES) {
+            throw new IllegalArgumentException("Registration number too long: " + record.getVehicleRegNumber());
+        }
+        long sequence = lastSequence + 1;
+        int offset = slot(sequence);
+        buffer.putLong(offset + RECORD_SEQUENCE, sequence);
+        buffer.put(offset + RECORD_TYPE, (byte) record.getType().ordinal());
+        buffer.put(offset + RECORD_PARKING_TYPE, (byte) record.getParkingType().ordinal());
+        buffer.put(offset + RECORD_VEHICLE_REG_NUMBER_LENGTH, (byte) vehicleRegNumber.length);
+        buffer.putInt(offset + RECORD_PARKING_NUMBER, record.getParkingNumber());
+        buffer.putLong(offset + RECORD_IN_TIME, record.getInTimeMillis());
+        buffer.putLong(offset + RECORD_OUT_TIME, record.getOutTimeMillis());
+        buffer.putLong(offset + RECORD_PRICE_CENTS, record.getPriceCents());
+        buffer.put(offset + RECORD_VEHICLE_REG_NUMBER, vehicleRegNumber);
+        buffer.putInt(offset + RECORD_CHECKSUM, checksum(offset));
+        buffer.force(offset, RECORD_SIZE);
+        lastSequence = sequence;
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * @return up to {@code max} records following the last applied one, in order.
+     */
+    public synchronized List<JournalRecord> readPending(int max) {
+        checkOpen();
+        List<JournalRecord> records = new ArrayList<>();
+        for (long sequence = appliedSequence + 1; sequence <= lastSequence && records.size() < max; sequence++) {
+            records.add(read(sequence));
+        }
+        return records;
+    }
+
+    /**
+     * Records that every record up to this sequence has been applied, freeing their slots.
+     */
+    public synchronized void markApplied(long sequence) {
+        checkOpen();
+        if (sequence < appliedSequence || sequence > lastSequence) {
+            throw new IllegalArgumentException("Can't mark #" + sequence + " applied: applied up to #"
+                    + appliedSequence + ", last is #" + lastSequence);
+        }
+        appliedSequence = sequence;
+        buffer.putLong(HEADER_APPLIED_SEQUENCE, sequence);
+        buffer.force(0, HEADER_SIZE);
+        notifyAll();
+    }
+
+    /**
+     * Waits until some records are waiting to be applied.
+     *
+     * @return true if there are records to apply, false on timeout or if the journal was closed.
+     */
+    public synchronized boolean awaitPending(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining;
+        while (!closed && lastSequence == appliedSequence && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+        }
+        return !closed && lastSequence > appliedSequence;
+    }
+
+    /**
+     * Waits until every record appended so far has been applied.
+     *
+     * @return true if no record is waiting, false on timeout or if the journal was closed.
+     */
+    public synchronized boolean awaitApplied(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining;
+        while (!closed && lastSequence > appliedSequence && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+        }
+        return !closed && lastSequence == appliedSequence;
+    }
+
+    public synchronized long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long getPendingCount() {
+        return lastSequence - appliedSequence;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Closes the file. Records not applied yet stay in it, to be applied when it is opened again.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        notifyAll();
+        buffer.force();
+        channel.close();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal closed: " + path);
+        }
+    }
+
+    private int slot(long sequence) {
+        return HEADER_SIZE + (int) ((sequence - 1) % capacity) * RECORD_SIZE;
+    }
+
+    /**
+     * @return the record of this sequence, or null if its slot holds another sequence or a torn record.
+     */
+    private JournalRecord read(long sequence) {
+        int offset = slot(sequence);
+        if (buffer.getLong(offset + RECORD_SEQUENCE) != sequence || buffer.getInt(offset + RECORD_CHECKSUM) != checksum(offset)) {
+            return null;
+        }
+        int type = buffer.get(offset + RECORD_TYPE);
+        int parkingType = buffer.get(offset + RECORD_PARKING_TYPE);
+        int length = buffer.get(offset + RECORD_VEHICLE_REG_NUMBER_LENGTH);
+        if (type < 0 || type >= TYPES.length || parkingType < 0 || parkingType >= PARKING_TYPES.length
+                || length < 0 || length > MAX_VEHICLE_REG_NUMBER_BYTES) {
+            return null;
+        }
+        byte[] vehicleRegNumber = new byte[length];
+        buffer.get(offset + RECORD_VEHICLE_REG_NUMBER, vehicleRegNumber);
+        return new JournalRecord(sequence, TYPES[type], new String(vehicleRegNumber, StandardCharsets.UTF_8),
+                buffer.getInt(offset + RECORD_PARKING_NUMBER), PARKING_TYPES[parkingType],
+                buffer.getLong(offset + RECORD_IN_TIME), buffer.getLong(offset + RECORD_OUT_TIME),
+                buffer.getLong(offset + RECORD_PRICE_CENTS));
+    }
+
+    private int checksum(int offset) {
+        ByteBuffer content = buffer.slice(offset, RECORD_CHECKSUM);
+        checksum.reset();
+        checksum.update(content);
+        return (int) checksum.getValue();
+    }
+}
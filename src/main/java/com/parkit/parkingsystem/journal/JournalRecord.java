@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.FormatUtil;
+
+/**
+ * A vehicle entering or leaving the parking, as written in the {@link GateJournal}.
+ */
+public final class JournalRecord {
+
+    public enum Type {
+        /** A ticket opened on a spot, which is now taken. */
+        ENTRY,
+        /** A ticket closed with its fare, and its spot freed. */
+        EXIT
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final String vehicleRegNumber;
+    private final int parkingNumber;
+    private final ParkingType parkingType;
+    private final long inTimeMillis;
+    private final long outTimeMillis;
+    private final long priceCents;
+
+    JournalRecord(long sequence, Type type, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+                  long inTimeMillis, long outTimeMillis, long priceCents) {
+        this.sequence = sequence;
+        this.type = type;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+        this.inTimeMillis = inTimeMillis;
+        this.outTimeMillis = outTimeMillis;
+        this.priceCents = priceCents;
+    }
+
+    /**
+     * @return the record of a new ticket, not yet numbered.
+     */
+    public static JournalRecord entry(Ticket ticket) {
+        return of(Type.ENTRY, ticket);
+    }
+
+    /**
+     * @return the record of a closed ticket, not yet numbered.
+     */
+    public static JournalRecord exit(Ticket ticket) {
+        return of(Type.EXIT, ticket);
+    }
+
+    private static JournalRecord of(Type type, Ticket ticket) {
+        return new JournalRecord(0, type, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getId(),
+                ticket.getParkingSpot().getParkingType(), ticket.getInTimeMillis(), ticket.getOutTimeMillis(),
+                FormatUtil.toCents(ticket.getPrice()));
+    }
+
+    /**
+     * @return the position of the record in the journal, from 1; 0 for a record not appended yet.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public int getParkingNumber() {
+        return parkingNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public long getInTimeMillis() {
+        return inTimeMillis;
+    }
+
+    /**
+     * @return the out-time, or {@link Ticket#NO_TIME} for an entry.
+     */
+    public long getOutTimeMillis() {
+        return outTimeMillis;
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + vehicleRegNumber + " spot " + parkingNumber;
+    }
+}
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the records of a {@link GateJournal} to the {@code ticket} and {@code parking} tables, in order.
+ *
+ * <p>Records are applied in batches, each in one transaction, after which the journal is told they are
+ * applied. A crash between the commit and that mark replays the batch: every record is idempotent (an entry
+ * does not insert its ticket again, an exit and a spot update set the same values again), and replaying the
+ * batch in order leaves the tables as after its first run. If the database is unavailable, the batch is
+ * retried every {@link #RETRY_DELAY_MILLIS} ms while the gates keep appending to the journal.</p>
+ */
+public class JournalReplayer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("JournalReplayer");
+
+    private static final OperationMetrics APPLY_BATCH = Metrics.operation("JournalReplayer.applyBatch");
+
+    public static final int BATCH_SIZE = 500;
+    public static final long RETRY_DELAY_MILLIS = 1_000;
+
+    /**
+     * Tolerance when finding the ticket of a record by in-time, as the database may round it to the second.
+     */
+    private static final long IN_TIME_TOLERANCE_MILLIS = 1_000;
+
+    private final GateJournal journal;
+    private final DataBaseConfig dataBaseConfig;
+    private volatile Thread replayerThread;
+    private volatile boolean closed;
+
+    public JournalReplayer(GateJournal journal, DataBaseConfig dataBaseConfig) {
+        this.journal = journal;
+        this.dataBaseConfig = dataBaseConfig;
+    }
+
+    public GateJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Starts applying records from a background thread as they are appended.
+     */
+    public synchronized void start() {
+        if (replayerThread != null) {
+            throw new IllegalStateException("Journal replayer already started");
+        }
+        replayerThread = new Thread(this::replayLoop, "journal-replayer");
+        replayerThread.setDaemon(true);
+        replayerThread.start();
+    }
+
+    /**
+     * Applies the records waiting in the journal, from the calling thread.
+     *
+     * @return the number of records applied.
+     * @throws SQLException if a batch could not be applied; it stays in the journal.
+     */
+    public int replayPending() throws SQLException, ClassNotFoundException {
+        int replayed = 0;
+        int applied;
+        while ((applied = applyBatch()) > 0) {
+            replayed += applied;
+        }
+        return replayed;
+    }
+
+    /**
+     * Applies the next batch of records, if any.
+     *
+     * @return the number of records applied.
+     */
+    synchronized int applyBatch() throws SQLException, ClassNotFoundException {
+        List<JournalRecord> records = journal.readPending(BATCH_SIZE);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement saveTicket = null;
+        PreparedStatement closeTicket = null;
+        PreparedStatement updateParking = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            saveTicket = con.prepareStatement(DBConstants.SAVE_JOURNALED_TICKET);
+            closeTicket = con.prepareStatement(DBConstants.CLOSE_JOURNALED_TICKET);
+            updateParking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            for (JournalRecord record : records) {
+                Timestamp inTimeFrom = new Timestamp(record.getInTimeMillis() - IN_TIME_TOLERANCE_MILLIS);
+                Timestamp inTimeTo = new Timestamp(record.getInTimeMillis() + IN_TIME_TOLERANCE_MILLIS);
+                switch (record.getType()) {
+                    case ENTRY: {
+                        saveTicket.setInt(1, record.getParkingNumber());
+                        saveTicket.setString(2, record.getVehicleRegNumber());
+                        saveTicket.setTimestamp(3, new Timestamp(record.getInTimeMillis()));
+                        saveTicket.setString(4, record.getVehicleRegNumber());
+                        saveTicket.setTimestamp(5, inTimeFrom);
+                        saveTicket.setTimestamp(6, inTimeTo);
+                        saveTicket.executeUpdate();
+                        break;
+                    }
+                    case EXIT: {
+                        closeTicket.setDouble(1, record.getPriceCents() / 100.0);
+                        closeTicket.setTimestamp(2, new Timestamp(record.getOutTimeMillis()));
+                        closeTicket.setString(3, record.getVehicleRegNumber());
+                        closeTicket.setTimestamp(4, inTimeFrom);
+                        closeTicket.setTimestamp(5, inTimeTo);
+                        closeTicket.executeUpdate();
+                        break;
+                    }
+                    default: {
+                        throw new IllegalStateException("Unknown journal record " + record);
+                    }
+                }
+                updateParking.setBoolean(1, record.getType() == JournalRecord.Type.EXIT);
+                updateParking.setInt(2, record.getParkingNumber());
+                updateParking.executeUpdate();
+            }
+            con.commit();
+            for (JournalRecord record : records) {
+                dataBaseConfig.recordWrite(record.getVehicleRegNumber());
+            }
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            APPLY_BATCH.error();
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackError) {
+                    // the connection is likely gone: keep the cause
+                    e.addSuppressed(rollbackError);
+                }
+            }
+            throw e;
+        } finally {
+            dataBaseConfig.closePreparedStatement(saveTicket);
+            dataBaseConfig.closePreparedStatement(closeTicket);
+            dataBaseConfig.closePreparedStatement(updateParking);
+            dataBaseConfig.closeConnection(con);
+            APPLY_BATCH.record(start);
+        }
+        journal.markApplied(records.get(records.size() - 1).getSequence());
+        return records.size();
+    }
+
+    private void replayLoop() {
+        while (!closed) {
+            try {
+                if (journal.awaitPending(TimeUnit.SECONDS.toMillis(1))) {
+                    applyBatch();
+                }
+            } catch (InterruptedException e) {
+                // closing
+            } catch (Exception e) {
+                logger.error("Error applying journal records, {} waiting, retrying in {} ms",
+                        journal.getPendingCount(), RETRY_DELAY_MILLIS, e);
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            // closing
+        }
+    }
+
+    /**
+     * Stops the background thread. Records not applied yet stay in the journal.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = replayerThread;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the {@link OperationMetrics} of the application.
+ *
+ * <p>Each operation is created once, typically in a static field of the class it measures, and is
+ * published as an MBean named {@value #JMX_DOMAIN}{@code :type=Operation,name=<operation>}.</p>
+ */
+public final class Metrics {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    public static final String JMX_DOMAIN = "com.parkit.parkingsystem";
+
+    private static final Map<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the metrics of the operation, created and registered with JMX on first use.
+     */
+    public static OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, Metrics::register);
+    }
+
+    /**
+     * @return every operation, by name.
+     */
+    public static List<OperationMetrics> operations() {
+        return new ArrayList<>(operations.values());
+    }
+
+    private static OperationMetrics register(String name) {
+        OperationMetrics metrics = new OperationMetrics(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException e) {
+            logger.error("Unable to register metrics of {} with JMX", name, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return a table of every operation that was called, the slowest in total first, so the operation
+     * dominating latency comes at the top. Latencies are in milliseconds, since start.
+     */
+    public static String snapshot() {
+        List<OperationMetrics> called = new ArrayList<>();
+        long totalNanos = 0;
+        for (OperationMetrics metrics : operations.values()) {
+            if (metrics.getCount() > 0) {
+                called.add(metrics);
+                totalNanos += metrics.getLatencies().getSum();
+            }
+        }
+        called.sort((a, b) -> Long.compare(b.getLatencies().getSum(), a.getLatencies().getSum()));
+
+        StringBuilder snapshot = new StringBuilder();
+        snapshot.append(String.format(Locale.ROOT, "%-42s %10s %8s %9s %9s %9s %9s %9s %7s%n",
+                "operation", "count", "errors", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms", "time %"));
+        for (OperationMetrics metrics : called) {
+            snapshot.append(String.format(Locale.ROOT, "%-42s %10d %8d %9.3f %9.3f %9.3f %9.3f %9.3f %7.1f%n",
+                    metrics.getName(), metrics.getCount(), metrics.getErrorCount(), metrics.getMeanMillis(),
+                    metrics.getP50Millis(), metrics.getP99Millis(), metrics.getP999Millis(), metrics.getMaxMillis(),
+                    totalNanos == 0 ? 0 : 100.0 * metrics.getLatencies().getSum() / totalNanos));
+        }
+        return snapshot.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs a {@link Metrics#snapshot()} at a fixed interval, from a daemon thread.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsReporter(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalSeconds);
+        }
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void report() {
+        try {
+            logger.info("Operation metrics since start:\n{}", Metrics.snapshot());
+        } catch (RuntimeException e) {
+            logger.error("Unable to report metrics", e);
+        }
+    }
+
+    /**
+     * Stops reporting, after logging a last snapshot.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        report();
+    }
+}
@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error counter of one operation, e.g. {@code TicketDAO.getTicket}.
+ *
+ * <p>Recording is lock-free and does not allocate, so it can wrap every DAO call:</p>
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } catch (Exception e) {
+ *     GET_TICKET.error();
+ * } finally {
+ *     GET_TICKET.record(start);
+ * }
+ * </pre>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a call that started at {@code startNanos}, as given by {@link System#nanoTime()}.
+     */
+    public void record(long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts the current call as failed. The call must still be {@link #record(long) recorded}.
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latencies.getMean() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latencies.getValueAtPercentile(99.9) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMax() / 1e6;
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return latencies.getSum() / 1e6;
+    }
+}
@@ -0,0 +1,28 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of an {@link OperationMetrics}. Latencies are in milliseconds and cover every call since start.
+ */
+public interface OperationMetricsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    /**
+     * @return the time spent in the operation by all callers together.
+     */
+    double getTotalMillis();
+}
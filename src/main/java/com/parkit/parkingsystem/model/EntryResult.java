@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Calendar;
+
+/**
+ * Outcome of a vehicle entering the parking.
+ */
+public class EntryResult {
+
+    public enum Status {
+        /** A spot has been claimed and the ticket saved. */
+        ENTERED,
+        /** The vehicle already has an open ticket. */
+        ALREADY_IN_PARKING,
+        /** No spot of the requested type is free. */
+        PARKING_FULL,
+        /** The entry could not be recorded; nothing has been saved. */
+        ERROR
+    }
+
+    private final Status status;
+    private final String vehicleRegNumber;
+    private final ParkingSpot parkingSpot;
+    private final Calendar inTime;
+    private final boolean frequentUser;
+
+    private EntryResult(Status status, String vehicleRegNumber, ParkingSpot parkingSpot, Calendar inTime, boolean frequentUser) {
+        this.status = status;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingSpot = parkingSpot;
+        this.inTime = inTime;
+        this.frequentUser = frequentUser;
+    }
+
+    public static EntryResult entered(Ticket ticket, boolean frequentUser) {
+        return new EntryResult(Status.ENTERED, ticket.getVehicleRegNumber(), ticket.getParkingSpot(),
+                ticket.getInTime(), frequentUser);
+    }
+
+    public static EntryResult rejected(Status status, String vehicleRegNumber) {
+        return new EntryResult(status, vehicleRegNumber, null, null, false);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isEntered() {
+        return status == Status.ENTERED;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * @return the claimed spot, or null if the vehicle did not enter.
+     */
+    public ParkingSpot getParkingSpot() {
+        return parkingSpot;
+    }
+
+    /**
+     * @return the recorded in-time, or null if the vehicle did not enter.
+     */
+    public Calendar getInTime() {
+        return inTime;
+    }
+
+    /**
+     * @return true if the vehicle will get the frequent user discount when leaving.
+     */
+    public boolean isFrequentUser() {
+        return frequentUser;
+    }
+}
@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Calendar;
+
+/**
+ * Outcome of a vehicle leaving the parking.
+ */
+public class ExitResult {
+
+    public enum Status {
+        /** The ticket has been closed and its spot freed. */
+        EXITED,
+        /** The vehicle has no open ticket. */
+        NOT_IN_PARKING,
+        /** The exit could not be recorded; nothing has been saved. */
+        ERROR
+    }
+
+    private final Status status;
+    private final String vehicleRegNumber;
+    private final ParkingSpot parkingSpot;
+    private final double price;
+    private final Calendar outTime;
+    private final boolean frequentUser;
+
+    private ExitResult(Status status, String vehicleRegNumber, ParkingSpot parkingSpot, double price, Calendar outTime, boolean frequentUser) {
+        this.status = status;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingSpot = parkingSpot;
+        this.price = price;
+        this.outTime = outTime;
+        this.frequentUser = frequentUser;
+    }
+
+    public static ExitResult exited(Ticket ticket, boolean frequentUser) {
+        return new ExitResult(Status.EXITED, ticket.getVehicleRegNumber(), ticket.getParkingSpot(), ticket.getPrice(),
+                ticket.getOutTime(), frequentUser);
+    }
+
+    public static ExitResult rejected(Status status, String vehicleRegNumber) {
+        return new ExitResult(status, vehicleRegNumber, null, 0, null, false);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isExited() {
+        return status == Status.EXITED;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    /**
+     * @return the freed spot, or null if the vehicle did not exit.
+     */
+    public ParkingSpot getParkingSpot() {
+        return parkingSpot;
+    }
+
+    /**
+     * @return the fare to pay, 0 if the vehicle did not exit.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * @return the recorded out-time, or null if the vehicle did not exit.
+     */
+    public Calendar getOutTime() {
+        return outTime;
+    }
+
+    /**
+     * @return true if the frequent user discount has been applied.
+     */
+    public boolean isFrequentUser() {
+        return frequentUser;
+    }
+}
@@ -2,13 +2,23 @@ package com.parkit.parkingsystem.model;
 
 import java.util.Calendar;
 
+/**
+ * A parking ticket. In and out times are kept as epoch milliseconds; the {@link Calendar}
+ * accessors convert on each call, so a Calendar returned by a getter is a copy.
+ */
 public class Ticket {
+
+    /**
+     * Value of {@link #getOutTimeMillis()} (and {@link #getInTimeMillis()}) when the time is not set.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private int id;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
     private double price;
-    private Calendar inTime;
-    private Calendar outTime;
+    private long inTimeMillis = NO_TIME;
+    private long outTimeMillis = NO_TIME;
 
     public int getId() {
         return id;
@@ -43,18 +53,57 @@ public class Ticket {
     }
 
     public Calendar getInTime() {
-        return inTime;
+        return toCalendar(inTimeMillis);
     }
 
     public void setInTime(Calendar inTime) {
-        this.inTime = inTime;
+        this.inTimeMillis = toMillis(inTime);
     }
 
     public Calendar getOutTime() {
-        return outTime;
+        return toCalendar(outTimeMillis);
     }
 
     public void setOutTime(Calendar outTime) {
-        this.outTime = outTime;
+        this.outTimeMillis = toMillis(outTime);
+    }
+
+    /**
+     * @return the in-time in epoch milliseconds, or {@link #NO_TIME}.
+     */
+    public long getInTimeMillis() {
+        return inTimeMillis;
+    }
+
+    public void setInTimeMillis(long inTimeMillis) {
+        this.inTimeMillis = inTimeMillis;
+    }
+
+    /**
+     * @return the out-time in epoch milliseconds, or {@link #NO_TIME} while the vehicle is parked.
+     */
+    public long getOutTimeMillis() {
+        return outTimeMillis;
+    }
+
+    public void setOutTimeMillis(long outTimeMillis) {
+        this.outTimeMillis = outTimeMillis;
+    }
+
+    public boolean hasOutTime() {
+        return outTimeMillis != NO_TIME;
+    }
+
+    private static Calendar toCalendar(long millis) {
+        if (millis == NO_TIME) {
+            return null;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    private static long toMillis(Calendar calendar) {
+        return calendar == null ? NO_TIME : calendar.getTimeInMillis();
     }
 }
@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * A page of tickets in columns, filled by {@link com.parkit.parkingsystem.dao.TicketDAO#readTicketPage} and
+ * reused from one page to the next, so that reading a whole table allocates no object per ticket beyond
+ * its registration number.
+ */
+public class TicketPage {
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final int[] ids;
+    private final int[] parkingNumbers;
+    private final byte[] types;
+    private final String[] vehicleRegNumbers;
+    private final long[] priceCents;
+    private final long[] inTimes;
+    private final long[] outTimes;
+    private int size;
+
+    public TicketPage(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        ids = new int[capacity];
+        parkingNumbers = new int[capacity];
+        types = new byte[capacity];
+        vehicleRegNumbers = new String[capacity];
+        priceCents = new long[capacity];
+        inTimes = new long[capacity];
+        outTimes = new long[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @param outTime the out-time, or {@link Ticket#NO_TIME} if the vehicle is still parked.
+     */
+    public void add(int id, int parkingNumber, ParkingType type, String vehicleRegNumber, long priceCents, long inTime, long outTime) {
+        if (size == ids.length) {
+            throw new IllegalStateException("Ticket page full: " + size);
+        }
+        ids[size] = id;
+        parkingNumbers[size] = parkingNumber;
+        types[size] = (byte) type.ordinal();
+        vehicleRegNumbers[size] = vehicleRegNumber;
+        this.priceCents[size] = priceCents;
+        inTimes[size] = inTime;
+        outTimes[size] = outTime;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ids.length;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public int getParkingNumber(int row) {
+        return parkingNumbers[row];
+    }
+
+    public ParkingType getParkingType(int row) {
+        return PARKING_TYPES[types[row]];
+    }
+
+    public String getVehicleRegNumber(int row) {
+        return vehicleRegNumbers[row];
+    }
+
+    public long getPriceCents(int row) {
+        return priceCents[row];
+    }
+
+    public long getInTime(int row) {
+        return inTimes[row];
+    }
+
+    /**
+     * @return the out-time, or {@link Ticket#NO_TIME} if the vehicle is still parked.
+     */
+    public long getOutTime(int row) {
+        return outTimes[row];
+    }
+}
@@ -0,0 +1,391 @@
+package com.parkit.parkingsystem.rollup;
+
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RollupDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Occupancy, visits and revenue of the parking, kept up to date by the entries and exits of the
+ * {@link com.parkit.parkingsystem.service.ParkingService} rather than computed by scanning the tables.
+ *
+ * <p>Occupancy is a counter per parking type. Visits, exits and revenue are counted per parking type in
+ * hourly and daily buckets, held in rings of the last {@value #HOURS_KEPT} hours and {@value #DAYS_KEPT}
+ * days; recording an event only updates atomic counters, and reading the occupancy or the revenue of today
+ * reads one bucket. Days are those of the system time zone.</p>
+ *
+ * <p>{@link #persistEvery(RollupDAO, long)} adds what was counted since the previous run to the
+ * {@code parking_rollup} table, so several processes can share the table. A run that fails is retried at
+ * the next one with the increments of both.</p>
+ */
+public class ParkingRollups implements ParkingRollupsMXBean, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("ParkingRollups");
+
+    public static final int HOURS_KEPT = 48;
+    public static final int DAYS_KEPT = 8;
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final AtomicLongArray occupancy = new AtomicLongArray(PARKING_TYPES.length);
+    private final AtomicReferenceArray<Bucket> hours = new AtomicReferenceArray<>(HOURS_KEPT);
+    private final AtomicReferenceArray<Bucket> days = new AtomicReferenceArray<>(DAYS_KEPT);
+    /** Buckets pushed out of a ring with increments not persisted yet. */
+    private final Queue<Bucket> evicted = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService persistScheduler;
+    private RollupDAO rollupDAO;
+
+    public void recordEntry(ParkingType parkingType, long inTimeMillis) {
+        occupancy.incrementAndGet(parkingType.ordinal());
+        add(hours, RollupRow.Period.HOUR, hourOf(inTimeMillis), parkingType, 1, 0, 0);
+        add(days, RollupRow.Period.DAY, VisitCounterCache.epochDay(inTimeMillis), parkingType, 1, 0, 0);
+    }
+
+    public void recordExit(ParkingType parkingType, long outTimeMillis, long priceCents) {
+        occupancy.decrementAndGet(parkingType.ordinal());
+        add(hours, RollupRow.Period.HOUR, hourOf(outTimeMillis), parkingType, 0, 1, priceCents);
+        add(days, RollupRow.Period.DAY, VisitCounterCache.epochDay(outTimeMillis), parkingType, 0, 1, priceCents);
+    }
+
+    /**
+     * Sets the number of parked vehicles of a type, typically counted from the open tickets at start.
+     */
+    public void setOccupancy(ParkingType parkingType, long parkedVehicles) {
+        occupancy.set(parkingType.ordinal(), parkedVehicles);
+    }
+
+    public long getOccupancy(ParkingType parkingType) {
+        return occupancy.get(parkingType.ordinal());
+    }
+
+    public long getVisitsToday(ParkingType parkingType) {
+        Bucket today = find(days, VisitCounterCache.epochDay(System.currentTimeMillis()));
+        return today == null ? 0 : today.visits.get(parkingType.ordinal());
+    }
+
+    public long getRevenueTodayCents(ParkingType parkingType) {
+        Bucket today = find(days, VisitCounterCache.epochDay(System.currentTimeMillis()));
+        return today == null ? 0 : today.revenueCents.get(parkingType.ordinal());
+    }
+
+    public long getRevenueThisHourCents(ParkingType parkingType) {
+        Bucket hour = find(hours, hourOf(System.currentTimeMillis()));
+        return hour == null ? 0 : hour.revenueCents.get(parkingType.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getOccupancy() {
+        return byType(this::getOccupancy);
+    }
+
+    @Override
+    public Map<String, Long> getVisitsToday() {
+        return byType(this::getVisitsToday);
+    }
+
+    @Override
+    public Map<String, Long> getRevenueTodayCents() {
+        return byType(this::getRevenueTodayCents);
+    }
+
+    @Override
+    public Map<String, Long> getRevenueThisHourCents() {
+        return byType(this::getRevenueThisHourCents);
+    }
+
+    private static Map<String, Long> byType(ToLongFunction<ParkingType> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (ParkingType parkingType : PARKING_TYPES) {
+            values.put(parkingType.name(), value.applyAsLong(parkingType));
+        }
+        return values;
+    }
+
+    /**
+     * Takes the totals read back from the {@code parking_rollup} table as already persisted, so that the
+     * counts of today include those of the previous runs.
+     */
+    public void load(List<RollupRow> rows) {
+        for (RollupRow row : rows) {
+            boolean hourly = row.getPeriod() == RollupRow.Period.HOUR;
+            long index = hourly ? hourOf(row.getPeriodStartMillis()) : VisitCounterCache.epochDay(row.getPeriodStartMillis());
+            Bucket bucket = bucket(hourly ? hours : days, row.getPeriod(), index);
+            if (bucket == null) {
+                continue;
+            }
+            int type = row.getParkingType().ordinal();
+            synchronized (bucket) {
+                bucket.visits.addAndGet(type, row.getVisits());
+                bucket.exits.addAndGet(type, row.getExits());
+                bucket.revenueCents.addAndGet(type, row.getRevenueCents());
+                bucket.persistedVisits[type] += row.getVisits();
+                bucket.persistedExits[type] += row.getExits();
+                bucket.persistedRevenueCents[type] += row.getRevenueCents();
+            }
+        }
+    }
+
+    /**
+     * Adds the increments counted since the previous call to the {@code parking_rollup} table.
+     *
+     * @return the number of rows written.
+     */
+    public synchronized int persist(RollupDAO dao) throws Exception {
+        List<Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < HOURS_KEPT; i++) {
+            addIfPresent(buckets, hours.get(i));
+        }
+        for (int i = 0; i < DAYS_KEPT; i++) {
+            addIfPresent(buckets, days.get(i));
+        }
+        List<Bucket> evictedBuckets = new ArrayList<>();
+        Bucket evictedBucket;
+        while ((evictedBucket = evicted.poll()) != null) {
+            evictedBuckets.add(evictedBucket);
+        }
+        buckets.addAll(evictedBuckets);
+
+        // the counters are read once: what is counted meanwhile goes to the next run
+        List<Increment> increments = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            for (ParkingType parkingType : PARKING_TYPES) {
+                Increment increment = new Increment(bucket, parkingType);
+                if (!increment.isEmpty()) {
+                    increments.add(increment);
+                }
+            }
+        }
+        if (increments.isEmpty()) {
+            return 0;
+        }
+        List<RollupRow> rows = new ArrayList<>(increments.size());
+        for (Increment increment : increments) {
+            rows.add(increment.toRow());
+        }
+        try {
+            dao.addRollups(rows);
+        } catch (Exception e) {
+            evicted.addAll(evictedBuckets);
+            throw e;
+        }
+        for (Increment increment : increments) {
+            increment.markPersisted();
+        }
+        return rows.size();
+    }
+
+    private static void addIfPresent(List<Bucket> buckets, Bucket bucket) {
+        if (bucket != null) {
+            buckets.add(bucket);
+        }
+    }
+
+    /**
+     * Persists the increments at a fixed interval, from a daemon thread, and a last time on {@link #close()}.
+     */
+    public synchronized void persistEvery(RollupDAO dao, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalSeconds);
+        }
+        if (persistScheduler != null) {
+            throw new IllegalStateException("Rollups already persisted");
+        }
+        rollupDAO = dao;
+        persistScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rollup-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        persistScheduler.scheduleWithFixedDelay(this::persistScheduled, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void persistScheduled() {
+        try {
+            persist(rollupDAO);
+        } catch (Exception e) {
+            logger.error("Unable to persist rollups, retrying at the next run", e);
+        }
+    }
+
+    /**
+     * Publishes the rollups as an MXBean named {@value Metrics#JMX_DOMAIN}{@code :type=Rollups}.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(Metrics.JMX_DOMAIN + ":type=Rollups");
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.error("Unable to register rollups with JMX", e);
+        }
+    }
+
+    /**
+     * Stops the scheduled runs, after persisting a last time.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = persistScheduler;
+            persistScheduler = null;
+        }
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistScheduled();
+    }
+
+    private void add(AtomicReferenceArray<Bucket> ring, RollupRow.Period period, long index, ParkingType parkingType,
+                     long visits, long exits, long revenueCents) {
+        Bucket bucket = bucket(ring, period, index);
+        if (bucket == null) {
+            logger.warn("Dropping a {} rollup event older than the {} kept in memory", period, ring.length());
+            return;
+        }
+        int type = parkingType.ordinal();
+        if (visits != 0) {
+            bucket.visits.addAndGet(type, visits);
+        }
+        if (exits != 0) {
+            bucket.exits.addAndGet(type, exits);
+        }
+        if (revenueCents != 0) {
+            bucket.revenueCents.addAndGet(type, revenueCents);
+        }
+    }
+
+    /**
+     * @return the bucket of this period, replacing the older one in its slot, or null if the slot already
+     * holds a later period.
+     */
+    private Bucket bucket(AtomicReferenceArray<Bucket> ring, RollupRow.Period period, long index) {
+        int slot = (int) Math.floorMod(index, (long) ring.length());
+        while (true) {
+            Bucket bucket = ring.get(slot);
+            if (bucket != null && bucket.index == index) {
+                return bucket;
+            }
+            if (bucket != null && bucket.index > index) {
+                return null;
+            }
+            Bucket newBucket = new Bucket(period, index);
+            if (ring.compareAndSet(slot, bucket, newBucket)) {
+                if (bucket != null) {
+                    evicted.add(bucket);
+                }
+                return newBucket;
+            }
+        }
+    }
+
+    private static Bucket find(AtomicReferenceArray<Bucket> ring, long index) {
+        Bucket bucket = ring.get((int) Math.floorMod(index, (long) ring.length()));
+        return bucket != null && bucket.index == index ? bucket : null;
+    }
+
+    private static long hourOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, HOUR_MILLIS);
+    }
+
+    /**
+     * What a bucket counted for a parking type since it was last persisted.
+     */
+    private static final class Increment {
+        private final Bucket bucket;
+        private final ParkingType parkingType;
+        private final long visits;
+        private final long exits;
+        private final long revenueCents;
+
+        private Increment(Bucket bucket, ParkingType parkingType) {
+            int type = parkingType.ordinal();
+            this.bucket = bucket;
+            this.parkingType = parkingType;
+            this.visits = bucket.visits.get(type);
+            this.exits = bucket.exits.get(type);
+            this.revenueCents = bucket.revenueCents.get(type);
+        }
+
+        private boolean isEmpty() {
+            int type = parkingType.ordinal();
+            synchronized (bucket) {
+                return visits == bucket.persistedVisits[type] && exits == bucket.persistedExits[type]
+                        && revenueCents == bucket.persistedRevenueCents[type];
+            }
+        }
+
+        private RollupRow toRow() {
+            int type = parkingType.ordinal();
+            synchronized (bucket) {
+                return new RollupRow(bucket.period, bucket.startMillis(), parkingType, visits - bucket.persistedVisits[type],
+                        exits - bucket.persistedExits[type], revenueCents - bucket.persistedRevenueCents[type]);
+            }
+        }
+
+        private void markPersisted() {
+            int type = parkingType.ordinal();
+            synchronized (bucket) {
+                bucket.persistedVisits[type] = visits;
+                bucket.persistedExits[type] = exits;
+                bucket.persistedRevenueCents[type] = revenueCents;
+            }
+        }
+    }
+
+    /**
+     * Counters of one hour or one day, per parking type, with what has been persisted of them.
+     */
+    private static final class Bucket {
+        private final RollupRow.Period period;
+        private final long index;
+        private final AtomicLongArray visits = new AtomicLongArray(PARKING_TYPES.length);
+        private final AtomicLongArray exits = new AtomicLongArray(PARKING_TYPES.length);
+        private final AtomicLongArray revenueCents = new AtomicLongArray(PARKING_TYPES.length);
+        // guarded by the bucket
+        private final long[] persistedVisits = new long[PARKING_TYPES.length];
+        private final long[] persistedExits = new long[PARKING_TYPES.length];
+        private final long[] persistedRevenueCents = new long[PARKING_TYPES.length];
+
+        private Bucket(RollupRow.Period period, long index) {
+            this.period = period;
+            this.index = index;
+        }
+
+        private long startMillis() {
+            return period == RollupRow.Period.HOUR ? index * HOUR_MILLIS
+                    : LocalDate.ofEpochDay(index).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.parkit.parkingsystem.rollup;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link ParkingRollups}, by parking type name. Revenues are in cents.
+ */
+public interface ParkingRollupsMXBean {
+
+    Map<String, Long> getOccupancy();
+
+    Map<String, Long> getVisitsToday();
+
+    Map<String, Long> getRevenueTodayCents();
+
+    Map<String, Long> getRevenueThisHourCents();
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.rollup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Visits, exits and revenue of one parking type over one hour or one day, as kept in the
+ * {@code parking_rollup} table. Written as increments, read back as totals.
+ */
+public class RollupRow {
+
+    public enum Period {
+        HOUR,
+        DAY
+    }
+
+    private final Period period;
+    private final long periodStartMillis;
+    private final ParkingType parkingType;
+    private final long visits;
+    private final long exits;
+    private final long revenueCents;
+
+    public RollupRow(Period period, long periodStartMillis, ParkingType parkingType, long visits, long exits, long revenueCents) {
+        this.period = period;
+        this.periodStartMillis = periodStartMillis;
+        this.parkingType = parkingType;
+        this.visits = visits;
+        this.exits = exits;
+        this.revenueCents = revenueCents;
+    }
+
+    public Period getPeriod() {
+        return period;
+    }
+
+    public long getPeriodStartMillis() {
+        return periodStartMillis;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    /**
+     * @return the number of vehicles that entered within the period.
+     */
+    public long getVisits() {
+        return visits;
+    }
+
+    /**
+     * @return the number of vehicles that left within the period.
+     */
+    public long getExits() {
+        return exits;
+    }
+
+    /**
+     * @return the fares of the vehicles that left within the period.
+     */
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    @Override
+    public String toString() {
+        return period + " " + periodStartMillis + " " + parkingType + ": " + visits + " visits, " + exits
+                + " exits, " + revenueCents + " cents";
+    }
+}
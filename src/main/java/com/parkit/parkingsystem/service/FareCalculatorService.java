@@ -3,6 +3,7 @@ package com.parkit.parkingsystem.service;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.tariff.Tariffs;
 import com.parkit.parkingsystem.util.FormatUtil;
 
 /**
@@ -12,13 +13,14 @@ import com.parkit.parkingsystem.util.FormatUtil;
  * 
  * <p>This service uses the timestamps from a {@link Ticket} object to calculate 
  * the duration in hours. 
- * If the duration is less than 30 minutes, no fare is applied. 
+ * If the duration is less than the free parking time, no fare is applied. 
  * Otherwise, the fare is calculated based on the duration and the type of vehicle. 
  * </p>
  * 
- * <p>The fare calculation takes into account the parking rates defined in the {@link Fare} class.</p>
+ * <p>The fare calculation uses the tariff in force (see {@link Tariffs}), which defaults to the
+ * parking rates defined in the {@link Fare} class.</p>
  * 
- * <p>If the discount parameter is set to {@code true}, a 5% reduction is applied to the total fare.</p>
+ * <p>If the discount parameter is set to {@code true}, the frequent user reduction is applied to the total fare.</p>
  * 
  * @throws {@link IllegalArgumentException} in case of invalid time or invalid parking
  * 
@@ -35,34 +37,27 @@ public class FareCalculatorService {
 
         validateParkingType(ticket);
 
-        long inHour = ticket.getInTime().getTimeInMillis();
-        long outHour = ticket.getOutTime().getTimeInMillis();
-
-        double duration = (outHour - inHour) / (60.0 * 60.0 * 1000.0);
-
-        if (duration < Fare.FREE_PARKING_TIME) {
-            ticket.setPrice(FormatUtil.roundToTwoDecimals(0));
-        } else {
-            double fare;
+        long cents = calculateFareInCents(ticket.getInTimeMillis(), ticket.getOutTimeMillis(),
+                ticket.getParkingSpot().getParkingType(), discount);
+        ticket.setPrice(cents / 100.0);
+    }
 
-            switch (ticket.getParkingSpot().getParkingType()){
-                case CAR: {
-                    fare = duration * Fare.CAR_RATE_PER_HOUR;
-                    break;
-                }
-                case BIKE: {
-                    fare = duration * Fare.BIKE_RATE_PER_HOUR;
-                    break;
-                }
-                default: throw new IllegalArgumentException("Unkown Parking Type");
-            }
-            
-            if (discount) {
-                ticket.setPrice(FormatUtil.roundToTwoDecimals(fare * Fare.FREQUENT_USER_REDUCTION_RATE));
-            } else {
-               ticket.setPrice(FormatUtil.roundToTwoDecimals(fare));
-            }
+    /**
+     * Calculates a fare from epoch millisecond times with the tariff in force. Without time-of-day
+     * bands nor daily cap, nothing is allocated.
+     *
+     * @return the fare in cents, rounded half up as {@link FormatUtil#roundToTwoDecimals(double)} does.
+     * @throws IllegalArgumentException if the out time is before the in time.
+     */
+    public long calculateFareInCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, boolean discount) {
+        if (outTimeMillis < inTimeMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + outTimeMillis);
         }
+        if (parkingType == null) {
+            throw new NullPointerException("The parking type cannot be null");
+        }
+
+        return Tariffs.current().priceInCents(inTimeMillis, outTimeMillis, parkingType, discount);
     }
 
     public void calculateFare(Ticket ticket) {
@@ -70,7 +65,10 @@ public class FareCalculatorService {
     }
 
     private void validateProvidedTime(Ticket ticket) {
-        if( (ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime())) ){
+        if (!ticket.hasOutTime()) {
+            throw new NullPointerException("The out time cannot be null");
+        }
+        if (ticket.getOutTimeMillis() < ticket.getInTimeMillis()) {
             throw new IllegalArgumentException("Out time provided is incorrect: "+ticket.getOutTime().getTime());
         }
     }
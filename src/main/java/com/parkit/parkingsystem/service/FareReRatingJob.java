@@ -0,0 +1,311 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.FormatUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Recomputes the price of every closed ticket with the current {@link FareCalculatorService} logic and
+ * reports the tickets whose stored price differs.
+ *
+ * <p>Tickets are streamed from the database ordered by vehicle, so the visits of a vehicle (which decide
+ * its frequent user discount) arrive together and nothing else needs to be kept. The reading thread cuts
+ * the stream into batches of whole vehicles, which are rated in parallel on a {@link ForkJoinPool}; at most
+ * two batches per worker are in flight, which bounds memory whatever the size of the table. Discrepancies
+ * are written to the report as CSV, in vehicle order.</p>
+ *
+ * <p>The discount of a ticket is worked out as at its exit: the vehicle is a frequent user if it entered at
+ * least {@link Fare#MIN_USES_FOR_FREQUENT_USER} times (this ticket included) from
+ * {@link VisitCounterCache#WINDOW_DAYS} days before the exit day up to the exit.</p>
+ */
+public class FareReRatingJob {
+
+    private static final Logger logger = LogManager.getLogger("FareReRatingJob");
+
+    public static final int FETCH_SIZE = 10_000;
+    public static final int BATCH_SIZE = 20_000;
+
+    public static final String REPORT_HEADER = "ID,VEHICLE_REG_NUMBER,TYPE,IN_TIME,OUT_TIME,FREQUENT_USER,STORED_PRICE,RECOMPUTED_PRICE,DIFFERENCE";
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final ForkJoinPool pool;
+
+    public FareReRatingJob(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public FareReRatingJob() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Totals of a re-rating run. Revenues are in cents and only cover closed tickets.
+     */
+    public static class Summary {
+        private long ticketsRated;
+        private long discrepancies;
+        private long storedRevenueCents;
+        private long recomputedRevenueCents;
+
+        public long getTicketsRated() {
+            return ticketsRated;
+        }
+
+        public long getDiscrepancies() {
+            return discrepancies;
+        }
+
+        public long getStoredRevenueCents() {
+            return storedRevenueCents;
+        }
+
+        public long getRecomputedRevenueCents() {
+            return recomputedRevenueCents;
+        }
+
+        @Override
+        public String toString() {
+            return ticketsRated + " tickets rated, " + discrepancies + " discrepancies, stored revenue "
+                    + storedRevenueCents / 100.0 + ", recomputed revenue " + recomputedRevenueCents / 100.0;
+        }
+    }
+
+    /**
+     * Re-rates every closed ticket and writes the discrepancies to the report.
+     */
+    public Summary run(Writer report) throws SQLException, ClassNotFoundException, IOException {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_TICKETS_FOR_RERATING, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            rs = ps.executeQuery();
+            return reRate(rs, report);
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Re-rates the tickets of a result set shaped as {@link DBConstants#GET_TICKETS_FOR_RERATING}.
+     */
+    public Summary reRate(ResultSet rs, Writer report) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Summary summary = new Summary();
+        report.write(REPORT_HEADER);
+        report.write('\n');
+
+        int maxInFlight = 2 * pool.getParallelism();
+        Deque<Future<Batch>> inFlight = new ArrayDeque<>();
+        Batch batch = new Batch();
+        while (rs.next()) {
+            String vehicleRegNumber = rs.getString(2);
+            if (batch.size >= BATCH_SIZE && !vehicleRegNumber.equals(batch.vehicleRegNumbers[batch.size - 1])) {
+                if (inFlight.size() >= maxInFlight) {
+                    write(await(inFlight.poll()), report, summary);
+                }
+                Batch full = batch;
+                inFlight.add(pool.submit(() -> rate(full)));
+                batch = new Batch();
+            }
+            Timestamp outTime = rs.getTimestamp(4);
+            batch.add(rs.getInt(1), vehicleRegNumber, rs.getTimestamp(3).getTime(),
+                    outTime == null ? Ticket.NO_TIME : outTime.getTime(), FormatUtil.toCents(rs.getDouble(5)),
+                    ParkingType.valueOf(rs.getString(6)));
+        }
+        Batch last = batch;
+        inFlight.add(pool.submit(() -> rate(last)));
+        while (!inFlight.isEmpty()) {
+            write(await(inFlight.poll()), report, summary);
+        }
+        report.flush();
+
+        logger.info("Re-rating done in {} ms: {}", System.currentTimeMillis() - start, summary);
+        return summary;
+    }
+
+    private static Batch await(Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while re-rating tickets", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while re-rating tickets", e.getCause());
+        }
+    }
+
+    /**
+     * Rates the closed tickets of a batch. Runs on the pool.
+     */
+    private Batch rate(Batch batch) {
+        int first = 0;
+        while (first < batch.size) {
+            int end = first + 1;
+            while (end < batch.size && batch.vehicleRegNumbers[end].equals(batch.vehicleRegNumbers[first])) {
+                end++;
+            }
+            rateVehicle(batch, first, end);
+            first = end;
+        }
+        return batch;
+    }
+
+    /**
+     * Rates the tickets of one vehicle, at indexes [first, end) of the batch, sorted by in-time.
+     */
+    private void rateVehicle(Batch batch, int first, int end) {
+        long[] inDays = new long[end - first];
+        for (int i = first; i < end; i++) {
+            inDays[i - first] = VisitCounterCache.epochDay(batch.inTimes[i]);
+        }
+        for (int i = first; i < end; i++) {
+            long outTime = batch.outTimes[i];
+            if (outTime == Ticket.NO_TIME) {
+                continue;
+            }
+            // visits that entered from the first day of the window up to the exit
+            int visitsUntilExit = upperBound(batch.inTimes, first, end, outTime) - first;
+            int visitsBeforeWindow = lowerBound(inDays, VisitCounterCache.firstDayOfWindow(VisitCounterCache.epochDay(outTime)));
+            boolean frequentUser = visitsUntilExit - visitsBeforeWindow >= Fare.MIN_USES_FOR_FREQUENT_USER;
+
+            batch.frequentUsers[i] = frequentUser;
+            batch.recomputedCents[i] = fareCalculatorService.calculateFareInCents(batch.inTimes[i], outTime,
+                    PARKING_TYPES[batch.types[i]], frequentUser);
+        }
+    }
+
+    /**
+     * @return the index of the first value greater than {@code key} in the sorted range [from, to).
+     */
+    private static int upperBound(long[] values, int from, int to, long key) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] <= key) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @return the index of the first value greater than or equal to {@code key} in the sorted array.
+     */
+    private static int lowerBound(long[] values, long key) {
+        return upperBound(values, 0, values.length, key - 1);
+    }
+
+    private static void write(Batch batch, Writer report, Summary summary) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        for (int i = 0; i < batch.size; i++) {
+            if (batch.outTimes[i] == Ticket.NO_TIME) {
+                continue;
+            }
+            summary.ticketsRated++;
+            summary.storedRevenueCents += batch.storedCents[i];
+            summary.recomputedRevenueCents += batch.recomputedCents[i];
+            if (batch.storedCents[i] == batch.recomputedCents[i]) {
+                continue;
+            }
+            summary.discrepancies++;
+            line.setLength(0);
+            line.append(batch.ids[i]).append(',')
+                    .append(batch.vehicleRegNumbers[i]).append(',')
+                    .append(PARKING_TYPES[batch.types[i]]).append(',')
+                    .append(new Timestamp(batch.inTimes[i])).append(',')
+                    .append(new Timestamp(batch.outTimes[i])).append(',')
+                    .append(batch.frequentUsers[i]).append(',')
+                    .append(batch.storedCents[i] / 100.0).append(',')
+                    .append(batch.recomputedCents[i] / 100.0).append(',')
+                    .append((batch.recomputedCents[i] - batch.storedCents[i]) / 100.0).append('\n');
+            report.append(line);
+        }
+    }
+
+    /**
+     * Tickets of whole vehicles, in columns.
+     */
+    private static final class Batch {
+        private int size;
+        private int[] ids = new int[BATCH_SIZE];
+        private String[] vehicleRegNumbers = new String[BATCH_SIZE];
+        private long[] inTimes = new long[BATCH_SIZE];
+        private long[] outTimes = new long[BATCH_SIZE];
+        private long[] storedCents = new long[BATCH_SIZE];
+        private byte[] types = new byte[BATCH_SIZE];
+        private long[] recomputedCents = new long[BATCH_SIZE];
+        private boolean[] frequentUsers = new boolean[BATCH_SIZE];
+
+        private void add(int id, String vehicleRegNumber, long inTime, long outTime, long stored, ParkingType type) {
+            if (size == ids.length) {
+                // a vehicle with more tickets than fit in a batch: grow rather than split it
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                vehicleRegNumbers = Arrays.copyOf(vehicleRegNumbers, capacity);
+                inTimes = Arrays.copyOf(inTimes, capacity);
+                outTimes = Arrays.copyOf(outTimes, capacity);
+                storedCents = Arrays.copyOf(storedCents, capacity);
+                types = Arrays.copyOf(types, capacity);
+                recomputedCents = Arrays.copyOf(recomputedCents, capacity);
+                frequentUsers = Arrays.copyOf(frequentUsers, capacity);
+            }
+            ids[size] = id;
+            vehicleRegNumbers[size] = vehicleRegNumber;
+            inTimes[size] = inTime;
+            outTimes[size] = outTime;
+            storedCents[size] = stored;
+            types[size] = (byte) type.ordinal();
+            size++;
+        }
+    }
+
+    /**
+     * Runs the job on the production database.
+     *
+     * @param args the path of the CSV discrepancy report.
+     */
+    public static void main(String[] args) throws Exception {
+        String reportPath = args.length > 0 ? args[0] : "fare-discrepancies.csv";
+        try (BufferedWriter report = Files.newBufferedWriter(Paths.get(reportPath), StandardCharsets.UTF_8)) {
+            Summary summary = new FareReRatingJob().run(report);
+            System.out.println(summary);
+            System.out.println("Discrepancies written to " + reportPath);
+        } finally {
+            DataBaseConfig.closePools();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.store.SpotStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network front end for the entry and exit terminals of the gates.
+ *
+ * <p>Terminals connect over TCP and send one request per line, each answered by one line:</p>
+ * <pre>
+ * ENTER CAR AB123CD    -&gt;  OK ENTERED &lt;spot number&gt; &lt;in-time millis&gt; &lt;frequent user&gt;
+ * ENTER CAR AB123CD 2  -&gt;  the same, for a vehicle coming in at the entrance of zone 2
+ * EXIT AB123CD         -&gt;  OK EXITED &lt;fare&gt; &lt;out-time millis&gt; &lt;frequent user&gt;
+ * QUIT                 -&gt;  OK BYE (and the connection is closed)
+ * </pre>
+ * <p>Refused requests are answered with {@code KO <reason>}, e.g. {@code KO ALREADY_IN_PARKING}.</p>
+ *
+ * <p>Each connection is served by its own virtual thread, so a gate waiting on the database does not hold
+ * a platform thread. Two limits protect the database: at most {@code maxConnections} terminals are
+ * connected at once (others get {@code KO BUSY}), and at most {@code maxConcurrentRequests} requests
+ * call {@link ParkingService} at once, the others wait their turn.</p>
+ */
+public class GateServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    private final ParkingService parkingService;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final Semaphore connections;
+    private final Semaphore requests;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private ServerSocket serverSocket;
+
+    /**
+     * Creates a server listening on the loopback interface only.
+     *
+     * @param port the port to listen on, 0 to pick a free one.
+     */
+    public GateServer(ParkingService parkingService, int port, int maxConnections, int maxConcurrentRequests) {
+        this(parkingService, InetAddress.getLoopbackAddress(), port, maxConnections, maxConcurrentRequests);
+    }
+
+    /**
+     * @param bindAddress the address to listen on, e.g. the wildcard address {@code 0.0.0.0} for every interface.
+     * @param port the port to listen on, 0 to pick a free one.
+     */
+    public GateServer(ParkingService parkingService, InetAddress bindAddress, int port, int maxConnections,
+                      int maxConcurrentRequests) {
+        this.parkingService = parkingService;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.connections = new Semaphore(maxConnections);
+        this.requests = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    /**
+     * Starts accepting terminals on the bind address.
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Gate server already started");
+        }
+        serverSocket = new ServerSocket(port, connections.availablePermits(), bindAddress);
+        executor.execute(this::acceptLoop);
+        logger.info("Gate server listening on {} port {}", bindAddress.getHostAddress(), serverSocket.getLocalPort());
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting terminals and closes the open connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                logger.error("Error while closing gate server", e);
+            }
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (connections.tryAcquire()) {
+                    executor.execute(() -> serve(socket));
+                } else {
+                    refuse(socket);
+                }
+            } catch (SocketException e) {
+                // server socket closed
+            } catch (IOException e) {
+                logger.error("Error accepting gate connection", e);
+            }
+        }
+    }
+
+    private void refuse(Socket socket) {
+        try (Socket s = socket) {
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("KO BUSY");
+        } catch (IOException e) {
+            logger.error("Error refusing gate connection", e);
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                if (request.equalsIgnoreCase("QUIT")) {
+                    out.println("OK BYE");
+                    break;
+                }
+                out.println(handle(request));
+            }
+        } catch (IOException e) {
+            logger.error("Error serving gate connection", e);
+        } catch (InterruptedException e) {
+            // server closing
+        } finally {
+            connections.release();
+        }
+    }
+
+    /**
+     * @return the response line to a request line.
+     */
+    private String handle(String request) throws InterruptedException {
+        String[] words = request.split("\\s+");
+        String command = words[0].toUpperCase(Locale.ROOT);
+        if (command.equals("ENTER") && (words.length == 3 || words.length == 4)) {
+            ParkingType parkingType;
+            try {
+                parkingType = ParkingType.valueOf(words[1].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return "KO BAD_REQUEST unknown vehicle type " + words[1];
+            }
+            int entrance = SpotStore.DEFAULT_ENTRANCE;
+            if (words.length == 4) {
+                try {
+                    entrance = Integer.parseInt(words[3]);
+                } catch (NumberFormatException e) {
+                    return "KO BAD_REQUEST invalid entrance " + words[3];
+                }
+            }
+            EntryResult result;
+            requests.acquire();
+            try {
+                result = parkingService.enter(parkingType, words[2], entrance);
+            } finally {
+                requests.release();
+            }
+            if (!result.isEntered()) {
+                return "KO " + result.getStatus();
+            }
+            return "OK " + result.getStatus() + " " + result.getParkingSpot().getId() + " "
+                    + result.getInTime().getTimeInMillis() + " " + result.isFrequentUser();
+        } else if (command.equals("EXIT") && words.length == 2) {
+            ExitResult result;
+            requests.acquire();
+            try {
+                result = parkingService.exit(words[1]);
+            } finally {
+                requests.release();
+            }
+            if (!result.isExited()) {
+                return "KO " + result.getStatus();
+            }
+            return "OK " + result.getStatus() + " " + result.getPrice() + " "
+                    + result.getOutTime().getTimeInMillis() + " " + result.isFrequentUser();
+        }
+        return "KO BAD_REQUEST expected ENTER <CAR|BIKE> <registration number> [entrance], EXIT <registration number> or QUIT";
+    }
+}
@@ -1,24 +1,159 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.allocation.StandardAllocationStrategy;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DurabilityPolicy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.CacheSnapshotter;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.RollupDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalReplayer;
+import com.parkit.parkingsystem.metrics.MetricsReporter;
+import com.parkit.parkingsystem.rollup.ParkingRollups;
+import com.parkit.parkingsystem.store.InMemoryParkingStore;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+    /**
+     * System property choosing the {@link DurabilityPolicy} of ticket writes, SYNC by default.
+     */
+    public static final String DURABILITY_PROPERTY = "parkit.durability";
+
+    /**
+     * System property giving the port of the {@link GateServer}; the server is not started without it.
+     */
+    public static final String GATE_PORT_PROPERTY = "parkit.gate.port";
+
+    /**
+     * System property giving the address the {@link GateServer} listens on, e.g. {@code 0.0.0.0} for every
+     * interface; loopback only without it.
+     */
+    public static final String GATE_BIND_PROPERTY = "parkit.gate.bind";
+
+    /**
+     * System property giving, in seconds, how often the operation metrics are logged; 0 turns it off.
+     */
+    public static final String METRICS_INTERVAL_PROPERTY = "parkit.metrics.interval";
+
+    public static final long DEFAULT_METRICS_INTERVAL_SECONDS = 60;
+
+    /**
+     * System property giving the path of the {@link GateJournal}; entries and exits are written straight to
+     * the database without it.
+     */
+    public static final String JOURNAL_PROPERTY = "parkit.journal.file";
+
+    public static final int JOURNAL_CAPACITY = 65_536;
+    public static final long JOURNAL_SHUTDOWN_WAIT_SECONDS = 10;
+
+    /**
+     * System property choosing where tickets and spots are kept: {@value #MEMORY_STORE} to keep them in the
+     * {@link InMemoryParkingStore} rather than in MySQL.
+     */
+    public static final String STORE_PROPERTY = "parkit.store";
+
+    public static final String MEMORY_STORE = "memory";
+
+    /**
+     * System property giving the snapshot file of the in-memory store; it is not saved without it.
+     */
+    public static final String STORE_SNAPSHOT_PROPERTY = "parkit.store.snapshot";
+
+    /**
+     * System property giving the spots of a new in-memory store, e.g. {@code CAR=3,BIKE=2}.
+     */
+    public static final String STORE_SPOTS_PROPERTY = "parkit.store.spots";
+
+    public static final String DEFAULT_STORE_SPOTS = "CAR=3,BIKE=2";
+    public static final long STORE_SNAPSHOT_INTERVAL_SECONDS = 60;
+
+    /**
+     * System property giving, in seconds, how often the {@link ParkingRollups} are added to the
+     * {@code parking_rollup} table; 0 turns the rollups off.
+     */
+    public static final String ROLLUP_INTERVAL_PROPERTY = "parkit.rollup.interval";
+
+    public static final long DEFAULT_ROLLUP_INTERVAL_SECONDS = 60;
+
+    /**
+     * System property giving the file of the {@link CacheSnapshotter}, from which the open tickets, spot
+     * availability and visit counts are started after a restart; they are read from the tables without it.
+     */
+    public static final String CACHE_SNAPSHOT_PROPERTY = "parkit.cache.snapshot";
+
+    public static final long CACHE_SNAPSHOT_INTERVAL_SECONDS = 60;
+
+    /**
+     * System property choosing the {@link StandardAllocationStrategy} of the spots given to entering vehicles;
+     * the lowest free spot of the type is given without it.
+     */
+    public static final String ALLOCATION_PROPERTY = "parkit.allocation";
+
+    public static final int GATE_MAX_CONNECTIONS = 1_000;
+    public static final int GATE_MAX_CONCURRENT_REQUESTS = DataBaseConfig.POOL_MAX_SIZE;
+
     public static void loadInterface(){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService;
+        TicketDAO ticketDAO = null;
+        InMemoryParkingStore memoryStore = null;
+        JournalReplayer journalReplayer = null;
+        ParkingRollups rollups = null;
+        CacheSnapshotter cacheSnapshotter = null;
+        AllocationStrategy allocationStrategy = allocationStrategy();
+        if (usesMemoryStore()) {
+            memoryStore = openMemoryStore();
+            if (memoryStore == null) {
+                return;
+            }
+            memoryStore.setAllocationStrategy(allocationStrategy);
+            parkingService = new ParkingService(inputReaderUtil, memoryStore, memoryStore);
+        } else {
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            ticketDAO = new TicketDAO();
+            ticketDAO.setDurabilityPolicy(DurabilityPolicy.valueOf(System.getProperty(DURABILITY_PROPERTY, DurabilityPolicy.SYNC.name())));
+            ticketDAO.setSpotStore(parkingSpotDAO);
+            parkingSpotDAO.setAllocationStrategy(allocationStrategy);
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+            // the ENTER_VEHICLE procedure can't see ticket writes still queued by a write-behind,
+            // and always takes the lowest free spot
+            if (ticketDAO.getDurabilityPolicy() == DurabilityPolicy.SYNC && allocationStrategy == null) {
+                parkingService.setEntryStore(new ParkingEntryDAO(parkingSpotDAO, ticketDAO));
+            }
+            journalReplayer = startJournal(parkingService, parkingSpotDAO, ticketDAO);
+            if (journalReplayer == null) {
+                cacheSnapshotter = startCacheSnapshots(parkingSpotDAO, ticketDAO);
+            }
+            rollups = startRollups(parkingService);
+        }
+        GateServer gateServer = startGateServer(parkingService);
+        long metricsInterval = Long.getLong(METRICS_INTERVAL_PROPERTY, DEFAULT_METRICS_INTERVAL_SECONDS);
+        MetricsReporter metricsReporter = metricsInterval > 0 ? new MetricsReporter(metricsInterval) : null;
 
         while(continueApp){
             loadMenu();
@@ -34,6 +169,28 @@ public class InteractiveShell {
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    if (gateServer != null) {
+                        gateServer.close();
+                    }
+                    if (journalReplayer != null) {
+                        closeJournal(journalReplayer);
+                    }
+                    if (rollups != null) {
+                        rollups.close();
+                    }
+                    if (cacheSnapshotter != null) {
+                        cacheSnapshotter.close();
+                    }
+                    if (ticketDAO != null) {
+                        ticketDAO.close();
+                    }
+                    if (memoryStore != null) {
+                        memoryStore.close();
+                    }
+                    if (metricsReporter != null) {
+                        metricsReporter.close();
+                    }
+                    DataBaseConfig.closePools();
                     continueApp = false;
                     break;
                 }
@@ -42,6 +199,200 @@ public class InteractiveShell {
         }
     }
 
+    /**
+     * @return the configured allocation strategy, or null to give the lowest free spot.
+     * @throws IllegalArgumentException if the property names no {@link StandardAllocationStrategy}.
+     */
+    private static AllocationStrategy allocationStrategy() {
+        String strategy = System.getProperty(ALLOCATION_PROPERTY);
+        return strategy == null ? null : StandardAllocationStrategy.valueOf(strategy.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return true if tickets and spots are kept in memory rather than in MySQL.
+     */
+    public static boolean usesMemoryStore() {
+        return MEMORY_STORE.equals(System.getProperty(STORE_PROPERTY));
+    }
+
+    /**
+     * Loads the in-memory store from its snapshot, or creates it with the configured spots if there is none.
+     *
+     * @return the store, or null if the snapshot or the spots can't be read.
+     */
+    private static InMemoryParkingStore openMemoryStore() {
+        String snapshotFile = System.getProperty(STORE_SNAPSHOT_PROPERTY);
+        InMemoryParkingStore store;
+        try {
+            if (snapshotFile != null && Files.exists(Paths.get(snapshotFile))) {
+                store = InMemoryParkingStore.load(Paths.get(snapshotFile));
+            } else {
+                store = InMemoryParkingStore.withSpots(parseSpots(System.getProperty(STORE_SPOTS_PROPERTY, DEFAULT_STORE_SPOTS)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Unable to open the in-memory store", e);
+            System.out.println("Unable to open the in-memory store. Please check the logs.");
+            return null;
+        }
+        if (snapshotFile != null) {
+            store.snapshotEvery(Paths.get(snapshotFile), STORE_SNAPSHOT_INTERVAL_SECONDS);
+        }
+        return store;
+    }
+
+    /**
+     * @param spots the number of spots of each type, e.g. {@code CAR=3,BIKE=2}.
+     */
+    private static Map<ParkingType, Integer> parseSpots(String spots) {
+        Map<ParkingType, Integer> spotsByType = new EnumMap<>(ParkingType.class);
+        for (String spot : spots.split(",")) {
+            String[] typeAndCount = spot.trim().split("=");
+            if (typeAndCount.length != 2) {
+                throw new IllegalArgumentException("Invalid spots: " + spots);
+            }
+            int count = Integer.parseInt(typeAndCount[1].trim());
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid spots: " + spots);
+            }
+            spotsByType.put(ParkingType.valueOf(typeAndCount[0].trim()), count);
+        }
+        return spotsByType;
+    }
+
+    /**
+     * Opens the journal and applies the records left by the previous run before the gates open, then
+     * switches the service to journal writes.
+     *
+     * @return the replayer of the journal, or null if no journal is configured or it could not be opened.
+     */
+    private static JournalReplayer startJournal(ParkingService parkingService, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        String journalFile = System.getProperty(JOURNAL_PROPERTY);
+        if (journalFile == null) {
+            return null;
+        }
+        GateJournal journal;
+        try {
+            journal = GateJournal.open(Paths.get(journalFile), JOURNAL_CAPACITY);
+        } catch (IOException e) {
+            logger.error("Unable to open gate journal {}", journalFile, e);
+            System.out.println("Unable to open the gate journal, entries and exits will be written to the database directly.");
+            return null;
+        }
+        JournalReplayer journalReplayer = new JournalReplayer(journal, ticketDAO.dataBaseConfig);
+        journalReplayer.start();
+        try {
+            if (journal.getPendingCount() > 0) {
+                System.out.println("Applying " + journal.getPendingCount() + " journaled entries and exits...");
+            }
+            while (!journal.awaitApplied(TimeUnit.SECONDS.toMillis(10))) {
+                logger.info("Waiting for the database to apply {} journaled records", journal.getPendingCount());
+            }
+            // the indexes now match the database, and are kept in step with the journal from here on
+            parkingSpotDAO.loadAvailabilityIndex();
+            ticketDAO.loadActiveTicketIndex();
+            // exits are priced from the visit counter cache only
+            ticketDAO.loadVisitCountersOfParkedVehicles();
+        } catch (Exception e) {
+            logger.error("Unable to load the parking state after replaying the journal", e);
+        }
+        parkingService.setJournal(journal);
+        return journalReplayer;
+    }
+
+    /**
+     * Gives the replayer some time to apply the last records; the others are applied at the next start.
+     */
+    private static void closeJournal(JournalReplayer journalReplayer) {
+        GateJournal journal = journalReplayer.getJournal();
+        try {
+            journal.awaitApplied(TimeUnit.SECONDS.toMillis(JOURNAL_SHUTDOWN_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journalReplayer.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Error while closing gate journal", e);
+        }
+    }
+
+    /**
+     * Starts the indexes of the DAOs from the snapshot file, if any, then writes it every minute. Ticket
+     * writes queued in memory would be missing from the tables a snapshot is caught up with, so snapshots
+     * are only taken with {@link DurabilityPolicy#SYNC} writes and without a gate journal.
+     *
+     * @return the snapshotter, or null if no snapshot file is configured.
+     */
+    private static CacheSnapshotter startCacheSnapshots(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        String snapshotFile = System.getProperty(CACHE_SNAPSHOT_PROPERTY);
+        if (snapshotFile == null) {
+            return null;
+        }
+        if (ticketDAO.getDurabilityPolicy() != DurabilityPolicy.SYNC) {
+            logger.warn("Cache snapshots need {} writes, ignoring {}", DurabilityPolicy.SYNC, snapshotFile);
+            return null;
+        }
+        Path snapshotPath = Paths.get(snapshotFile);
+        CacheSnapshotter cacheSnapshotter = new CacheSnapshotter(parkingSpotDAO, ticketDAO);
+        if (!cacheSnapshotter.warmStart(snapshotPath)) {
+            logger.info("No usable cache snapshot in {}, the parking state is read from the database", snapshotFile);
+        }
+        cacheSnapshotter.snapshotEvery(snapshotPath, CACHE_SNAPSHOT_INTERVAL_SECONDS);
+        return cacheSnapshotter;
+    }
+
+    /**
+     * Starts the rollups from the open tickets and from what the previous runs persisted since yesterday,
+     * then counts the entries and exits of the service in them.
+     *
+     * @return the rollups, or null if they are turned off or could not be loaded.
+     */
+    private static ParkingRollups startRollups(ParkingService parkingService) {
+        long interval = Long.getLong(ROLLUP_INTERVAL_PROPERTY, DEFAULT_ROLLUP_INTERVAL_SECONDS);
+        if (interval <= 0) {
+            return null;
+        }
+        RollupDAO rollupDAO = new RollupDAO();
+        ParkingRollups rollups = new ParkingRollups();
+        try {
+            rollupDAO.countOpenTickets().forEach(rollups::setOccupancy);
+            long since = LocalDate.now().minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            rollups.load(rollupDAO.loadRollups(since));
+        } catch (Exception e) {
+            logger.error("Unable to load the rollups, occupancy and revenue won't be counted", e);
+            return null;
+        }
+        rollups.register();
+        rollups.persistEvery(rollupDAO, interval);
+        parkingService.setRollups(rollups);
+        return rollups;
+    }
+
+    private static GateServer startGateServer(ParkingService parkingService) {
+        String port = System.getProperty(GATE_PORT_PROPERTY);
+        if (port == null) {
+            return null;
+        }
+        String bindAddress = System.getProperty(GATE_BIND_PROPERTY);
+        GateServer gateServer = null;
+        try {
+            InetAddress address = bindAddress == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddress);
+            gateServer = new GateServer(parkingService, address, Integer.parseInt(port), GATE_MAX_CONNECTIONS,
+                    GATE_MAX_CONCURRENT_REQUESTS);
+            gateServer.start();
+            System.out.println("Gate terminals can connect on " + address.getHostAddress() + " port " + gateServer.getPort());
+            return gateServer;
+        } catch (IOException e) {
+            logger.error("Unable to start gate server", e);
+            System.out.println("Unable to start the gate server. Please check the logs.");
+            if (gateServer != null) {
+                gateServer.close();
+            }
+            return null;
+        }
+    }
+
     private static void loadMenu(){
         System.out.println("Please select an option. Simply enter the number to choose an action");
         System.out.println("1 New Vehicle Entering - Allocate Parking Space");
@@ -0,0 +1,510 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.util.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@link ParkingService} with simulated traffic and measures the latency of entries and exits.
+ *
+ * <p>The schedule is open-loop: arrivals follow a Poisson process at the configured rate, decided up front
+ * and independent of how fast the parking answers, and each vehicle leaves after its stay whether or not
+ * other requests are stuck. Latency is measured from the time a request was due, not from the time it was
+ * sent, so a stall delays (and is charged to) every request due during it instead of hiding them
+ * (coordinated omission). Each vehicle runs on its own virtual thread, like a gate terminal.</p>
+ *
+ * <p>A share of the arrivals are vehicles that already visited, to exercise the frequent user count. A
+ * vehicle that finds no free spot is recorded as {@code PARKING_FULL} and goes away.</p>
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LogManager.getLogger("LoadGenerator");
+
+    public enum Operation {
+        ENTER, EXIT
+    }
+
+    public enum StayDistribution {
+        /** Every vehicle stays the mean stay. */
+        FIXED,
+        /** Stays are uniform between 0 and twice the mean stay. */
+        UNIFORM,
+        /** Stays are exponential, i.e. many short stays and a few long ones. */
+        EXPONENTIAL
+    }
+
+    /**
+     * What the simulated traffic looks like. Defaults give a short run of 50 arrivals per second.
+     */
+    public static class Profile {
+        private double arrivalsPerSecond = 50;
+        private long durationSeconds = 60;
+        private long warmupSeconds = 10;
+        private double carRatio = 0.8;
+        private double repeatVisitorRatio = 0.3;
+        private double meanStaySeconds = 5;
+        private StayDistribution stayDistribution = StayDistribution.EXPONENTIAL;
+        private long seed = 42;
+
+        public double getArrivalsPerSecond() {
+            return arrivalsPerSecond;
+        }
+
+        public void setArrivalsPerSecond(double arrivalsPerSecond) {
+            if (!(arrivalsPerSecond > 0)) {
+                throw new IllegalArgumentException("Arrival rate must be positive: " + arrivalsPerSecond);
+            }
+            this.arrivalsPerSecond = arrivalsPerSecond;
+        }
+
+        /**
+         * @return how long vehicles keep arriving, warm-up included.
+         */
+        public long getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        public void setDurationSeconds(long durationSeconds) {
+            if (durationSeconds <= 0) {
+                throw new IllegalArgumentException("Duration must be positive: " + durationSeconds);
+            }
+            this.durationSeconds = durationSeconds;
+        }
+
+        /**
+         * @return how long at the start of the run latencies are not recorded, less than the duration.
+         */
+        public long getWarmupSeconds() {
+            return warmupSeconds;
+        }
+
+        public void setWarmupSeconds(long warmupSeconds) {
+            if (warmupSeconds < 0) {
+                throw new IllegalArgumentException("Warm-up must not be negative: " + warmupSeconds);
+            }
+            this.warmupSeconds = warmupSeconds;
+        }
+
+        /**
+         * @return the share of new vehicles that are cars, the others are bikes.
+         */
+        public double getCarRatio() {
+            return carRatio;
+        }
+
+        public void setCarRatio(double carRatio) {
+            this.carRatio = checkRatio("Car ratio", carRatio);
+        }
+
+        /**
+         * @return the share of arrivals that are vehicles seen before (when there are some).
+         */
+        public double getRepeatVisitorRatio() {
+            return repeatVisitorRatio;
+        }
+
+        public void setRepeatVisitorRatio(double repeatVisitorRatio) {
+            this.repeatVisitorRatio = checkRatio("Repeat visitor ratio", repeatVisitorRatio);
+        }
+
+        public double getMeanStaySeconds() {
+            return meanStaySeconds;
+        }
+
+        public void setMeanStaySeconds(double meanStaySeconds) {
+            if (!(meanStaySeconds >= 0)) {
+                throw new IllegalArgumentException("Mean stay must not be negative: " + meanStaySeconds);
+            }
+            this.meanStaySeconds = meanStaySeconds;
+        }
+
+        public StayDistribution getStayDistribution() {
+            return stayDistribution;
+        }
+
+        public void setStayDistribution(StayDistribution stayDistribution) {
+            this.stayDistribution = stayDistribution;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        private static double checkRatio(String name, double ratio) {
+            if (!(ratio >= 0 && ratio <= 1)) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1: " + ratio);
+            }
+            return ratio;
+        }
+
+        /**
+         * Reads a profile from {@code name=value} arguments: {@code rate}, {@code duration}, {@code warmup},
+         * {@code cars}, {@code repeat}, {@code stay}, {@code stayDistribution} and {@code seed}.
+         *
+         * @throws IllegalArgumentException on an unknown argument or an invalid value.
+         */
+        public static Profile parse(String... args) {
+            Profile profile = new Profile();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected name=value: " + arg);
+                }
+                String value = arg.substring(equals + 1).trim();
+                switch (arg.substring(0, equals).trim()) {
+                    case "rate": {
+                        profile.setArrivalsPerSecond(Double.parseDouble(value));
+                        break;
+                    }
+                    case "duration": {
+                        profile.setDurationSeconds(Long.parseLong(value));
+                        break;
+                    }
+                    case "warmup": {
+                        profile.setWarmupSeconds(Long.parseLong(value));
+                        break;
+                    }
+                    case "cars": {
+                        profile.setCarRatio(Double.parseDouble(value));
+                        break;
+                    }
+                    case "repeat": {
+                        profile.setRepeatVisitorRatio(Double.parseDouble(value));
+                        break;
+                    }
+                    case "stay": {
+                        profile.setMeanStaySeconds(Double.parseDouble(value));
+                        break;
+                    }
+                    case "stayDistribution": {
+                        profile.setStayDistribution(StayDistribution.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    }
+                    case "seed": {
+                        profile.setSeed(Long.parseLong(value));
+                        break;
+                    }
+                    default: {
+                        throw new IllegalArgumentException("Unknown load profile argument: " + arg);
+                    }
+                }
+            }
+            profile.checkWarmup();
+            return profile;
+        }
+
+        private void checkWarmup() {
+            if (warmupSeconds >= durationSeconds) {
+                throw new IllegalArgumentException("Warm-up (" + warmupSeconds + " s) must be shorter than the duration ("
+                        + durationSeconds + " s)");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.1f arrivals/s for %d s (warm-up %d s), %.0f%% cars, %.0f%% repeat visitors,"
+                    + " %s stays of %.1f s on average", arrivalsPerSecond, durationSeconds, warmupSeconds, carRatio * 100,
+                    repeatVisitorRatio * 100, stayDistribution.name().toLowerCase(Locale.ROOT), meanStaySeconds);
+        }
+    }
+
+    /**
+     * Latencies and outcomes of one operation, recorded after the warm-up.
+     */
+    public static class OperationStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final Map<String, LongAdder> outcomes = new ConcurrentSkipListMap<>();
+        // latest due time of a recorded request, from the end of the warm-up
+        private final LongAccumulator latestDueNanos = new LongAccumulator(Math::max, 0);
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return how many requests ended with this status, e.g. {@code ENTERED} or {@code PARKING_FULL}.
+         */
+        public long getOutcomeCount(Enum<?> status) {
+            LongAdder counter = outcomes.get(status.name());
+            return counter == null ? 0 : counter.sum();
+        }
+
+        private void record(long sinceWarmupNanos, long latencyNanos, Enum<?> status) {
+            latestDueNanos.accumulate(sinceWarmupNanos);
+            latencies.record(latencyNanos);
+            outcomes.computeIfAbsent(status.name(), name -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Results of a run.
+     */
+    public static class Report {
+        private final Profile profile;
+        private final Map<Operation, OperationStats> stats;
+        private final long measuredNanos;
+
+        private Report(Profile profile, Map<Operation, OperationStats> stats, long measuredNanos) {
+            this.profile = profile;
+            this.stats = stats;
+            this.measuredNanos = measuredNanos;
+        }
+
+        public OperationStats getStats(Operation operation) {
+            return stats.get(operation);
+        }
+
+        /**
+         * @return the recorded requests per second, over the measured part of the run or, for exits due after
+         * the last arrival, until the last of them.
+         */
+        public double getThroughput(Operation operation) {
+            OperationStats operationStats = stats.get(operation);
+            long windowNanos = Math.max(measuredNanos, operationStats.latestDueNanos.get());
+            return operationStats.latencies.getCount() * 1e9 / windowNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append("Load: ").append(profile).append('\n');
+            report.append(String.format(Locale.ROOT, "%-6s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                    "op", "count", "ops/s", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms", "outcomes"));
+            for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+                LatencyHistogram latencies = entry.getValue().latencies;
+                report.append(String.format(Locale.ROOT, "%-6s %9d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n",
+                        entry.getKey(), latencies.getCount(), getThroughput(entry.getKey()),
+                        latencies.getMean() / 1e6, millis(latencies.getValueAtPercentile(50)),
+                        millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+                        millis(latencies.getMax()), entry.getValue().outcomes));
+            }
+            return report.toString();
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    /**
+     * A simulated vehicle. Registration numbers fit the 10 characters of the ticket table.
+     */
+    private static final class Vehicle {
+        private final String vehicleRegNumber;
+        private final ParkingType parkingType;
+
+        private Vehicle(String vehicleRegNumber, ParkingType parkingType) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingType = parkingType;
+        }
+    }
+
+    private final ParkingService parkingService;
+    private final Profile profile;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Queue<Vehicle> departedVehicles = new ConcurrentLinkedQueue<>();
+    private final AtomicLong newVehicles = new AtomicLong();
+
+    /**
+     * @throws IllegalArgumentException if the warm-up is not shorter than the duration.
+     */
+    public LoadGenerator(ParkingService parkingService, Profile profile) {
+        profile.checkWarmup();
+        this.parkingService = parkingService;
+        this.profile = profile;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /**
+     * Runs the load and waits until every vehicle has left.
+     */
+    public Report run() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(profile.getSeed());
+        double meanInterArrivalNanos = 1e9 / profile.getArrivalsPerSecond();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+        long end = start + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+        logger.info("Starting load: {}", profile);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            long due = start;
+            while (true) {
+                due += (long) exponential(random, meanInterArrivalNanos);
+                if (due - end >= 0) {
+                    break;
+                }
+                Vehicle vehicle = nextVehicle(random);
+                long stayNanos = stayNanos(random);
+                long arrival = due;
+                sleepUntil(arrival);
+                executor.execute(() -> visit(vehicle, arrival, stayNanos, measureFrom));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.info("Waiting for the last vehicles to leave");
+        }
+        Report report = new Report(profile, stats, end - measureFrom);
+        logger.info("Load done\n{}", report);
+        return report;
+    }
+
+    private Vehicle nextVehicle(SplittableRandom random) {
+        if (random.nextDouble() < profile.getRepeatVisitorRatio()) {
+            Vehicle returning = departedVehicles.poll();
+            if (returning != null) {
+                return returning;
+            }
+        }
+        ParkingType parkingType = random.nextDouble() < profile.getCarRatio() ? ParkingType.CAR : ParkingType.BIKE;
+        return new Vehicle(String.format("LG%08d", newVehicles.incrementAndGet()), parkingType);
+    }
+
+    private long stayNanos(SplittableRandom random) {
+        double meanNanos = profile.getMeanStaySeconds() * 1e9;
+        switch (profile.getStayDistribution()) {
+            case FIXED: {
+                return (long) meanNanos;
+            }
+            case UNIFORM: {
+                return (long) (random.nextDouble() * 2 * meanNanos);
+            }
+            default: {
+                return (long) exponential(random, meanNanos);
+            }
+        }
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    /**
+     * One vehicle: enters when due, stays, then leaves. Runs on its own virtual thread.
+     */
+    private void visit(Vehicle vehicle, long arrival, long stayNanos, long measureFrom) {
+        EntryResult entry = parkingService.enter(vehicle.parkingType, vehicle.vehicleRegNumber);
+        long entered = System.nanoTime();
+        if (arrival - measureFrom >= 0) {
+            stats.get(Operation.ENTER).record(arrival - measureFrom, entered - arrival, entry.getStatus());
+        }
+        if (!entry.isEntered()) {
+            departedVehicles.offer(vehicle);
+            return;
+        }
+
+        long departure = entered + stayNanos;
+        sleepUntil(departure);
+        ExitResult exit = parkingService.exit(vehicle.vehicleRegNumber);
+        if (departure - measureFrom >= 0) {
+            stats.get(Operation.EXIT).record(departure - measureFrom, System.nanoTime() - departure, exit.getStatus());
+        }
+        departedVehicles.offer(vehicle);
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Runs a load against a MySQL database created with {@code resources/Data.sql}, migrated first to the
+     * latest schema. Tickets are added to it, so point it at a test database.
+     *
+     * @param args {@code url=<jdbc url>}, {@code user=...}, {@code password=...} (defaulting to the
+     *             {@code test} database) and the {@link Profile#parse(String...) profile} arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        String url = "jdbc:mysql://localhost:3306/test?useServerPrepStmts=true";
+        String user = "root";
+        String password = "rootroot";
+        List<String> profileArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("url=")) {
+                url = arg.substring("url=".length());
+            } else if (arg.startsWith("user=")) {
+                user = arg.substring("user=".length());
+            } else if (arg.startsWith("password=")) {
+                password = arg.substring("password=".length());
+            } else {
+                profileArgs.add(arg);
+            }
+        }
+        Profile profile = Profile.parse(profileArgs.toArray(new String[0]));
+        DataBaseConfig dataBaseConfig = dataBaseConfig(url, user, password);
+        try {
+            new SchemaMigrator(dataBaseConfig).migrate();
+            System.out.println(run(dataBaseConfig, profile));
+        } finally {
+            DataBaseConfig.closePools();
+        }
+    }
+
+    /**
+     * Runs a load through a {@link ParkingService} whose DAOs use the given database.
+     */
+    public static Report run(DataBaseConfig dataBaseConfig, Profile profile) throws InterruptedException {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        try {
+            return new LoadGenerator(new ParkingService(parkingSpotDAO, ticketDAO), profile).run();
+        } finally {
+            ticketDAO.close();
+        }
+    }
+
+    private static DataBaseConfig dataBaseConfig(String url, String user, String password) {
+        return new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return url;
+            }
+
+            @Override
+            protected String getUser() {
+                return user;
+            }
+
+            @Override
+            protected String getPassword() {
+                return password;
+            }
+        };
+    }
+}
@@ -1,51 +1,288 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalRecord;
+import com.parkit.parkingsystem.journal.JournalReplayer;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.rollup.ParkingRollups;
+import com.parkit.parkingsystem.store.EntryStore;
+import com.parkit.parkingsystem.store.SpotStore;
+import com.parkit.parkingsystem.store.TicketStore;
 import com.parkit.parkingsystem.util.FormatUtil;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Calendar;
-
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
+    private static final OperationMetrics ENTER = Metrics.operation("ParkingService.enter");
+    private static final OperationMetrics EXIT = Metrics.operation("ParkingService.exit");
+
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private TicketDAO ticketDAO;
+    private SpotStore spotStore;
+    private TicketStore ticketStore;
+    private volatile GateJournal journal;
+    private volatile EntryStore entryStore;
+    private volatile ParkingRollups rollups;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+    public ParkingService(InputReaderUtil inputReaderUtil, SpotStore spotStore, TicketStore ticketStore) {
         this.inputReaderUtil = inputReaderUtil;
-        this.parkingSpotDAO = parkingSpotDAO;
-        this.ticketDAO = ticketDAO;
+        this.spotStore = spotStore;
+        this.ticketStore = ticketStore;
+    }
+
+    /**
+     * Creates a service driven only through {@link #enter(ParkingType, String)} and {@link #exit(String)},
+     * without console.
+     */
+    public ParkingService(SpotStore spotStore, TicketStore ticketStore) {
+        this(null, spotStore, ticketStore);
+    }
+
+    /**
+     * Records entries and exits in the journal instead of the database, so that gates get their answer
+     * without waiting for the database. Spots and open tickets are then decided from the in-memory indexes
+     * of the stores, and a {@link JournalReplayer} must apply the journal to the database.
+     *
+     * @param journal the journal, or null to go back to database writes.
+     */
+    public void setJournal(GateJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records entries with a single call to this store rather than step by step through the spot and ticket
+     * stores. Not used for entries made within a {@link UnitOfWork}, nor while a journal is set.
+     *
+     * @param entryStore the store, or null to go back to step by step entries.
+     */
+    public void setEntryStore(EntryStore entryStore) {
+        this.entryStore = entryStore;
+    }
+
+    /**
+     * Counts the entries and exits in these rollups once recorded.
+     *
+     * @param rollups the rollups, or null to stop counting.
+     */
+    public void setRollups(ParkingRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    /**
+     * Records a vehicle entering the parking at the default entrance.
+     *
+     * @see #enter(ParkingType, String, int)
+     */
+    public EntryResult enter(ParkingType parkingType, String vehicleRegNumber) {
+        return enter(parkingType, vehicleRegNumber, SpotStore.DEFAULT_ENTRANCE);
+    }
+
+    /**
+     * Records a vehicle entering the parking at an entrance, in a single {@link UnitOfWork}: either a free
+     * spot of the type is claimed and the ticket saved, or nothing is. Safe to call from several threads, two
+     * gates never get the same spot. The entry store, when set, takes the lowest free spot whatever the entrance.
+     *
+     * @param entrance the zone of the entrance, see {@link com.parkit.parkingsystem.allocation.AllocationStrategy}.
+     * @return the claimed spot and recorded in-time, or why the vehicle could not enter.
+     * @throws IllegalArgumentException if the type or the registration number is missing.
+     * @see TicketStore#isVehicleAlreadyInParking(String)
+     * @see SpotStore#claimNextAvailableSlot(ParkingType, int)
+     */
+    public EntryResult enter(ParkingType parkingType, String vehicleRegNumber, int entrance) {
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Vehicle type is required");
+        }
+        checkVehicle(vehicleRegNumber);
+        long start = System.nanoTime();
+        GateJournal gateJournal = journal;
+        EntryStore singleCallStore = entryStore;
+        EntryResult result;
+        if (gateJournal != null) {
+            result = journalEntry(gateJournal, parkingType, vehicleRegNumber, entrance);
+        } else if (singleCallStore != null && !UnitOfWork.isActive()) {
+            result = singleCallStore.enterVehicle(parkingType, vehicleRegNumber, System.currentTimeMillis());
+        } else {
+            result = recordEntry(parkingType, vehicleRegNumber, entrance);
+        }
+        ParkingRollups parkingRollups = rollups;
+        if (result.isEntered() && parkingRollups != null) {
+            parkingRollups.recordEntry(parkingType, result.getInTime().getTimeInMillis());
+        } else if (result.getStatus() == EntryResult.Status.ERROR) {
+            ENTER.error();
+        }
+        ENTER.record(start);
+        return result;
+    }
+
+    private EntryResult recordEntry(ParkingType parkingType, String vehicleRegNumber, int entrance) {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            if (ticketStore.isVehicleAlreadyInParking(vehicleRegNumber)) {
+                return EntryResult.rejected(EntryResult.Status.ALREADY_IN_PARKING, vehicleRegNumber);
+            }
+
+            int parkingNumber = spotStore.claimNextAvailableSlot(parkingType, entrance);
+            if (parkingNumber == 0) {
+                return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber);
+            } else if (parkingNumber < 0) {
+                return EntryResult.rejected(EntryResult.Status.ERROR, vehicleRegNumber);
+            }
+
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(FormatUtil.roundToTwoDecimals(0));
+            ticket.setInTimeMillis(System.currentTimeMillis());
+            if (!ticketStore.saveTicket(ticket)) {
+                // another gate entered the same vehicle since the check, or the save failed: the spot is freed
+                EntryResult.Status status = ticketStore.isVehicleAlreadyInParking(vehicleRegNumber)
+                        ? EntryResult.Status.ALREADY_IN_PARKING : EntryResult.Status.ERROR;
+                return EntryResult.rejected(status, vehicleRegNumber);
+            }
+
+            int count = ticketStore.getNbTicket(vehicleRegNumber);
+
+            unitOfWork.commit();
+            return EntryResult.entered(ticket, count >= Fare.MIN_USES_FOR_FREQUENT_USER);
+        } catch (Exception e) {
+            logger.error("Unable to process incoming vehicle", e);
+            return EntryResult.rejected(EntryResult.Status.ERROR, vehicleRegNumber);
+        }
+    }
+
+    /**
+     * Records a vehicle leaving the parking, in a single {@link UnitOfWork}: the fare is calculated
+     * (with the frequent user discount if applicable), the ticket closed and the spot freed.
+     *
+     * @return the fare and recorded out-time, or why the exit could not be recorded.
+     * @throws IllegalArgumentException if the registration number is missing.
+     */
+    public ExitResult exit(String vehicleRegNumber) {
+        checkVehicle(vehicleRegNumber);
+        long start = System.nanoTime();
+        GateJournal gateJournal = journal;
+        ExitResult result = gateJournal != null ? journalExit(gateJournal, vehicleRegNumber) : recordExit(vehicleRegNumber);
+        ParkingRollups parkingRollups = rollups;
+        if (result.isExited() && parkingRollups != null) {
+            parkingRollups.recordExit(result.getParkingSpot().getParkingType(), result.getOutTime().getTimeInMillis(),
+                    FormatUtil.toCents(result.getPrice()));
+        } else if (result.getStatus() == ExitResult.Status.ERROR) {
+            EXIT.error();
+        }
+        EXIT.record(start);
+        return result;
+    }
+
+    private ExitResult recordExit(String vehicleRegNumber) {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            Ticket ticket = ticketStore.getTicket(vehicleRegNumber);
+            if (ticket == null) {
+                return ExitResult.rejected(ExitResult.Status.NOT_IN_PARKING, vehicleRegNumber);
+            }
+
+            ticket.setOutTimeMillis(System.currentTimeMillis());
+
+            int count = ticketStore.getNbTicket(vehicleRegNumber);
+            boolean frequentUser = count >= Fare.MIN_USES_FOR_FREQUENT_USER;
+
+            fareCalculatorService.calculateFare(ticket, frequentUser);
+
+            if (!ticketStore.updateTicket(ticket)) {
+                return ExitResult.rejected(ExitResult.Status.ERROR, vehicleRegNumber);
+            }
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            parkingSpot.setAvailable(true);
+            spotStore.updateParking(parkingSpot);
+
+            unitOfWork.commit();
+            return ExitResult.exited(ticket, frequentUser);
+        } catch (Exception e) {
+            logger.error("Unable to process exiting vehicle", e);
+            return ExitResult.rejected(ExitResult.Status.ERROR, vehicleRegNumber);
+        }
+    }
+
+    private EntryResult journalEntry(GateJournal gateJournal, ParkingType parkingType, String vehicleRegNumber, int entrance) {
+        if (ticketStore.isVehicleAlreadyInParking(vehicleRegNumber)) {
+            return EntryResult.rejected(EntryResult.Status.ALREADY_IN_PARKING, vehicleRegNumber);
+        }
+
+        int parkingNumber = spotStore.reserveNextAvailableSlot(parkingType, entrance);
+        if (parkingNumber == 0) {
+            return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber);
+        } else if (parkingNumber < 0) {
+            return EntryResult.rejected(EntryResult.Status.ERROR, vehicleRegNumber);
+        }
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(FormatUtil.roundToTwoDecimals(0));
+        ticket.setInTimeMillis(System.currentTimeMillis());
+        try {
+            gateJournal.append(JournalRecord.entry(ticket));
+        } catch (Exception e) {
+            spotStore.releaseReservedSlot(parkingNumber);
+            logger.error("Unable to journal incoming vehicle", e);
+            return EntryResult.rejected(EntryResult.Status.ERROR, vehicleRegNumber);
+        }
+        ticketStore.trackJournaledEntry(ticket);
+
+        // never waits for the database: a vehicle whose visits aren't in memory yet is not greeted as a regular
+        int count = ticketStore.getCachedNbTicket(vehicleRegNumber);
+        return EntryResult.entered(ticket, count >= Fare.MIN_USES_FOR_FREQUENT_USER);
+    }
+
+    private ExitResult journalExit(GateJournal gateJournal, String vehicleRegNumber) {
+        Ticket ticket = ticketStore.getOpenTicket(vehicleRegNumber);
+        if (ticket == null) {
+            return ExitResult.rejected(ExitResult.Status.NOT_IN_PARKING, vehicleRegNumber);
+        }
+
+        ticket.setOutTimeMillis(System.currentTimeMillis());
+
+        // never waits for the database: the visits of parked vehicles are loaded when they enter or at start,
+        // a vehicle whose visits still aren't in memory pays the full fare
+        int count = ticketStore.getCachedNbTicket(vehicleRegNumber);
+        boolean frequentUser = count >= Fare.MIN_USES_FOR_FREQUENT_USER;
+
+        fareCalculatorService.calculateFare(ticket, frequentUser);
+        try {
+            gateJournal.append(JournalRecord.exit(ticket));
+        } catch (Exception e) {
+            logger.error("Unable to journal exiting vehicle", e);
+            return ExitResult.rejected(ExitResult.Status.ERROR, vehicleRegNumber);
+        }
+        ticketStore.trackJournaledExit(ticket);
+        spotStore.releaseReservedSlot(ticket.getParkingSpot().getId());
+
+        return ExitResult.exited(ticket, frequentUser);
+    }
+
+    private static void checkVehicle(String vehicleRegNumber) {
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Vehicle registration number is required");
+        }
     }
 
     /**
-     * This method handles incoming vehicles.
-     * Steps :
-     * - checks if a parking spot is available and its number is valid ;
-     * - if available, it promps for the registration number of the incoming vehicle
-     * ;
-     * - checks if the incoming vehicle is not already in the parking lot
-     * based on its registration number ;
-     * - if the vehicle is not already in the parking lot, it marks the parking spot
-     * as unavailable ;
-     * - creates a new parking ticket and saves it in the database ;
-     * - displays a message with the assigned parkoing spot number and the recorded
-     * in-time for the vehicle.
-     * 
-     * @see TicketDAO#isVehicleAlreadyInParking(String)
-     * @see ParkingSpotDAO#updateParking(ParkingSpot)
-     * 
+     * Console front end of {@link #enter(ParkingType, String)}:
+     * - checks if a parking spot is available and prompts for the vehicle type ;
+     * - if available, it prompts for the registration number of the incoming vehicle ;
+     * - enters the vehicle and displays the assigned parking spot number and the
+     * recorded in-time, or why the vehicle could not enter.
      */
     public void processIncomingVehicle() {
         try {
@@ -53,34 +290,26 @@ public class ParkingService {
             if (parkingSpot != null && parkingSpot.getId() > 0) {
                 String vehicleRegNumber = getVehicleRegNumber();
 
-                if (ticketDAO.isVehicleAlreadyInParking(vehicleRegNumber)) {
-                    System.out.println("Error : this vehicle is already in the parking");
-
-                    return;
+                // the spot found above is only a hint: another gate may take it meanwhile
+                EntryResult result = enter(parkingSpot.getParkingType(), vehicleRegNumber);
+                switch (result.getStatus()) {
+                    case ENTERED: {
+                        if (result.isFrequentUser()) {
+                            System.out.println("Welcome back! As a regular user of our parking, you will receive a 5% discount.");
+                        }
+                        System.out.println("Generated Ticket and saved in DB");
+                        System.out.println("Please park your vehicle in spot number:" + result.getParkingSpot().getId());
+                        System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + result.getInTime().getTime());
+                        break;
+                    }
+                    case ALREADY_IN_PARKING: {
+                        System.out.println("Error : this vehicle is already in the parking");
+                        break;
+                    }
+                    default: {
+                        System.out.println("Error fetching parking number from DB. Parking slots might be full");
+                    }
                 }
-
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);// allot this parking space and mark it's availability as false
-
-                Calendar inTime = Calendar.getInstance();
-                Ticket ticket = new Ticket();
-                // ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                // ticket.setId(ticketID);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(FormatUtil.roundToTwoDecimals(0));
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
-
-                int count = ticketDAO.getNbTicket(vehicleRegNumber);
-                if (count >= Fare.MIN_USES_FOR_FREQUENT_USER) {
-                    System.out.println("Welcome back! As a regular user of our parking, you will receive a 5% discount.");
-                }
-
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:" + parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + ticket.getInTime().getTime());
             }
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
@@ -108,7 +337,7 @@ public class ParkingService {
         ParkingSpot parkingSpot = null;
         try {
             ParkingType parkingType = getVehicleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+            parkingNumber = spotStore.getNextAvailableSlot(parkingType);
             if (parkingNumber > 0) {
                 parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
             } else {
@@ -150,40 +379,30 @@ public class ParkingService {
     }
 
     /**
-     * Handles the exit process of a vehicle by:
-     * - Retrieving the active ticket.
-     * - Calculating the fare, applying a discount if applicable.
-     * - Updating the parking spot availability.
-     * - Displaying the payment details and exit time.
+     * Console front end of {@link #exit(String)}: prompts for the registration number,
+     * then displays the fare and out-time, or why the exit could not be recorded.
      */
     public void processExitingVehicle() {
         try {
             String vehicleRegNumber = getVehicleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber); 
-
-            Calendar outTime = Calendar.getInstance();
-            
-            ticket.setOutTime(outTime);
-
-            int count = ticketDAO.getNbTicket(vehicleRegNumber);
-
-            fareCalculatorService.calculateFare(ticket, count >= Fare.MIN_USES_FOR_FREQUENT_USER);
 
-            if (ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                if (count >= Fare.MIN_USES_FOR_FREQUENT_USER) {
-                    System.out.println("Thank you for your loyalty !");
+            ExitResult result = exit(vehicleRegNumber);
+            switch (result.getStatus()) {
+                case EXITED: {
+                    if (result.isFrequentUser()) {
+                        System.out.println("Thank you for your loyalty !");
+                    }
+                    System.out.println("Please pay the parking fare:" + result.getPrice() + "\n");
+                    System.out.println("Recorded out-time for vehicle number:" + vehicleRegNumber + " is:"+ result.getOutTime().getTime() + "\n");
+                    break;
+                }
+                case NOT_IN_PARKING: {
+                    System.out.println("Error : this vehicle is not in the parking");
+                    break;
+                }
+                default: {
+                    System.out.println("Unable to update ticket information. Error occurred");
                 }
-
-                double displayedPrice = ticket.getPrice();
-
-                System.out.println("Please pay the parking fare:" + displayedPrice + "\n");
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:"+ outTime.getTime() + "\n");
-            } else {
-                System.out.println("Unable to update ticket information. Error occurred");
             }
         } catch (Exception e) {
             logger.error("Unable to process exiting vehicle", e);
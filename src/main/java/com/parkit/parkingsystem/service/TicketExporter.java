@@ -0,0 +1,280 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketPage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the tickets entered within a time range, with the type of their spot, as CSV or as a compact
+ * binary file of columns.
+ *
+ * <p>Tickets are read with {@link TicketDAO#readTicketPage}, one page after the other in (in-time, id)
+ * order: each page is a short query starting after the last ticket of the previous one, so the driver never
+ * buffers the table and no transaction stays open for the length of the export. A reader thread fills the
+ * pages while the calling thread writes the previous ones. There are only {@link #PAGES_IN_FLIGHT} pages,
+ * reused all along: when the output is slower than the database the reader waits for a page to be written,
+ * and memory stays the same whatever the number of tickets.</p>
+ *
+ * <p>The binary file starts with the int {@link #BINARY_MAGIC} and the int version {@value #BINARY_VERSION}.
+ * Each page follows as its row count then one column after the other: ids (int), spot numbers (int), spot
+ * types (byte, {@code ParkingType} ordinal), registration numbers (unsigned byte length then UTF-8 bytes),
+ * prices in cents (long), in-times and out-times (long, epoch milliseconds, {@link Ticket#NO_TIME} if the
+ * vehicle is still parked). A row count of 0 ends the file, followed by the total number of rows (long).
+ * Numbers are big-endian, as written by {@link DataOutputStream}.</p>
+ */
+public class TicketExporter {
+
+    private static final Logger logger = LogManager.getLogger("TicketExporter");
+
+    public static final int PAGE_SIZE = 5_000;
+    public static final int PAGES_IN_FLIGHT = 2;
+
+    public static final String CSV_HEADER = "ID,PARKING_NUMBER,TYPE,VEHICLE_REG_NUMBER,PRICE,IN_TIME,OUT_TIME";
+    public static final int BINARY_MAGIC = 0x504B5831;
+    public static final int BINARY_VERSION = 1;
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Marks the end of the pages read, or that reading failed.
+     */
+    private static final TicketPage END_OF_PAGES = new TicketPage(1);
+
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    private final TicketDAO ticketDAO;
+    private final int pageSize;
+
+    public TicketExporter(TicketDAO ticketDAO, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.ticketDAO = ticketDAO;
+        this.pageSize = pageSize;
+    }
+
+    public TicketExporter(TicketDAO ticketDAO) {
+        this(ticketDAO, PAGE_SIZE);
+    }
+
+    /**
+     * Writes the tickets whose in-time is within [fromMillis, toMillis) to the output, which is flushed but
+     * left open.
+     *
+     * @return the number of tickets exported.
+     * @throws Exception if the tickets can't be read or written; the output then holds an incomplete export.
+     */
+    public long export(long fromMillis, long toMillis, Format format, OutputStream out) throws Exception {
+        long start = System.currentTimeMillis();
+        BlockingQueue<TicketPage> freePages = new ArrayBlockingQueue<>(PAGES_IN_FLIGHT);
+        // room for every page and the end marker, so the reader never blocks on the marker
+        BlockingQueue<TicketPage> readPages = new ArrayBlockingQueue<>(PAGES_IN_FLIGHT + 1);
+        for (int i = 0; i < PAGES_IN_FLIGHT; i++) {
+            freePages.add(new TicketPage(pageSize));
+        }
+        PageReader pageReader = new PageReader(fromMillis, toMillis, freePages, readPages);
+        Thread readerThread = new Thread(pageReader, "ticket-export-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        PageWriter writer = format == Format.CSV ? new CsvWriter(out) : new BinaryWriter(out);
+        long exported = 0;
+        try {
+            TicketPage page;
+            while ((page = readPages.take()) != END_OF_PAGES) {
+                writer.write(page);
+                exported += page.size();
+                freePages.put(page);
+            }
+            if (pageReader.error != null) {
+                throw pageReader.error;
+            }
+            writer.finish(exported);
+        } finally {
+            readerThread.interrupt();
+            readerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        logger.info("Exported {} tickets in {} ms", exported, System.currentTimeMillis() - start);
+        return exported;
+    }
+
+    /**
+     * Reads the pages of the range in order, each in a free page, until a page is not full.
+     */
+    private final class PageReader implements Runnable {
+        private final long fromMillis;
+        private final long toMillis;
+        private final BlockingQueue<TicketPage> freePages;
+        private final BlockingQueue<TicketPage> readPages;
+        private volatile Exception error;
+
+        private PageReader(long fromMillis, long toMillis, BlockingQueue<TicketPage> freePages, BlockingQueue<TicketPage> readPages) {
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.freePages = freePages;
+            this.readPages = readPages;
+        }
+
+        @Override
+        public void run() {
+            long afterInTime = fromMillis;
+            int afterId = 0;
+            try {
+                int read;
+                do {
+                    TicketPage page = freePages.take();
+                    read = ticketDAO.readTicketPage(afterInTime, afterId, toMillis, page);
+                    if (read > 0) {
+                        afterInTime = page.getInTime(read - 1);
+                        afterId = page.getId(read - 1);
+                        readPages.put(page);
+                    }
+                } while (read == pageSize);
+            } catch (InterruptedException e) {
+                // export abandoned by the writer
+                return;
+            } catch (Exception e) {
+                logger.error("Error reading tickets after in-time {} and id {}", new Timestamp(afterInTime), afterId, e);
+                error = e;
+            }
+            readPages.add(END_OF_PAGES);
+        }
+    }
+
+    private interface PageWriter {
+        void write(TicketPage page) throws IOException;
+
+        void finish(long rows) throws IOException;
+    }
+
+    private static final class CsvWriter implements PageWriter {
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder(128);
+
+        private CsvWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(TicketPage page) throws IOException {
+            for (int row = 0; row < page.size(); row++) {
+                long outTime = page.getOutTime(row);
+                line.setLength(0);
+                line.append(page.getId(row)).append(',')
+                        .append(page.getParkingNumber(row)).append(',')
+                        .append(page.getParkingType(row)).append(',')
+                        .append(page.getVehicleRegNumber(row)).append(',')
+                        .append(page.getPriceCents(row) / 100.0).append(',')
+                        .append(new Timestamp(page.getInTime(row))).append(',');
+                if (outTime != Ticket.NO_TIME) {
+                    line.append(new Timestamp(outTime));
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+
+        @Override
+        public void finish(long rows) throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class BinaryWriter implements PageWriter {
+        private final DataOutputStream out;
+
+        private BinaryWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE));
+            this.out.writeInt(BINARY_MAGIC);
+            this.out.writeInt(BINARY_VERSION);
+        }
+
+        @Override
+        public void write(TicketPage page) throws IOException {
+            int size = page.size();
+            out.writeInt(size);
+            for (int row = 0; row < size; row++) {
+                out.writeInt(page.getId(row));
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeInt(page.getParkingNumber(row));
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeByte(page.getParkingType(row).ordinal());
+            }
+            for (int row = 0; row < size; row++) {
+                byte[] vehicleRegNumber = page.getVehicleRegNumber(row).getBytes(StandardCharsets.UTF_8);
+                if (vehicleRegNumber.length > 255) {
+                    throw new IOException("Registration number too long to export: " + page.getVehicleRegNumber(row));
+                }
+                out.writeByte(vehicleRegNumber.length);
+                out.write(vehicleRegNumber);
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeLong(page.getPriceCents(row));
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeLong(page.getInTime(row));
+            }
+            for (int row = 0; row < size; row++) {
+                out.writeLong(page.getOutTime(row));
+            }
+        }
+
+        @Override
+        public void finish(long rows) throws IOException {
+            out.writeInt(0);
+            out.writeLong(rows);
+            out.flush();
+        }
+    }
+
+    /**
+     * Exports the tickets of the production database.
+     *
+     * @param args the first day and the day after the last one, as {@code yyyy-MM-dd}, the format
+     * ({@code csv} or {@code binary}) and the path of the file.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.out.println("Usage: TicketExporter <from yyyy-MM-dd> <to yyyy-MM-dd, excluded> <csv|binary> <file>");
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long from = LocalDate.parse(args[0]).atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = LocalDate.parse(args[1]).atStartOfDay(zone).toInstant().toEpochMilli();
+        Format format = Format.valueOf(args[2].toUpperCase(Locale.ROOT));
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[3]))) {
+            long exported = new TicketExporter(new TicketDAO()).export(from, to, format, out);
+            System.out.println(exported + " tickets written to " + args[3]);
+        } finally {
+            DataBaseConfig.closePools();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.store;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+
+/**
+ * Records a whole vehicle entry in one operation, rather than through the separate steps of a
+ * {@link SpotStore} and a {@link TicketStore}.
+ *
+ * <p>Implemented by {@link com.parkit.parkingsystem.dao.ParkingEntryDAO} with a stored procedure, so that an
+ * entry costs one round trip to the database.</p>
+ */
+public interface EntryStore {
+
+    /**
+     * Atomically rejects a vehicle that is already parked, or takes the lowest free spot of the type and
+     * saves a ticket with this in-time. The entry is committed when this returns, so it must not be called
+     * within a {@link com.parkit.parkingsystem.config.UnitOfWork}.
+     *
+     * @return the claimed spot and in-time, or why the vehicle could not enter.
+     */
+    EntryResult enterVehicle(ParkingType parkingType, String vehicleRegNumber, long inTimeMillis);
+}
@@ -0,0 +1,492 @@
+package com.parkit.parkingsystem.store;
+
+import com.parkit.parkingsystem.allocation.AllocationStrategy;
+import com.parkit.parkingsystem.allocation.SpotAllocator;
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.FormatUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tickets and spots kept in the memory of the process, for sites running without MySQL and for exercising
+ * the service logic at memory speed in tests and benchmarks.
+ *
+ * <p>Spots live in a {@link SpotAvailabilityIndex}, bitsets keyed by spot number. Tickets are numbered from 1
+ * and their fields live in parallel primitive arrays indexed by ticket id; each ticket links to the previous
+ * ticket of its vehicle, and an open-addressing table maps a registration number to the latest one. Counting
+ * the recent visits of a vehicle walks back that chain.</p>
+ *
+ * <p>The store can be written to a snapshot file with {@link #snapshot(Path)}, periodically with
+ * {@link #snapshotEvery(Path, long)}, and read back with {@link #load(Path)}. Changes made after the last
+ * snapshot are lost if the process stops without {@link #close()}.</p>
+ */
+public class InMemoryParkingStore implements TicketStore, SpotStore, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingStore");
+
+    private static final int SNAPSHOT_MAGIC = 0x504B5331;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int NO_SPOT = -1;
+    private static final int INITIAL_TICKETS = 1024;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private final int maxSpotNumber;
+    private final SpotAvailabilityIndex spots;
+
+    // ticket fields, indexed by ticket id; slot 0 is unused, and a parking number of 0 marks a rolled back ticket
+    private int ticketCount;
+    private int[] parkingNumbers = new int[INITIAL_TICKETS];
+    private String[] vehicleRegNumbers = new String[INITIAL_TICKETS];
+    private long[] inTimes = new long[INITIAL_TICKETS];
+    private long[] outTimes = new long[INITIAL_TICKETS];
+    private long[] priceCents = new long[INITIAL_TICKETS];
+    private int[] previousTickets = new int[INITIAL_TICKETS];
+    private final LatestTicketTable latestTickets = new LatestTicketTable();
+
+    private volatile SpotAllocator allocator;
+
+    private ScheduledExecutorService snapshotScheduler;
+    private Path snapshotPath;
+
+    /**
+     * Creates an empty store; spots numbered up to {@code maxSpotNumber} are then added with
+     * {@link #addSpot(int, ParkingType)}.
+     */
+    public InMemoryParkingStore(int maxSpotNumber) {
+        this.maxSpotNumber = maxSpotNumber;
+        this.spots = new SpotAvailabilityIndex(maxSpotNumber);
+    }
+
+    /**
+     * Creates an empty store with free spots numbered from 1, type after type, as in {@code Data.sql}.
+     */
+    public static InMemoryParkingStore withSpots(Map<ParkingType, Integer> spotsByType) {
+        int total = 0;
+        for (ParkingType parkingType : PARKING_TYPES) {
+            total += spotsByType.getOrDefault(parkingType, 0);
+        }
+        InMemoryParkingStore store = new InMemoryParkingStore(total);
+        int number = 0;
+        for (ParkingType parkingType : PARKING_TYPES) {
+            for (int i = 0; i < spotsByType.getOrDefault(parkingType, 0); i++) {
+                store.addSpot(++number, parkingType);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds a free spot.
+     */
+    public void addSpot(int number, ParkingType parkingType) {
+        spots.addSpot(number, parkingType, true);
+    }
+
+    /**
+     * Refuses an open ticket for a vehicle that already has one, checked under the same lock as the save so
+     * that two gates entering the same vehicle can't both succeed.
+     */
+    @Override
+    public synchronized boolean saveTicket(Ticket ticket) {
+        if (!ticket.hasOutTime() && isVehicleAlreadyInParking(ticket.getVehicleRegNumber())) {
+            return false;
+        }
+        int id = addTicket(ticket.getParkingSpot().getId(), ticket.getVehicleRegNumber(), ticket.getInTimeMillis(),
+                ticket.getOutTimeMillis(), FormatUtil.toCents(ticket.getPrice()));
+        ticket.setId(id);
+        UnitOfWork.onRollback(() -> removeTicket(id));
+        return true;
+    }
+
+    @Override
+    public synchronized Ticket getTicket(String vehicleRegNumber) {
+        int id = latestTickets.get(vehicleRegNumber);
+        return id == 0 ? null : toTicket(id);
+    }
+
+    @Override
+    public synchronized boolean updateTicket(Ticket ticket) {
+        int id = ticket.getId();
+        if (id <= 0 || id > ticketCount || parkingNumbers[id] == 0) {
+            return false;
+        }
+        long previousOutTime = outTimes[id];
+        long previousPriceCents = priceCents[id];
+        outTimes[id] = ticket.getOutTimeMillis();
+        priceCents[id] = FormatUtil.toCents(ticket.getPrice());
+        UnitOfWork.onRollback(() -> {
+            synchronized (this) {
+                outTimes[id] = previousOutTime;
+                priceCents[id] = previousPriceCents;
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isVehicleAlreadyInParking(String vehicleRegNumber) {
+        int id = latestTickets.get(vehicleRegNumber);
+        return id != 0 && outTimes[id] == Ticket.NO_TIME;
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        long firstDay = VisitCounterCache.firstDayOfWindow(VisitCounterCache.epochDay(System.currentTimeMillis()));
+        long windowStart = LocalDate.ofEpochDay(firstDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        synchronized (this) {
+            int count = 0;
+            // tickets of a vehicle are chained from the latest, so in decreasing in-time
+            for (int id = latestTickets.get(vehicleRegNumber); id != 0 && inTimes[id] >= windowStart; id = previousTickets[id]) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public int getCachedNbTicket(String vehicleRegNumber) {
+        return getNbTicket(vehicleRegNumber);
+    }
+
+    @Override
+    public synchronized Ticket getOpenTicket(String vehicleRegNumber) {
+        int id = latestTickets.get(vehicleRegNumber);
+        return id != 0 && outTimes[id] == Ticket.NO_TIME ? toTicket(id) : null;
+    }
+
+    @Override
+    public void trackJournaledEntry(Ticket ticket) {
+        saveTicket(ticket);
+    }
+
+    @Override
+    public void trackJournaledExit(Ticket ticket) {
+        updateTicket(ticket);
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return spots.findFirstAvailable(parkingType);
+    }
+
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType, int entrance) {
+        int parkingNumber = reserveNextAvailableSlot(parkingType, entrance);
+        if (parkingNumber > 0) {
+            UnitOfWork.onRollback(() -> spots.setAvailable(parkingNumber, true));
+        }
+        return parkingNumber;
+    }
+
+    @Override
+    public int reserveNextAvailableSlot(ParkingType parkingType, int entrance) {
+        SpotAllocator spotAllocator = allocator;
+        return spotAllocator == null ? spots.claimFirstAvailable(parkingType) : spotAllocator.claim(parkingType, entrance);
+    }
+
+    /**
+     * Chooses spots with the strategy rather than taking the lowest free one, or with none if null.
+     */
+    public void setAllocationStrategy(AllocationStrategy allocationStrategy) {
+        if (allocationStrategy == null) {
+            spots.setFreedSpotListener(null);
+            allocator = null;
+        } else {
+            allocator = new SpotAllocator(spots, allocationStrategy);
+        }
+    }
+
+    @Override
+    public void releaseReservedSlot(int parkingNumber) {
+        spots.setAvailable(parkingNumber, true);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        int parkingNumber = parkingSpot.getId();
+        boolean wasAvailable = spots.isAvailable(parkingNumber);
+        if (!spots.setAvailable(parkingNumber, parkingSpot.isAvailable())) {
+            return false;
+        }
+        UnitOfWork.onRollback(() -> spots.setAvailable(parkingNumber, wasAvailable));
+        return true;
+    }
+
+    /**
+     * @return the number of free spots of the given type.
+     */
+    public int countAvailable(ParkingType parkingType) {
+        return spots.countAvailable(parkingType);
+    }
+
+    public synchronized int getTicketCount() {
+        return ticketCount;
+    }
+
+    /**
+     * Writes every spot and ticket to the file, replacing it atomically once the new content is on disk.
+     */
+    public void snapshot(Path path) throws IOException {
+        int count;
+        int[] numbers;
+        String[] plates;
+        long[] ins;
+        long[] outs;
+        long[] prices;
+        synchronized (this) {
+            count = ticketCount;
+            numbers = Arrays.copyOf(parkingNumbers, count + 1);
+            plates = Arrays.copyOf(vehicleRegNumbers, count + 1);
+            ins = Arrays.copyOf(inTimes, count + 1);
+            outs = Arrays.copyOf(outTimes, count + 1);
+            prices = Arrays.copyOf(priceCents, count + 1);
+        }
+        Path temporaryFile = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(maxSpotNumber);
+            for (int number = 1; number <= maxSpotNumber; number++) {
+                ParkingType parkingType = spots.getParkingType(number);
+                out.writeByte(parkingType == null ? NO_SPOT : parkingType.ordinal());
+            }
+            out.writeInt(count);
+            for (int id = 1; id <= count; id++) {
+                out.writeInt(numbers[id]);
+                out.writeUTF(plates[id]);
+                out.writeLong(ins[id]);
+                out.writeLong(outs[id]);
+                out.writeLong(prices[id]);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a store written by {@link #snapshot(Path)}. A spot is taken if an open ticket holds it.
+     *
+     * @throws IOException if the file can't be read or is not a snapshot.
+     */
+    public static InMemoryParkingStore load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a parking store snapshot: " + path);
+            }
+            int maxSpotNumber = in.readInt();
+            if (maxSpotNumber < 0) {
+                throw new IOException("Invalid spot count in " + path + ": " + maxSpotNumber);
+            }
+            InMemoryParkingStore store = new InMemoryParkingStore(maxSpotNumber);
+            for (int number = 1; number <= maxSpotNumber; number++) {
+                int parkingType = in.readByte();
+                if (parkingType >= PARKING_TYPES.length) {
+                    throw new IOException("Invalid type of spot " + number + " in " + path);
+                }
+                if (parkingType != NO_SPOT) {
+                    store.addSpot(number, PARKING_TYPES[parkingType]);
+                }
+            }
+            int count = in.readInt();
+            synchronized (store) {
+                for (int i = 0; i < count; i++) {
+                    int parkingNumber = in.readInt();
+                    int id = store.addTicket(parkingNumber, in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+                    if (parkingNumber == 0) {
+                        store.removeTicket(id);
+                    }
+                }
+                for (int id = 1; id <= count; id++) {
+                    if (store.parkingNumbers[id] != 0 && store.outTimes[id] == Ticket.NO_TIME) {
+                        store.spots.setAvailable(store.parkingNumbers[id], false);
+                    }
+                }
+            }
+            logger.info("Loaded {} tickets and {} spots from {}", count, maxSpotNumber, path);
+            return store;
+        }
+    }
+
+    /**
+     * Writes a snapshot to the file at a fixed interval, from a daemon thread, and a last one on {@link #close()}.
+     */
+    public synchronized void snapshotEvery(Path path, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalSeconds);
+        }
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots already scheduled to " + snapshotPath);
+        }
+        snapshotPath = path;
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(this::writeScheduledSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void writeScheduledSnapshot() {
+        try {
+            snapshot(snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to write snapshot {}", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Stops the scheduled snapshots, after writing a last one.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = snapshotScheduler;
+            snapshotScheduler = null;
+        }
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeScheduledSnapshot();
+    }
+
+    private int addTicket(int parkingNumber, String vehicleRegNumber, long inTime, long outTime, long cents) {
+        int id = ticketCount + 1;
+        if (id == parkingNumbers.length) {
+            int capacity = parkingNumbers.length * 2;
+            parkingNumbers = Arrays.copyOf(parkingNumbers, capacity);
+            vehicleRegNumbers = Arrays.copyOf(vehicleRegNumbers, capacity);
+            inTimes = Arrays.copyOf(inTimes, capacity);
+            outTimes = Arrays.copyOf(outTimes, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            previousTickets = Arrays.copyOf(previousTickets, capacity);
+        }
+        parkingNumbers[id] = parkingNumber;
+        vehicleRegNumbers[id] = vehicleRegNumber;
+        inTimes[id] = inTime;
+        outTimes[id] = outTime;
+        priceCents[id] = cents;
+        previousTickets[id] = latestTickets.get(vehicleRegNumber);
+        latestTickets.put(vehicleRegNumber, id);
+        ticketCount = id;
+        return id;
+    }
+
+    /**
+     * Unlinks a ticket that was rolled back from the chain of its vehicle; its id is not reused.
+     */
+    private synchronized void removeTicket(int id) {
+        parkingNumbers[id] = 0;
+        int latest = latestTickets.get(vehicleRegNumbers[id]);
+        if (latest == id) {
+            latestTickets.put(vehicleRegNumbers[id], previousTickets[id]);
+            return;
+        }
+        for (int newer = latest; newer != 0; newer = previousTickets[newer]) {
+            if (previousTickets[newer] == id) {
+                previousTickets[newer] = previousTickets[id];
+                return;
+            }
+        }
+    }
+
+    private Ticket toTicket(int id) {
+        int parkingNumber = parkingNumbers[id];
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, spots.getParkingType(parkingNumber), false));
+        ticket.setVehicleRegNumber(vehicleRegNumbers[id]);
+        ticket.setPrice(priceCents[id] / 100.0);
+        ticket.setInTimeMillis(inTimes[id]);
+        ticket.setOutTimeMillis(outTimes[id]);
+        return ticket;
+    }
+
+    /**
+     * Registration number to latest ticket id, with open addressing and linear probing. Ids are never 0, so
+     * 0 means "no ticket"; vehicles are never removed, a vehicle with no ticket left maps to 0.
+     */
+    private static final class LatestTicketTable {
+        private String[] keys = new String[256];
+        private int[] values = new int[256];
+        private int size;
+
+        private int get(String vehicleRegNumber) {
+            int mask = keys.length - 1;
+            for (int i = hash(vehicleRegNumber) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].equals(vehicleRegNumber)) {
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+
+        private void put(String vehicleRegNumber, int id) {
+            int mask = keys.length - 1;
+            int i = hash(vehicleRegNumber) & mask;
+            for (; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].equals(vehicleRegNumber)) {
+                    values[i] = id;
+                    return;
+                }
+            }
+            keys[i] = vehicleRegNumber;
+            values[i] = id;
+            if (++size > keys.length / 2) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(String key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.parkit.parkingsystem.store;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Where the parking spots and their availability are kept.
+ *
+ * <p>Implemented by {@link com.parkit.parkingsystem.dao.ParkingSpotDAO} on the {@code parking} table and by
+ * {@link InMemoryParkingStore} in the memory of the process.</p>
+ */
+public interface SpotStore {
+
+    /**
+     * The entrance of vehicles for which none is given.
+     */
+    int DEFAULT_ENTRANCE = 0;
+
+    /**
+     * @return the lowest free spot number of the given type, 0 if no spot is free, -1 on error.
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Takes a free spot of the given type for a vehicle at the default entrance.
+     *
+     * @see #claimNextAvailableSlot(ParkingType, int)
+     */
+    default int claimNextAvailableSlot(ParkingType parkingType) {
+        return claimNextAvailableSlot(parkingType, DEFAULT_ENTRANCE);
+    }
+
+    /**
+     * Takes a free spot of the given type for a vehicle coming in at an entrance: the one chosen by the
+     * {@link com.parkit.parkingsystem.allocation.AllocationStrategy allocation strategy} of the store, or the
+     * lowest free spot without one. Two concurrent callers never get the same spot, and the spot is given back
+     * if the current {@link com.parkit.parkingsystem.config.UnitOfWork} rolls back.
+     *
+     * @return the spot number, 0 if the lot is full for this type, -1 on error.
+     */
+    int claimNextAvailableSlot(ParkingType parkingType, int entrance);
+
+    /**
+     * Takes a free spot of the given type for a vehicle at the default entrance.
+     *
+     * @see #reserveNextAvailableSlot(ParkingType, int)
+     */
+    default int reserveNextAvailableSlot(ParkingType parkingType) {
+        return reserveNextAvailableSlot(parkingType, DEFAULT_ENTRANCE);
+    }
+
+    /**
+     * Takes a free spot of the given type, chosen as by {@link #claimNextAvailableSlot(ParkingType, int)}, for
+     * an entry written to the {@link com.parkit.parkingsystem.journal.GateJournal gate journal} rather than to
+     * this store.
+     *
+     * @return the spot number, 0 if the lot is full for this type, -1 on error.
+     */
+    int reserveNextAvailableSlot(ParkingType parkingType, int entrance);
+
+    /**
+     * Frees a spot taken with {@link #reserveNextAvailableSlot(ParkingType, int)}.
+     */
+    void releaseReservedSlot(int parkingNumber);
+
+    /**
+     * Records the availability of a spot.
+     *
+     * @return true if the spot exists and was updated.
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+}
@@ -0,0 +1,68 @@
+package com.parkit.parkingsystem.store;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Where the tickets of the parking are kept.
+ *
+ * <p>Implemented by {@link com.parkit.parkingsystem.dao.TicketDAO} on the {@code ticket} table and by
+ * {@link InMemoryParkingStore} in the memory of the process. Writes made within a
+ * {@link com.parkit.parkingsystem.config.UnitOfWork} are undone if it rolls back.</p>
+ */
+public interface TicketStore {
+
+    /**
+     * Saves a new ticket and sets its id.
+     *
+     * @return true if the ticket was saved, or queued to be.
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * @return the open ticket of the vehicle, or its latest ticket if it is not parked, or null if it has none.
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * Records the price and out-time of a ticket.
+     *
+     * @return true if the ticket was updated.
+     */
+    boolean updateTicket(Ticket ticket);
+
+    /**
+     * @return true if the vehicle has a ticket without out-time.
+     */
+    boolean isVehicleAlreadyInParking(String vehicleRegNumber);
+
+    /**
+     * @return the number of times the vehicle entered the parking within the last
+     * {@value com.parkit.parkingsystem.cache.VisitCounterCache#WINDOW_DAYS} days.
+     */
+    int getNbTicket(String vehicleRegNumber);
+
+    /**
+     * Same as {@link #getNbTicket(String)}, from what the store holds in memory only.
+     *
+     * @return the number of visits, or -1 if the store would have to read the database for it.
+     */
+    int getCachedNbTicket(String vehicleRegNumber);
+
+    /**
+     * Returns the open ticket of the vehicle as known to the process, including tickets saved in the
+     * {@link com.parkit.parkingsystem.journal.GateJournal gate journal} only.
+     *
+     * @return the open ticket, or null if the vehicle is not parked.
+     */
+    Ticket getOpenTicket(String vehicleRegNumber);
+
+    /**
+     * Takes into account a ticket saved in the gate journal rather than by this store.
+     */
+    void trackJournaledEntry(Ticket ticket);
+
+    /**
+     * Takes into account a ticket closed in the gate journal rather than by this store.
+     */
+    void trackJournaledExit(Ticket ticket);
+}
@@ -0,0 +1,361 @@
+package com.parkit.parkingsystem.tariff;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.util.FormatUtil;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled, immutable tariff: how much a stay costs for each {@link ParkingType}.
+ *
+ * <p>Each type has a base hourly rate, optional time-of-day bands with their own hourly rate (in local
+ * wall-clock time, a band may span midnight) and an optional cap per calendar day. Stays shorter than the
+ * free parking time cost nothing, and frequent users get a reduction on the total.</p>
+ *
+ * <p>Bands are compiled into a table of the cumulated cost from midnight, so the cost of any part of a day
+ * is a difference of two lookups and a stay of any length is priced with a constant number of lookups: its
+ * first and last days, plus the cost of a full day times the number of days in between. A stay across a
+ * daylight saving change is instead walked day by day in instant time, each band boundary converted with
+ * the zone rules, so that only the time actually spent is billed. A type without bands nor cap is priced
+ * exactly as the former {@code Fare} constants were, with the same rounding.</p>
+ *
+ * <p>Tariffs are defined as properties:</p>
+ * <pre>
+ * free.parking.hours=0.5
+ * frequent.user.reduction.rate=0.95
+ * CAR.rate.per.hour=1.5
+ * CAR.daily.cap=20
+ * CAR.band.night=20:00-08:00 0.75
+ * BIKE.rate.per.hour=1.0
+ * </pre>
+ */
+public final class TariffTable {
+
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final Pattern BAND = Pattern.compile("(\\d{1,2}):(\\d{2})-(\\d{1,2}):(\\d{2})\\s+(\\S+)");
+
+    private final double freeParkingHours;
+    private final double frequentUserReductionRate;
+    private final TypeTariff[] typeTariffs;
+    private final ZoneRules zoneRules;
+
+    private TariffTable(double freeParkingHours, double frequentUserReductionRate, TypeTariff[] typeTariffs, ZoneRules zoneRules) {
+        this.freeParkingHours = freeParkingHours;
+        this.frequentUserReductionRate = frequentUserReductionRate;
+        this.typeTariffs = typeTariffs;
+        this.zoneRules = zoneRules;
+    }
+
+    /**
+     * @return the tariff of the {@link Fare} constants: a flat hourly rate per type.
+     */
+    public static TariffTable fromFareConstants() {
+        Properties properties = new Properties();
+        properties.setProperty("free.parking.hours", Double.toString(Fare.FREE_PARKING_TIME));
+        properties.setProperty("frequent.user.reduction.rate", Double.toString(Fare.FREQUENT_USER_REDUCTION_RATE));
+        properties.setProperty(ParkingType.CAR + ".rate.per.hour", Double.toString(Fare.CAR_RATE_PER_HOUR));
+        properties.setProperty(ParkingType.BIKE + ".rate.per.hour", Double.toString(Fare.BIKE_RATE_PER_HOUR));
+        return compile(properties, ZoneId.systemDefault());
+    }
+
+    /**
+     * Compiles a tariff definition, with bands in the given time zone.
+     *
+     * @throws IllegalArgumentException if the definition is incomplete or invalid.
+     */
+    public static TariffTable compile(Properties properties, ZoneId zoneId) {
+        double freeParkingHours = parseAmount(properties, "free.parking.hours");
+        double reductionRate = parseAmount(properties, "frequent.user.reduction.rate");
+        if (reductionRate > 1) {
+            throw new IllegalArgumentException("frequent.user.reduction.rate must not be above 1");
+        }
+        ParkingType[] parkingTypes = ParkingType.values();
+        TypeTariff[] typeTariffs = new TypeTariff[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            typeTariffs[parkingType.ordinal()] = compileType(properties, parkingType.name());
+        }
+        for (String key : properties.stringPropertyNames()) {
+            String prefix = key.substring(0, Math.max(0, key.indexOf('.')));
+            if (!key.equals("free.parking.hours") && !key.equals("frequent.user.reduction.rate") && !isParkingType(prefix)) {
+                throw new IllegalArgumentException("Unknown tariff property " + key);
+            }
+        }
+        return new TariffTable(freeParkingHours, reductionRate, typeTariffs, zoneId.getRules());
+    }
+
+    private static boolean isParkingType(String name) {
+        for (ParkingType parkingType : ParkingType.values()) {
+            if (parkingType.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TypeTariff compileType(Properties properties, String type) {
+        double baseRate = parseAmount(properties, type + ".rate.per.hour");
+        double dailyCap = properties.getProperty(type + ".daily.cap") == null ? Double.POSITIVE_INFINITY
+                : parseAmount(properties, type + ".daily.cap");
+
+        List<String> bandKeys = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(type + ".band.")) {
+                bandKeys.add(key);
+            } else if (key.startsWith(type + ".") && !key.equals(type + ".rate.per.hour") && !key.equals(type + ".daily.cap")) {
+                throw new IllegalArgumentException("Unknown tariff property " + key);
+            }
+        }
+        if (bandKeys.isEmpty() && dailyCap == Double.POSITIVE_INFINITY) {
+            return new TypeTariff(baseRate);
+        }
+
+        // rate of each minute of the day, later bands (by name) overriding earlier ones
+        Collections.sort(bandKeys);
+        double[] minuteRates = new double[MINUTES_PER_DAY];
+        Arrays.fill(minuteRates, baseRate);
+        for (String key : bandKeys) {
+            Matcher matcher = BAND.matcher(properties.getProperty(key).trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid band " + key + ", expected HH:mm-HH:mm <rate per hour>");
+            }
+            int from = toMinuteOfDay(key, matcher.group(1), matcher.group(2));
+            int to = toMinuteOfDay(key, matcher.group(3), matcher.group(4));
+            double rate = parseAmount(key, matcher.group(5));
+            // a band from a time to the same time covers the whole day
+            int minute = from;
+            do {
+                minuteRates[minute] = rate;
+                minute = (minute + 1) % MINUTES_PER_DAY;
+            } while (minute != to);
+        }
+
+        // compress into segments of equal rate, with the cost from midnight to the start of each segment
+        int segments = 1;
+        for (int minute = 1; minute < MINUTES_PER_DAY; minute++) {
+            if (minuteRates[minute] != minuteRates[minute - 1]) {
+                segments++;
+            }
+        }
+        long[] segmentStarts = new long[segments];
+        double[] segmentRates = new double[segments];
+        double[] costsAtStart = new double[segments + 1];
+        int segment = 0;
+        segmentRates[0] = minuteRates[0];
+        for (int minute = 1; minute < MINUTES_PER_DAY; minute++) {
+            if (minuteRates[minute] != minuteRates[minute - 1]) {
+                segment++;
+                segmentStarts[segment] = minute * 60_000L;
+                segmentRates[segment] = minuteRates[minute];
+                costsAtStart[segment] = costsAtStart[segment - 1]
+                        + (segmentStarts[segment] - segmentStarts[segment - 1]) / (double) MILLIS_PER_HOUR * segmentRates[segment - 1];
+            }
+        }
+        costsAtStart[segments] = costsAtStart[segments - 1]
+                + (MILLIS_PER_DAY - segmentStarts[segments - 1]) / (double) MILLIS_PER_HOUR * segmentRates[segments - 1];
+        return new TypeTariff(baseRate, dailyCap, segmentStarts, segmentRates, costsAtStart);
+    }
+
+    private static int toMinuteOfDay(String key, String hours, String minutes) {
+        int hour = Integer.parseInt(hours);
+        int minute = Integer.parseInt(minutes);
+        if (hour > 24 || minute > 59 || (hour == 24 && minute > 0)) {
+            throw new IllegalArgumentException("Invalid time " + hours + ":" + minutes + " in " + key);
+        }
+        return (hour * 60 + minute) % MINUTES_PER_DAY;
+    }
+
+    private static double parseAmount(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing tariff property " + key);
+        }
+        return parseAmount(key, value.trim());
+    }
+
+    private static double parseAmount(String key, String value) {
+        double amount;
+        try {
+            amount = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount " + value + " for " + key, e);
+        }
+        if (!(amount >= 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Invalid amount " + value + " for " + key);
+        }
+        return amount;
+    }
+
+    /**
+     * Prices a stay.
+     *
+     * @return the fare in cents, rounded half up.
+     */
+    public long priceInCents(long inTimeMillis, long outTimeMillis, ParkingType parkingType, boolean discount) {
+        double duration = (outTimeMillis - inTimeMillis) / (60.0 * 60.0 * 1000.0);
+        if (duration < freeParkingHours) {
+            return 0;
+        }
+        TypeTariff typeTariff = typeTariffs[parkingType.ordinal()];
+        double fare;
+        if (typeTariff.segmentStarts == null) {
+            fare = duration * typeTariff.baseRate;
+        } else {
+            fare = cost(typeTariff, inTimeMillis, outTimeMillis);
+        }
+        if (discount) {
+            return FormatUtil.toCents(fare * frequentUserReductionRate);
+        } else {
+            return FormatUtil.toCents(fare);
+        }
+    }
+
+    public double getFreeParkingHours() {
+        return freeParkingHours;
+    }
+
+    public double getFrequentUserReductionRate() {
+        return frequentUserReductionRate;
+    }
+
+    /**
+     * @return true if the type is priced by a flat hourly rate, without bands nor cap.
+     */
+    public boolean isFlat(ParkingType parkingType) {
+        return typeTariffs[parkingType.ordinal()].segmentStarts == null;
+    }
+
+    /**
+     * @return the cost of a stay, walked in instant time when the UTC offset changes during it.
+     */
+    private double cost(TypeTariff typeTariff, long inTimeMillis, long outTimeMillis) {
+        if (!hasTransitionBetween(inTimeMillis, outTimeMillis)) {
+            // the offset is the same at both ends, local durations are real durations
+            return typeTariff.cost(localMillis(inTimeMillis), localMillis(outTimeMillis));
+        }
+        long inDay = Math.floorDiv(localMillis(inTimeMillis), MILLIS_PER_DAY);
+        long outDay = Math.floorDiv(localMillis(outTimeMillis), MILLIS_PER_DAY);
+        double fare = 0;
+        for (long day = inDay; day <= outDay; day++) {
+            long from = Math.max(inTimeMillis, toEpochMillis(day * MILLIS_PER_DAY));
+            long to = Math.min(outTimeMillis, toEpochMillis((day + 1) * MILLIS_PER_DAY));
+            fare += Math.min(costBetween(typeTariff, day, from, to), typeTariff.dailyCap);
+        }
+        return fare;
+    }
+
+    /**
+     * @return the cost of the instants between {@code from} and {@code to} of a local day, without cap.
+     */
+    private double costBetween(TypeTariff typeTariff, long day, long from, long to) {
+        long[] segmentStarts = typeTariff.segmentStarts;
+        double cost = 0;
+        long segmentStart = toEpochMillis(day * MILLIS_PER_DAY);
+        for (int segment = 0; segment < segmentStarts.length; segment++) {
+            long nextStart = segment + 1 < segmentStarts.length ? segmentStarts[segment + 1] : MILLIS_PER_DAY;
+            long segmentEnd = toEpochMillis(day * MILLIS_PER_DAY + nextStart);
+            long overlap = Math.min(to, segmentEnd) - Math.max(from, segmentStart);
+            if (overlap > 0) {
+                cost += overlap / (double) MILLIS_PER_HOUR * typeTariff.segmentRates[segment];
+            }
+            segmentStart = segmentEnd;
+        }
+        return cost;
+    }
+
+    private boolean hasTransitionBetween(long fromMillis, long toMillis) {
+        if (zoneRules.isFixedOffset()) {
+            return false;
+        }
+        ZoneOffsetTransition transition = zoneRules.nextTransition(Instant.ofEpochMilli(fromMillis));
+        return transition != null && transition.toEpochSecond() * 1000 <= toMillis;
+    }
+
+    private long localMillis(long epochMillis) {
+        return epochMillis + zoneRules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * @return the instant of a local time. A local time skipped by a gap is the instant the clocks moved
+     * forward, a local time repeated by an overlap is its first occurrence.
+     */
+    private long toEpochMillis(long localMillis) {
+        LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000),
+                (int) Math.floorMod(localMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+        ZoneOffsetTransition transition = zoneRules.getTransition(localDateTime);
+        if (transition != null && transition.isGap()) {
+            return transition.toEpochSecond() * 1000;
+        }
+        return localMillis - zoneRules.getOffset(localDateTime).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * Compiled tariff of one parking type. Without segments, the type has a flat rate.
+     */
+    private static final class TypeTariff {
+        private final double baseRate;
+        private final double dailyCap;
+        private final long[] segmentStarts;
+        private final double[] segmentRates;
+        private final double[] costsAtStart;
+        private final double fullDayCost;
+
+        private TypeTariff(double baseRate) {
+            this(baseRate, Double.POSITIVE_INFINITY, null, null, null);
+        }
+
+        private TypeTariff(double baseRate, double dailyCap, long[] segmentStarts, double[] segmentRates, double[] costsAtStart) {
+            this.baseRate = baseRate;
+            this.dailyCap = dailyCap;
+            this.segmentStarts = segmentStarts;
+            this.segmentRates = segmentRates;
+            this.costsAtStart = costsAtStart;
+            this.fullDayCost = costsAtStart == null ? 0 : Math.min(costsAtStart[costsAtStart.length - 1], dailyCap);
+        }
+
+        /**
+         * @return the cost of a stay between two local times, with the daily cap applied per calendar day.
+         */
+        private double cost(long localIn, long localOut) {
+            long inDay = Math.floorDiv(localIn, MILLIS_PER_DAY);
+            long outDay = Math.floorDiv(localOut, MILLIS_PER_DAY);
+            long inTimeOfDay = Math.floorMod(localIn, MILLIS_PER_DAY);
+            long outTimeOfDay = Math.floorMod(localOut, MILLIS_PER_DAY);
+            if (inDay == outDay) {
+                return Math.min(costUntil(outTimeOfDay) - costUntil(inTimeOfDay), dailyCap);
+            }
+            double firstDay = Math.min(costUntil(MILLIS_PER_DAY) - costUntil(inTimeOfDay), dailyCap);
+            double lastDay = Math.min(costUntil(outTimeOfDay), dailyCap);
+            return firstDay + (outDay - inDay - 1) * fullDayCost + lastDay;
+        }
+
+        /**
+         * @return the cost from midnight to the time of day.
+         */
+        private double costUntil(long timeOfDay) {
+            if (timeOfDay >= MILLIS_PER_DAY) {
+                return costsAtStart[costsAtStart.length - 1];
+            }
+            int segment = Arrays.binarySearch(segmentStarts, timeOfDay);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            return costsAtStart[segment] + (timeOfDay - segmentStarts[segment]) / (double) MILLIS_PER_HOUR * segmentRates[segment];
+        }
+    }
+}
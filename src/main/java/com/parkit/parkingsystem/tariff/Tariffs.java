@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.tariff;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the tariff in force.
+ *
+ * <p>The tariff is read from the file named by the {@value #TARIFF_FILE_PROPERTY} system property, or built
+ * from the {@code Fare} constants when the property is not set. A new tariff is compiled completely before
+ * it replaces the current one in a single reference swap: fares being calculated meanwhile finish with the
+ * tariff they started with, and nothing waits.</p>
+ */
+public final class Tariffs {
+
+    private static final Logger logger = LogManager.getLogger("Tariffs");
+
+    public static final String TARIFF_FILE_PROPERTY = "parkit.tariff.file";
+
+    private static final AtomicReference<TariffTable> current = new AtomicReference<>(loadDefault());
+
+    private Tariffs() {
+    }
+
+    /**
+     * @return the tariff in force.
+     */
+    public static TariffTable current() {
+        return current.get();
+    }
+
+    /**
+     * Puts a tariff in force.
+     *
+     * @return the tariff it replaces.
+     */
+    public static TariffTable install(TariffTable tariffTable) {
+        if (tariffTable == null) {
+            throw new IllegalArgumentException("Tariff can't be null");
+        }
+        return current.getAndSet(tariffTable);
+    }
+
+    /**
+     * Compiles the tariff file and puts it in force. The current tariff is kept if the file is invalid.
+     *
+     * @throws IllegalArgumentException if the tariff is invalid.
+     */
+    public static TariffTable reload(Path tariffFile) throws IOException {
+        TariffTable tariffTable = load(tariffFile);
+        install(tariffTable);
+        logger.info("Tariff {} in force", tariffFile);
+        return tariffTable;
+    }
+
+    public static TariffTable load(Path tariffFile) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(tariffFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return TariffTable.compile(properties, ZoneId.systemDefault());
+    }
+
+    private static TariffTable loadDefault() {
+        String tariffFile = System.getProperty(TARIFF_FILE_PROPERTY);
+        if (tariffFile != null) {
+            try {
+                return load(Paths.get(tariffFile));
+            } catch (IOException | IllegalArgumentException e) {
+                logger.error("Unable to load tariff {}, using the default fares", tariffFile, e);
+            }
+        }
+        return TariffTable.fromFareConstants();
+    }
+}
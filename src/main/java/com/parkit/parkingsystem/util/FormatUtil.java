@@ -5,11 +5,39 @@ import java.math.RoundingMode;
 
 public class FormatUtil {
 
+    /**
+     * Above this amount, {@code amount * 100 + 0.5} may not be exact in a double.
+     */
+    private static final double MAX_EXACT_AMOUNT = 1e13;
+
     public static double roundToTwoDecimals(double number) {
-    
-        BigDecimal formattedNumber = new BigDecimal(number).setScale(2, RoundingMode.HALF_UP);
+        return toCents(number) / 100.0;
+    }
 
-        return formattedNumber.doubleValue();
+    /**
+     * Rounds an amount to a whole number of cents, half up.
+     *
+     * <p>Gives the same result as {@code new BigDecimal(amount).setScale(2, RoundingMode.HALF_UP)}, i.e. rounds
+     * the exact binary value of the double, without allocating: {@code amount * 100} is compared to the
+     * candidate cents with {@link Math#fma}, whose single rounding keeps the sign of the exact difference.</p>
+     *
+     * @throws NumberFormatException if the amount is NaN or infinite.
+     */
+    public static long toCents(double amount) {
+        if (!(Math.abs(amount) < MAX_EXACT_AMOUNT)) {
+            return new BigDecimal(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        if (amount < 0) {
+            return -toCents(-amount);
+        }
+        // floor of the exact amount * 100: the product in double may have been rounded up or down by one
+        long cents = (long) Math.floor(amount * 100);
+        if (Math.fma(amount, 100, -cents) < 0) {
+            cents--;
+        } else if (Math.fma(amount, 100, -(cents + 1)) >= 0) {
+            cents++;
+        }
+        return Math.fma(amount, 100, -(cents + 0.5)) >= 0 ? cents + 1 : cents;
     }
 
 }
@@ -0,0 +1,5 @@
+-- GET_TICKET, GET_NB_TICKETS and GET_TICKET_IN_TIMES: lookup by vehicle, most recent in-time first
+create index TICKET_VEHICLE_IN_TIME on ticket(VEHICLE_REG_NUMBER, IN_TIME);
+
+-- CHECK_VEHICLE_IN_WITHOUT_OUT: open ticket of a vehicle
+create index TICKET_VEHICLE_OUT_TIME on ticket(VEHICLE_REG_NUMBER, OUT_TIME);
@@ -0,0 +1,2 @@
+-- GET_NEXT_PARKING_SPOT: lowest available spot of a type, answered from the index alone
+create index PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
@@ -0,0 +1,42 @@
+-- ENTER_VEHICLE: a whole vehicle entry in one call and one transaction of its own, see ParkingEntryDAO.
+-- Returns one row: STATUS (0 entered, 1 already in parking, 2 parking full), PARKING_NUMBER, TICKET_ID
+-- and VISITS, the number of tickets of the vehicle since P_VISITS_SINCE including the new one.
+DELIMITER //
+create procedure ENTER_VEHICLE(in P_TYPE varchar(10), in P_VEHICLE_REG_NUMBER varchar(10), in P_IN_TIME datetime, in P_VISITS_SINCE datetime)
+begin
+    declare V_STATUS int default 0;
+    declare V_OPEN_TICKETS int default 0;
+    declare V_PARKING_NUMBER int default null;
+    declare V_TICKET_ID int default null;
+    declare V_VISITS int default 0;
+    declare exit handler for sqlexception
+    begin
+        rollback;
+        resignal;
+    end;
+
+    start transaction;
+    -- locks the open tickets of the vehicle, and the gap where another gate would insert one
+    select count(*) into V_OPEN_TICKETS from ticket
+        where VEHICLE_REG_NUMBER = P_VEHICLE_REG_NUMBER and OUT_TIME is null for update;
+    if V_OPEN_TICKETS > 0 then
+        set V_STATUS = 1;
+    else
+        -- lowest free spot of the type; spots being claimed by other gates are skipped rather than waited for
+        select PARKING_NUMBER into V_PARKING_NUMBER from parking
+            where TYPE = P_TYPE and AVAILABLE = true order by PARKING_NUMBER limit 1 for update skip locked;
+        if V_PARKING_NUMBER is null then
+            set V_STATUS = 2;
+        else
+            update parking set AVAILABLE = false where PARKING_NUMBER = V_PARKING_NUMBER;
+            insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+                values(V_PARKING_NUMBER, P_VEHICLE_REG_NUMBER, 0, P_IN_TIME, null);
+            set V_TICKET_ID = last_insert_id();
+            select count(*) into V_VISITS from ticket
+                where VEHICLE_REG_NUMBER = P_VEHICLE_REG_NUMBER and IN_TIME >= P_VISITS_SINCE;
+        end if;
+    end if;
+    commit;
+    select V_STATUS, V_PARKING_NUMBER, V_TICKET_ID, V_VISITS;
+end //
+DELIMITER ;
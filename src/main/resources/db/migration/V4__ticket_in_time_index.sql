@@ -0,0 +1,2 @@
+-- GET_TICKET_PAGE: keyset pagination by (IN_TIME, ID), as InnoDB appends the primary key to the index
+create index TICKET_IN_TIME on ticket(IN_TIME);
@@ -0,0 +1,9 @@
+-- ParkingRollups: visits, exits and revenue per parking type, by hour and by day, added to by each process
+create table parking_rollup(
+ PERIOD varchar(5) NOT NULL,
+ PERIOD_START DATETIME NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ VISITS bigint NOT NULL,
+ EXITS bigint NOT NULL,
+ REVENUE_CENTS bigint NOT NULL,
+ PRIMARY KEY (PERIOD, PERIOD_START, TYPE));
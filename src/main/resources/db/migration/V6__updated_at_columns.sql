@@ -0,0 +1,5 @@
+-- CacheSnapshot: rows changed since the high-water mark of a snapshot are read back on start, by the database time
+alter table parking add column UPDATED_AT timestamp(3) NOT NULL default current_timestamp(3) on update current_timestamp(3);
+create index PARKING_UPDATED_AT on parking(UPDATED_AT);
+alter table ticket add column UPDATED_AT timestamp(3) NOT NULL default current_timestamp(3) on update current_timestamp(3);
+create index TICKET_UPDATED_AT on ticket(UPDATED_AT);
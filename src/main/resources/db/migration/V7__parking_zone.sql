@@ -0,0 +1,2 @@
+-- SpotAllocator: the zone (level or area, with its own entrance) of each spot, numbered from 0
+alter table parking add column ZONE int NOT NULL default 0;
@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.ActiveTicketIndex;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Calendar;
+
+public class ActiveTicketIndexTest {
+
+    private ActiveTicketIndex index;
+    private Ticket ticket;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        index = new ActiveTicketIndex();
+        ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(Calendar.getInstance());
+    }
+
+    @Test
+    public void openTicketIsFoundByRegistrationNumber() {
+        index.put(ticket);
+
+        assertTrue(index.contains("ABCDEF"));
+        assertEquals(7, index.get("ABCDEF").getId());
+        assertNull(index.get("GHIJKL"));
+    }
+
+    @Test
+    public void returnedTicketCanBeModifiedWithoutChangingTheIndex() {
+        index.put(ticket);
+
+        Ticket exitTicket = index.get("ABCDEF");
+        exitTicket.setOutTime(Calendar.getInstance());
+        exitTicket.getParkingSpot().setAvailable(true);
+
+        assertNull(index.get("ABCDEF").getOutTime());
+        assertFalse(index.get("ABCDEF").getParkingSpot().isAvailable());
+    }
+
+    @Test
+    public void closedTicketIsRemoved() {
+        index.put(ticket);
+
+        index.remove(ticket);
+
+        assertFalse(index.contains("ABCDEF"));
+    }
+
+    @Test
+    public void closingAnOlderTicketKeepsTheCurrentOne() {
+        index.put(ticket);
+        Ticket olderTicket = new Ticket();
+        olderTicket.setId(3);
+        olderTicket.setVehicleRegNumber("ABCDEF");
+
+        index.remove(olderTicket);
+
+        assertEquals(7, index.get("ABCDEF").getId());
+    }
+}
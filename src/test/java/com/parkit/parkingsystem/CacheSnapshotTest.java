@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.CacheSnapshot;
+import com.parkit.parkingsystem.cache.HighWaterMark;
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.CacheSnapshotter;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CacheSnapshotTest {
+
+    private static final long MARK_TIME = 1_700_000_000_000L;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private Path directory;
+    private Path snapshotFile;
+    private Connection connection;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        directory = Files.createTempDirectory("cache");
+        snapshotFile = directory.resolve("snapshot");
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(directory);
+    }
+
+    private static Ticket openTicket(int id, int parkingNumber, String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTimeMillis(inTime);
+        return ticket;
+    }
+
+    /**
+     * Three car spots and a bike spot; ABCDEF is parked on spot 1 and GHIJKL on spot 2.
+     */
+    private static CacheSnapshot snapshot(int maxTicketId) {
+        SpotAvailabilityIndex spots = new SpotAvailabilityIndex(4);
+        spots.addSpot(1, ParkingType.CAR, false);
+        spots.addSpot(2, ParkingType.CAR, false);
+        spots.addSpot(3, ParkingType.CAR, true);
+        spots.addSpot(4, ParkingType.BIKE, true);
+        Map<String, int[]> visits = new LinkedHashMap<>();
+        int[] visitsPerDay = new int[VisitCounterCache.WINDOW_DAYS + 1];
+        visitsPerDay[VisitCounterCache.WINDOW_DAYS] = 2;
+        visits.put("ABCDEF", visitsPerDay);
+        visits.put("GHIJKL", visitsPerDay.clone());
+        long today = VisitCounterCache.epochDay(System.currentTimeMillis());
+        return new CacheSnapshot(new HighWaterMark(maxTicketId, MARK_TIME), spots,
+                Arrays.asList(openTicket(1, 1, "ABCDEF", MARK_TIME - 2 * HOUR), openTicket(2, 2, "GHIJKL", MARK_TIME - HOUR)),
+                today, visits);
+    }
+
+    /**
+     * @return a result set over the rows, answering the getters by column index.
+     */
+    private static ResultSet resultSet(Object[]... rows) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        AtomicInteger row = new AtomicInteger(-1);
+        when(rs.next()).thenAnswer(invocation -> row.incrementAndGet() < rows.length);
+        when(rs.getInt(anyInt())).thenAnswer(invocation -> (Integer) rows[row.get()][(int) invocation.getArgument(0) - 1]);
+        when(rs.getString(anyInt())).thenAnswer(invocation -> (String) rows[row.get()][(int) invocation.getArgument(0) - 1]);
+        when(rs.getBoolean(anyInt())).thenAnswer(invocation -> (Boolean) rows[row.get()][(int) invocation.getArgument(0) - 1]);
+        when(rs.getDouble(anyInt())).thenAnswer(invocation -> (Double) rows[row.get()][(int) invocation.getArgument(0) - 1]);
+        when(rs.getTimestamp(anyInt())).thenAnswer(invocation -> {
+            Long millis = (Long) rows[row.get()][(int) invocation.getArgument(0) - 1];
+            return millis == null ? null : new Timestamp(millis);
+        });
+        return rs;
+    }
+
+    private void whenQueried(String query, ResultSet rs) throws Exception {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(connection.prepareStatement(query)).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+    }
+
+    @Test
+    public void snapshotIsReadBackAsWritten() throws Exception {
+        snapshot(2).write(snapshotFile);
+
+        CacheSnapshot snapshot = CacheSnapshot.read(snapshotFile);
+
+        assertEquals(2, snapshot.getMark().getMaxTicketId());
+        assertEquals(MARK_TIME, snapshot.getMark().getTimeMillis());
+        assertEquals(4, snapshot.getSpots().getMaxSpotNumber());
+        assertEquals(3, snapshot.getSpots().findFirstAvailable(ParkingType.CAR));
+        assertEquals(ParkingType.BIKE, snapshot.getSpots().getParkingType(4));
+        assertEquals(2, snapshot.getOpenTickets().size());
+        Ticket ticket = snapshot.getOpenTickets().get(1);
+        assertEquals(2, ticket.getId());
+        assertEquals(2, ticket.getParkingSpot().getId());
+        assertEquals("GHIJKL", ticket.getVehicleRegNumber());
+        assertEquals(MARK_TIME - HOUR, ticket.getInTimeMillis());
+        assertFalse(ticket.hasOutTime());
+        assertEquals(Arrays.asList("ABCDEF", "GHIJKL"), Arrays.asList(snapshot.getVisits().keySet().toArray()));
+        assertEquals(2, snapshot.getVisits().get("ABCDEF")[VisitCounterCache.WINDOW_DAYS]);
+    }
+
+    @Test
+    public void truncatedFileIsNotASnapshot() throws Exception {
+        snapshot(2).write(snapshotFile);
+        byte[] content = Files.readAllBytes(snapshotFile);
+        Files.write(snapshotFile, Arrays.copyOf(content, content.length - 10));
+
+        assertThrows(IOException.class, () -> CacheSnapshot.read(snapshotFile));
+    }
+
+    @Test
+    public void warmStartReadsOnlyWhatChangedSinceTheSnapshot() throws Exception {
+        snapshot(2).write(snapshotFile);
+        whenQueried(DBConstants.GET_HIGH_WATER_MARK, resultSet(new Object[]{3, MARK_TIME + HOUR}));
+        // GHIJKL left spot 2, then MNOPQR took spot 3
+        whenQueried(DBConstants.GET_PARKING_SPOTS_CHANGED_SINCE, resultSet(
+                new Object[]{2, true, "CAR", 0},
+                new Object[]{3, false, "CAR", 0}));
+        whenQueried(DBConstants.GET_TICKETS_CHANGED_SINCE, resultSet(
+                new Object[]{2, 2, 3.0, MARK_TIME - HOUR, MARK_TIME + 1_000, "CAR", "GHIJKL"},
+                new Object[]{3, 3, 0.0, MARK_TIME + 2_000, null, "CAR", "MNOPQR"}));
+
+        assertTrue(new CacheSnapshotter(parkingSpotDAO, ticketDAO).warmStart(snapshotFile));
+
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, ticketDAO.getOpenTicket("ABCDEF").getId());
+        assertNull(ticketDAO.getOpenTicket("GHIJKL"));
+        assertEquals(3, ticketDAO.getOpenTicket("MNOPQR").getId());
+        assertEquals(2, ticketDAO.getNbTicket("ABCDEF"));
+        verify(connection, never()).prepareStatement(DBConstants.GET_PARKING_SPOTS);
+        verify(connection, never()).prepareStatement(DBConstants.GET_OPEN_TICKETS);
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET_IN_TIMES);
+    }
+
+    @Test
+    public void entryRolledBackAfterTheSnapshotIsUndoneOnWarmStart() throws Exception {
+        // MNOPQR took spot 3 in a unit of work that was still open when the snapshot was taken, then rolled back
+        CacheSnapshot snapshot = snapshot(2);
+        snapshot.getSpots().setAvailable(3, false);
+        new CacheSnapshot(snapshot.getMark(), snapshot.getSpots(),
+                Arrays.asList(snapshot.getOpenTickets().get(0), snapshot.getOpenTickets().get(1),
+                        openTicket(3, 3, "MNOPQR", MARK_TIME - 1_000)),
+                snapshot.getVisitsDay(), snapshot.getVisits()).write(snapshotFile);
+        whenQueried(DBConstants.GET_HIGH_WATER_MARK, resultSet(new Object[]{2, MARK_TIME + HOUR}));
+        whenQueried(DBConstants.GET_PARKING_SPOTS_CHANGED_SINCE, resultSet());
+        whenQueried(DBConstants.GET_TICKETS_CHANGED_SINCE, resultSet());
+        whenQueried(DBConstants.GET_PARKING_SPOTS, resultSet(
+                new Object[]{1, false, "CAR", 0},
+                new Object[]{2, false, "CAR", 0},
+                new Object[]{3, true, "CAR", 0},
+                new Object[]{4, true, "BIKE", 0}));
+
+        assertTrue(new CacheSnapshotter(parkingSpotDAO, ticketDAO).warmStart(snapshotFile));
+
+        assertEquals(3, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertNull(ticketDAO.getOpenTicket("MNOPQR"));
+        assertEquals(1, ticketDAO.getOpenTicket("ABCDEF").getId());
+        assertEquals(2, ticketDAO.getOpenTicket("GHIJKL").getId());
+    }
+
+    @Test
+    public void snapshotAheadOfTheDatabaseIsIgnored() throws Exception {
+        snapshot(2).write(snapshotFile);
+        whenQueried(DBConstants.GET_HIGH_WATER_MARK, resultSet(new Object[]{1, MARK_TIME + HOUR}));
+
+        assertFalse(new CacheSnapshotter(parkingSpotDAO, ticketDAO).warmStart(snapshotFile));
+
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKETS_CHANGED_SINCE);
+    }
+}
@@ -0,0 +1,186 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPoolTest {
+
+    private AtomicInteger openedConnections;
+    private Connection lastPhysicalConnection;
+    private List<PreparedStatement> preparedStatements;
+    private ConnectionPool pool;
+
+    private Connection newPhysicalConnection() throws SQLException {
+        openedConnections.incrementAndGet();
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            preparedStatements.add(statement);
+            return statement;
+        });
+        lastPhysicalConnection = connection;
+        return connection;
+    }
+
+    @BeforeEach
+    private void setUpPerTest() {
+        openedConnections = new AtomicInteger();
+        preparedStatements = new ArrayList<>();
+        pool = new ConnectionPool(this::newPhysicalConnection, 2, 100, 60_000, 60_000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void closedConnectionIsReused() throws Exception {
+        Connection first = pool.borrow();
+        first.close();
+        Connection second = pool.borrow();
+        second.close();
+
+        assertEquals(1, openedConnections.get());
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(1, pool.getIdleConnections());
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+
+        assertEquals(2, pool.getActiveConnections());
+        assertThrows(SQLException.class, () -> pool.borrow());
+        assertEquals(1, pool.getTimeoutCount());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void closingTwiceReleasesOnlyOnce() throws Exception {
+        Connection connection = pool.borrow();
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    @Test
+    public void uncommittedWorkIsRolledBackOnRelease() throws Exception {
+        Connection connection = pool.borrow();
+        Connection physical = lastPhysicalConnection;
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+
+    @Test
+    public void expiredConnectionIsNotReused() throws Exception {
+        ConnectionPool shortLivedPool = new ConnectionPool(this::newPhysicalConnection, 2, 100, 60_000, 0);
+        try {
+            shortLivedPool.borrow().close();
+            shortLivedPool.borrow().close();
+
+            assertEquals(2, openedConnections.get());
+            assertEquals(0, shortLivedPool.getIdleConnections());
+        } finally {
+            shortLivedPool.close();
+        }
+    }
+
+    @Test
+    public void preparedStatementIsReusedByTheNextBorrower() throws Exception {
+        ConnectionPool cachingPool = new ConnectionPool(this::newPhysicalConnection, 1, 100, 60_000, 60_000, 2);
+        try {
+            Connection first = cachingPool.borrow();
+            PreparedStatement statement = first.prepareStatement("select 1");
+            assertSame(first, statement.getConnection());
+            statement.setInt(1, 42);
+            statement.close();
+            first.close();
+
+            Connection second = cachingPool.borrow();
+            second.prepareStatement("select 1").close();
+            second.close();
+
+            assertEquals(1, preparedStatements.size());
+            verify(lastPhysicalConnection, times(1)).prepareStatement("select 1");
+            PreparedStatement physical = preparedStatements.get(0);
+            verify(physical, times(2)).clearParameters();
+            verify(physical, never()).close();
+            assertEquals(1, cachingPool.getStatementCacheHits());
+            assertEquals(1, cachingPool.getStatementCacheMisses());
+        } finally {
+            cachingPool.close();
+        }
+        verify(preparedStatements.get(0)).close();
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsClosed() throws Exception {
+        ConnectionPool cachingPool = new ConnectionPool(this::newPhysicalConnection, 1, 100, 60_000, 60_000, 2);
+        try (Connection connection = cachingPool.borrow()) {
+            connection.prepareStatement("select 1").close();
+            connection.prepareStatement("select 2").close();
+            connection.prepareStatement("select 1").close();
+            connection.prepareStatement("select 3").close();
+
+            assertEquals(3, preparedStatements.size());
+            verify(preparedStatements.get(1)).close();
+            verify(preparedStatements.get(0), never()).close();
+            verify(preparedStatements.get(2), never()).close();
+        } finally {
+            cachingPool.close();
+        }
+    }
+
+    @Test
+    public void statementLeftOpenIsClosedWithTheConnection() throws Exception {
+        ConnectionPool cachingPool = new ConnectionPool(this::newPhysicalConnection, 1, 100, 60_000, 60_000, 2);
+        try {
+            Connection first = cachingPool.borrow();
+            PreparedStatement forgotten = first.prepareStatement("select 1");
+            first.close();
+
+            verify(preparedStatements.get(0)).close();
+            assertThrows(SQLException.class, forgotten::executeQuery);
+            forgotten.close();
+
+            Connection second = cachingPool.borrow();
+            second.prepareStatement("select 1").close();
+            second.close();
+
+            assertEquals(2, preparedStatements.size());
+            assertEquals(0, cachingPool.getStatementCacheHits());
+        } finally {
+            cachingPool.close();
+        }
+    }
+}
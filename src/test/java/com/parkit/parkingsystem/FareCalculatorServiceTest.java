@@ -13,6 +13,8 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Calendar;
 
 /**
@@ -207,5 +209,42 @@ public class FareCalculatorServiceTest {
 
         assertEquals((FormatUtil.roundToTwoDecimals(Fare.FREQUENT_USER_REDUCTION_RATE) * Fare.BIKE_RATE_PER_HOUR), ticket.getPrice());
     }
-}
 
+    /**
+     * The fare as calculated before fares were computed in cents.
+     */
+    private static double legacyFare(long durationMillis, ParkingType parkingType, boolean discount) {
+        double duration = durationMillis / (60.0 * 60.0 * 1000.0);
+        if (duration < Fare.FREE_PARKING_TIME) {
+            return new BigDecimal(0).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        }
+        double fare = duration * (parkingType == ParkingType.CAR ? Fare.CAR_RATE_PER_HOUR : Fare.BIKE_RATE_PER_HOUR);
+        if (discount) {
+            fare = fare * Fare.FREQUENT_USER_REDUCTION_RATE;
+        }
+        return new BigDecimal(fare).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    @Test
+    public void calculateFareInCentsMatchesLegacyCalculation() {
+        long inTimeMillis = 1_700_000_000_000L;
+        // every second of the first 3 days, then every minute up to 60 days
+        for (long durationMillis = 0; durationMillis <= 60L * 24 * 60 * 60 * 1000;
+                durationMillis += durationMillis < 3L * 24 * 60 * 60 * 1000 ? 1_000 : 60_000) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                for (boolean discount : new boolean[] { false, true }) {
+                    long cents = fareCalculatorService.calculateFareInCents(inTimeMillis, inTimeMillis + durationMillis, parkingType, discount);
+
+                    assertEquals(legacyFare(durationMillis, parkingType, discount), cents / 100.0,
+                            parkingType + " for " + durationMillis + " ms, discount " + discount);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculateFareInCentsWithOutTimeBeforeInTime() {
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFareInCents(2_000, 1_000, ParkingType.CAR, false));
+    }
+}
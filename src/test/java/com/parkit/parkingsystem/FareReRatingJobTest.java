@@ -0,0 +1,133 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareReRatingJob;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+public class FareReRatingJobTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long START = 1_700_000_000_000L;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    @AfterAll
+    private static void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return a result set over rows of (ID, VEHICLE_REG_NUMBER, IN_TIME, OUT_TIME, PRICE, TYPE).
+     */
+    private static ResultSet resultSet(List<Object[]> rows) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = { -1 };
+        when(rs.next()).thenAnswer(invocation -> ++row[0] < rows.size());
+        when(rs.getInt(anyInt())).thenAnswer(invocation -> rows.get(row[0])[(int) invocation.getArgument(0) - 1]);
+        when(rs.getString(anyInt())).thenAnswer(invocation -> rows.get(row[0])[(int) invocation.getArgument(0) - 1]);
+        when(rs.getTimestamp(anyInt())).thenAnswer(invocation -> rows.get(row[0])[(int) invocation.getArgument(0) - 1]);
+        when(rs.getDouble(anyInt())).thenAnswer(invocation -> rows.get(row[0])[(int) invocation.getArgument(0) - 1]);
+        return rs;
+    }
+
+    private static Object[] row(int id, String vehicleRegNumber, long inTime, Long outTime, double price, ParkingType type) {
+        return new Object[] { id, vehicleRegNumber, new Timestamp(inTime), outTime == null ? null : new Timestamp(outTime), price, type.name() };
+    }
+
+    @Test
+    public void frequentUserDiscountAndDiscrepanciesAreReported() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        // six 2-hour car visits, one a day: the fifth and sixth get the discount
+        for (int visit = 0; visit < 6; visit++) {
+            long inTime = START + visit * DAY;
+            double price = visit < 4 ? 3.0 : 2.85;
+            if (visit == 2) {
+                // stored with a wrong price
+                price = 4.5;
+            }
+            rows.add(row(visit + 1, "ABCDEF", inTime, inTime + 2 * HOUR, price, ParkingType.CAR));
+        }
+        // still parked: not rated
+        rows.add(row(7, "ABCDEF", START + 10 * DAY, null, 0, ParkingType.CAR));
+        // another vehicle, with a discount it should not have had
+        rows.add(row(8, "GHIJKL", START, START + HOUR, 0.95, ParkingType.BIKE));
+        StringWriter report = new StringWriter();
+
+        FareReRatingJob.Summary summary = new FareReRatingJob(pool).reRate(resultSet(rows), report);
+
+        assertEquals(7, summary.getTicketsRated());
+        assertEquals(2, summary.getDiscrepancies());
+        assertEquals(4 * 300 + 2 * 285 + 100, summary.getRecomputedRevenueCents());
+        assertEquals(summary.getRecomputedRevenueCents() + 150 - 5, summary.getStoredRevenueCents());
+        String[] lines = report.toString().split("\n");
+        assertEquals(FareReRatingJob.REPORT_HEADER, lines[0]);
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("3,ABCDEF,CAR,"));
+        assertTrue(lines[1].endsWith(",false,4.5,3.0,-1.5"), lines[1]);
+        assertTrue(lines[2].startsWith("8,GHIJKL,BIKE,"));
+        assertTrue(lines[2].endsWith(",false,0.95,1.0,0.05"), lines[2]);
+    }
+
+    @Test
+    public void visitsOutsideTheWindowDoNotCount() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        // four visits long ago, then one visit: only one visit within the window
+        for (int visit = 0; visit < 4; visit++) {
+            long inTime = START + visit * DAY;
+            rows.add(row(visit + 1, "ABCDEF", inTime, inTime + HOUR, 1.5, ParkingType.CAR));
+        }
+        long inTime = START + 60 * DAY;
+        rows.add(row(5, "ABCDEF", inTime, inTime + HOUR, 1.5, ParkingType.CAR));
+
+        FareReRatingJob.Summary summary = new FareReRatingJob(pool).reRate(resultSet(rows), new StringWriter());
+
+        assertEquals(5, summary.getTicketsRated());
+        assertEquals(0, summary.getDiscrepancies());
+    }
+
+    @Test
+    public void manyBatchesGiveTheSameTotalsAsASequentialRating() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        long expectedCents = 0;
+        int id = 0;
+        for (int vehicle = 0; vehicle < 10_000; vehicle++) {
+            String vehicleRegNumber = String.format("V%05d", vehicle);
+            ParkingType type = vehicle % 3 == 0 ? ParkingType.BIKE : ParkingType.CAR;
+            int visits = vehicle % 11;
+            for (int visit = 0; visit < visits; visit++) {
+                long inTime = START + visit * DAY + vehicle * 1_000L;
+                long outTime = inTime + (vehicle % 7 + 1) * HOUR / 2 + visit * 60_000L;
+                // visits are one day apart, so the (visit + 1)th visit counts visit + 1 visits in the window
+                expectedCents += fareCalculatorService.calculateFareInCents(inTime, outTime, type,
+                        visit + 1 >= Fare.MIN_USES_FOR_FREQUENT_USER);
+                rows.add(row(++id, vehicleRegNumber, inTime, outTime, 0, type));
+            }
+        }
+
+        FareReRatingJob.Summary summary = new FareReRatingJob(pool).reRate(resultSet(rows), new StringWriter());
+
+        assertTrue(rows.size() > 2 * FareReRatingJob.BATCH_SIZE);
+        assertEquals(rows.size(), summary.getTicketsRated());
+        assertEquals(expectedCents, summary.getRecomputedRevenueCents());
+        assertEquals(0, summary.getStoredRevenueCents());
+    }
+}
@@ -2,6 +2,10 @@ package com.parkit.parkingsystem;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -56,4 +60,38 @@ public class FormatUtilTest {
         
         assertEquals(123.00, formattedNumber); 
     }
+
+    @DisplayName("arrondit en centimes comme BigDecimal HALF_UP, sans allocation")
+    @Test
+    public void toCentsMatchesBigDecimalHalfUp() {
+        Random random = new Random(42);
+        double[] amounts = new double[200_000];
+        for (int i = 0; i < amounts.length; i++) {
+            switch (i % 4) {
+                case 0: {
+                    // exact half cents, and their neighbours
+                    double halfCent = (random.nextInt(1_000_000) + 0.5) / 100;
+                    amounts[i] = i % 8 == 0 ? halfCent : Math.nextUp(halfCent);
+                    break;
+                }
+                case 1: {
+                    amounts[i] = Math.nextDown((random.nextInt(1_000_000) + 0.5) / 100);
+                    break;
+                }
+                case 2: {
+                    amounts[i] = random.nextDouble() * 1_000;
+                    break;
+                }
+                default: {
+                    amounts[i] = -random.nextDouble() * 100;
+                }
+            }
+        }
+        for (double amount : amounts) {
+            BigDecimal expected = new BigDecimal(amount).setScale(2, RoundingMode.HALF_UP);
+
+            assertEquals(expected.unscaledValue().longValueExact(), FormatUtil.toCents(amount), "cents of " + amount);
+            assertEquals(expected.doubleValue(), FormatUtil.roundToTwoDecimals(amount), "rounding of " + amount);
+        }
+    }
 }
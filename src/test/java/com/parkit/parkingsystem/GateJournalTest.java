@@ -0,0 +1,252 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalRecord;
+import com.parkit.parkingsystem.journal.JournalReplayer;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.SpotStore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class GateJournalTest {
+
+    private Path directory;
+
+    @BeforeEach
+    private void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static Ticket ticket(String vehicleRegNumber, int parkingNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setInTimeMillis(inTime);
+        return ticket;
+    }
+
+    @Test
+    public void pendingRecordsSurviveReopening() throws Exception {
+        Path file = directory.resolve("journal");
+        Ticket ticket = ticket("ABCDEF", 3, 1_000_000);
+        try (GateJournal journal = GateJournal.open(file, 8)) {
+            assertEquals(1, journal.append(JournalRecord.entry(ticket)));
+            ticket.setOutTimeMillis(2_000_000);
+            ticket.setPrice(1.5);
+            assertEquals(2, journal.append(JournalRecord.exit(ticket)));
+        }
+
+        try (GateJournal journal = GateJournal.open(file, 8)) {
+            List<JournalRecord> records = journal.readPending(10);
+
+            assertEquals(2, records.size());
+            JournalRecord entry = records.get(0);
+            assertEquals(JournalRecord.Type.ENTRY, entry.getType());
+            assertEquals("ABCDEF", entry.getVehicleRegNumber());
+            assertEquals(3, entry.getParkingNumber());
+            assertEquals(ParkingType.CAR, entry.getParkingType());
+            assertEquals(1_000_000, entry.getInTimeMillis());
+            assertEquals(Ticket.NO_TIME, entry.getOutTimeMillis());
+            JournalRecord exit = records.get(1);
+            assertEquals(JournalRecord.Type.EXIT, exit.getType());
+            assertEquals(2_000_000, exit.getOutTimeMillis());
+            assertEquals(150, exit.getPriceCents());
+
+            journal.markApplied(1);
+        }
+
+        try (GateJournal journal = GateJournal.open(file, 8)) {
+            assertEquals(1, journal.getAppliedSequence());
+            assertEquals(2, journal.getLastSequence());
+            assertEquals(2, journal.readPending(10).get(0).getSequence());
+        }
+    }
+
+    @Test
+    public void tornRecordEndsTheJournal() throws Exception {
+        Path file = directory.resolve("journal");
+        try (GateJournal journal = GateJournal.open(file, 8)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(JournalRecord.entry(ticket("V" + i, i + 1, 1_000_000)));
+            }
+        }
+        // a crash in the middle of writing the third record
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(128 + 2 * GateJournal.RECORD_SIZE + 40);
+            raf.write('X');
+        }
+
+        try (GateJournal journal = GateJournal.open(file, 8)) {
+            assertEquals(2, journal.getPendingCount());
+            assertEquals(3, journal.append(JournalRecord.entry(ticket("V2", 3, 1_000_000))));
+        }
+    }
+
+    @Test
+    public void slotsAreReusedOnceApplied() throws Exception {
+        Path file = directory.resolve("journal");
+        try (GateJournal journal = GateJournal.open(file, 4)) {
+            for (int i = 0; i < 4; i++) {
+                journal.append(JournalRecord.entry(ticket("V" + i, i + 1, 1_000_000)));
+            }
+            assertThrows(IOException.class, () -> journal.append(JournalRecord.entry(ticket("V4", 5, 1_000_000))));
+
+            journal.markApplied(2);
+            journal.append(JournalRecord.entry(ticket("V4", 5, 1_000_000)));
+            journal.append(JournalRecord.entry(ticket("V5", 6, 1_000_000)));
+        }
+
+        try (GateJournal journal = GateJournal.open(file, 4)) {
+            List<JournalRecord> records = journal.readPending(10);
+            assertEquals(4, records.size());
+            assertEquals(3, records.get(0).getSequence());
+            assertEquals("V5", records.get(3).getVehicleRegNumber());
+        }
+        assertThrows(IOException.class, () -> GateJournal.open(file, 8));
+    }
+
+    @Test
+    public void replayerKeepsRecordsUntilTheDatabaseIsBack() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement saveTicket = mock(PreparedStatement.class);
+        PreparedStatement closeTicket = mock(PreparedStatement.class);
+        PreparedStatement updateParking = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("database down")).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_JOURNALED_TICKET)).thenReturn(saveTicket);
+        when(connection.prepareStatement(DBConstants.CLOSE_JOURNALED_TICKET)).thenReturn(closeTicket);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateParking);
+
+        try (GateJournal journal = GateJournal.open(directory.resolve("journal"), 8)) {
+            Ticket ticket = ticket("ABCDEF", 3, 1_000_000);
+            journal.append(JournalRecord.entry(ticket));
+            ticket.setOutTimeMillis(2_000_000);
+            journal.append(JournalRecord.exit(ticket));
+            JournalReplayer replayer = new JournalReplayer(journal, dataBaseConfig);
+
+            assertThrows(SQLException.class, replayer::replayPending);
+            assertEquals(2, journal.getPendingCount());
+
+            assertEquals(2, replayer.replayPending());
+            assertEquals(0, journal.getPendingCount());
+        }
+        verify(saveTicket).executeUpdate();
+        verify(closeTicket).executeUpdate();
+        verify(updateParking).setBoolean(1, false);
+        verify(updateParking).setBoolean(1, true);
+        verify(updateParking, times(2)).executeUpdate();
+        verify(connection).commit();
+    }
+
+    @Test
+    public void connectionLostDuringReplayKeepsItsCause() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement saveTicket = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(connection.prepareStatement(DBConstants.SAVE_JOURNALED_TICKET)).thenReturn(saveTicket);
+        when(saveTicket.executeUpdate()).thenThrow(new SQLException("Communications link failure"));
+        doThrow(new SQLException("No operations allowed after connection closed")).when(connection).rollback();
+
+        try (GateJournal journal = GateJournal.open(directory.resolve("journal"), 8)) {
+            journal.append(JournalRecord.entry(ticket("ABCDEF", 3, 1_000_000)));
+            JournalReplayer replayer = new JournalReplayer(journal, dataBaseConfig);
+
+            SQLException e = assertThrows(SQLException.class, replayer::replayPending);
+
+            assertEquals("Communications link failure", e.getMessage());
+            assertEquals("No operations allowed after connection closed", e.getSuppressed()[0].getMessage());
+            assertEquals(1, journal.getPendingCount());
+        }
+    }
+
+    @Test
+    public void gatesAreAnsweredWithoutTheDatabase() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+        TicketDAO ticketDAO = mock(TicketDAO.class);
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(4);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenAnswer(invocation -> {
+            Ticket ticket = ticket("ABCDEF", 4, System.currentTimeMillis() - 3_600_000);
+            return ticket;
+        });
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+        try (GateJournal journal = GateJournal.open(directory.resolve("journal"), 8)) {
+            parkingService.setJournal(journal);
+
+            EntryResult entry = parkingService.enter(ParkingType.CAR, "ABCDEF");
+            ExitResult exit = parkingService.exit("ABCDEF");
+
+            assertTrue(entry.isEntered());
+            assertEquals(4, entry.getParkingSpot().getId());
+            assertTrue(exit.isExited());
+            assertEquals(1.5, exit.getPrice());
+            List<JournalRecord> records = journal.readPending(10);
+            assertEquals(2, records.size());
+            assertEquals(JournalRecord.Type.ENTRY, records.get(0).getType());
+            assertEquals(150, records.get(1).getPriceCents());
+        }
+        verify(ticketDAO).trackJournaledEntry(any(Ticket.class));
+        verify(ticketDAO).trackJournaledExit(any(Ticket.class));
+        verify(parkingSpotDAO).releaseReservedSlot(4);
+        verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class), anyInt());
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(ticketDAO, never()).getTicket(anyString());
+        verify(ticketDAO, never()).getNbTicket(anyString());
+    }
+
+    @Test
+    public void spotIsGivenBackIfTheJournalIsFull() throws Exception {
+        ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+        TicketDAO ticketDAO = mock(TicketDAO.class);
+        when(parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(1, 2);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+
+        try (GateJournal journal = GateJournal.open(directory.resolve("journal"), 1)) {
+            parkingService.setJournal(journal);
+
+            assertTrue(parkingService.enter(ParkingType.CAR, "ABCDEF").isEntered());
+            assertEquals(EntryResult.Status.ERROR, parkingService.enter(ParkingType.CAR, "GHIJKL").getStatus());
+        }
+        verify(parkingSpotDAO).releaseReservedSlot(2);
+        verify(ticketDAO, times(1)).trackJournaledEntry(any(Ticket.class));
+    }
+}
@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.SpotStore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GateServerTest {
+
+    private static final int SESSIONS = 2_000;
+
+    private GateServer gateServer;
+
+    @AfterEach
+    private void tearDown() {
+        if (gateServer != null) {
+            gateServer.close();
+        }
+    }
+
+    private static EntryResult entered(String vehicleRegNumber, int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setInTime(Calendar.getInstance());
+        return EntryResult.entered(ticket, false);
+    }
+
+    private static ExitResult exited(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(1.5);
+        ticket.setOutTime(Calendar.getInstance());
+        return ExitResult.exited(ticket, false);
+    }
+
+    /**
+     * Opens a gate session, sends each request and returns the responses.
+     */
+    private List<String> session(String... requests) throws IOException {
+        List<String> responses = new ArrayList<>();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateServer.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            for (String request : requests) {
+                out.println(request);
+                responses.add(in.readLine());
+            }
+        }
+        return responses;
+    }
+
+    @Test
+    public void thousandsOfConcurrentGateSessions() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        AtomicInteger nextSpot = new AtomicInteger();
+        AtomicInteger inService = new AtomicInteger();
+        AtomicInteger maxInService = new AtomicInteger();
+        when(parkingService.enter(any(ParkingType.class), anyString(), anyInt())).thenAnswer(invocation -> {
+            maxInService.accumulateAndGet(inService.incrementAndGet(), Math::max);
+            try {
+                // a blocking JDBC call
+                Thread.sleep(1);
+                return entered(invocation.getArgument(1), nextSpot.incrementAndGet());
+            } finally {
+                inService.decrementAndGet();
+            }
+        });
+        when(parkingService.exit(anyString())).thenAnswer(invocation -> exited(invocation.getArgument(0)));
+        gateServer = new GateServer(parkingService, 0, SESSIONS, 8);
+        gateServer.start();
+
+        List<Future<List<String>>> sessions = new ArrayList<>();
+        try (ExecutorService gates = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < SESSIONS; i++) {
+                String vehicleRegNumber = "GATE" + i;
+                sessions.add(gates.submit(() -> session("ENTER CAR " + vehicleRegNumber, "EXIT " + vehicleRegNumber, "QUIT")));
+            }
+        }
+
+        for (Future<List<String>> session : sessions) {
+            List<String> responses = session.get();
+            assertTrue(responses.get(0).startsWith("OK ENTERED "), responses.get(0));
+            assertTrue(responses.get(1).startsWith("OK EXITED 1.5 "), responses.get(1));
+            assertEquals("OK BYE", responses.get(2));
+        }
+        verify(parkingService, times(SESSIONS)).enter(eq(ParkingType.CAR), anyString(), anyInt());
+        verify(parkingService, times(SESSIONS)).exit(anyString());
+        assertTrue(maxInService.get() <= 8, "at most 8 requests in the service at once, was " + maxInService.get());
+    }
+
+    @Test
+    public void refusedAndInvalidRequests() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        when(parkingService.enter(ParkingType.BIKE, "ABCDEF", SpotStore.DEFAULT_ENTRANCE))
+                .thenReturn(EntryResult.rejected(EntryResult.Status.ALREADY_IN_PARKING, "ABCDEF"));
+        gateServer = new GateServer(parkingService, 0, 10, 1);
+        gateServer.start();
+
+        List<String> responses = session("enter bike ABCDEF", "ENTER PLANE ABCDEF", "PARK ABCDEF");
+
+        assertEquals("KO ALREADY_IN_PARKING", responses.get(0));
+        assertTrue(responses.get(1).startsWith("KO BAD_REQUEST"));
+        assertTrue(responses.get(2).startsWith("KO BAD_REQUEST"));
+        verify(parkingService, times(1)).enter(any(ParkingType.class), anyString(), anyInt());
+    }
+
+    @Test
+    public void serverListensOnTheGivenAddress() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        when(parkingService.enter(ParkingType.CAR, "ABCDEF", 2))
+                .thenReturn(EntryResult.rejected(EntryResult.Status.PARKING_FULL, "ABCDEF"));
+        gateServer = new GateServer(parkingService, InetAddress.getByName("0.0.0.0"), 0, 10, 1);
+        gateServer.start();
+
+        List<String> responses = session("ENTER CAR ABCDEF 2", "ENTER CAR ABCDEF north");
+
+        assertEquals("KO PARKING_FULL", responses.get(0));
+        assertTrue(responses.get(1).startsWith("KO BAD_REQUEST"));
+        verify(parkingService, times(1)).enter(any(ParkingType.class), anyString(), anyInt());
+    }
+
+    @Test
+    public void connectionsOverTheLimitAreRefused() throws Exception {
+        gateServer = new GateServer(mock(ParkingService.class), 0, 1, 1);
+        gateServer.start();
+
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), gateServer.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), gateServer.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals("KO BUSY", in.readLine());
+        }
+    }
+}
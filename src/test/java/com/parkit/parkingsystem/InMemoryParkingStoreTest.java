@@ -0,0 +1,228 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.InMemoryParkingStore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InMemoryParkingStoreTest {
+
+    private InMemoryParkingStore store;
+    private ParkingService parkingService;
+    private Path directory;
+
+    @BeforeEach
+    private void setUp() throws IOException {
+        Map<ParkingType, Integer> spots = new EnumMap<>(ParkingType.class);
+        spots.put(ParkingType.CAR, 3);
+        spots.put(ParkingType.BIKE, 2);
+        store = InMemoryParkingStore.withSpots(spots);
+        parkingService = new ParkingService(store, store);
+        directory = Files.createTempDirectory("store");
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(directory.resolve("snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    private void park(String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(store.claimNextAvailableSlot(ParkingType.CAR), ParkingType.CAR, false));
+        ticket.setInTimeMillis(inTime);
+        store.saveTicket(ticket);
+    }
+
+    @Test
+    public void serviceRunsOnTheMemoryStore() {
+        EntryResult car = parkingService.enter(ParkingType.CAR, "ABCDEF");
+        EntryResult bike = parkingService.enter(ParkingType.BIKE, "GHIJKL");
+
+        assertEquals(1, car.getParkingSpot().getId());
+        assertEquals(4, bike.getParkingSpot().getId());
+        assertEquals(EntryResult.Status.ALREADY_IN_PARKING, parkingService.enter(ParkingType.CAR, "ABCDEF").getStatus());
+        assertEquals(2, store.countAvailable(ParkingType.CAR));
+
+        ExitResult exit = parkingService.exit("ABCDEF");
+
+        assertTrue(exit.isExited());
+        assertEquals(0, exit.getPrice());
+        assertEquals(3, store.countAvailable(ParkingType.CAR));
+        assertFalse(store.isVehicleAlreadyInParking("ABCDEF"));
+        assertTrue(store.getTicket("ABCDEF").hasOutTime());
+        assertEquals(ExitResult.Status.NOT_IN_PARKING, parkingService.exit("UNKNOWN").getStatus());
+    }
+
+    @Test
+    public void visitsAreCountedOverTheWindow() {
+        long day = 24L * 60 * 60 * 1000;
+        long now = System.currentTimeMillis();
+        for (int i : new int[] {40, 4, 3, 2, 1}) {
+            park("ABCDEF", now - i * day);
+            Ticket ticket = store.getTicket("ABCDEF");
+            ticket.setOutTimeMillis(now - i * day + 1000);
+            store.updateTicket(ticket);
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            parkingSpot.setAvailable(true);
+            store.updateParking(parkingSpot);
+        }
+
+        assertEquals(4, store.getNbTicket("ABCDEF"));
+        assertEquals(0, store.getNbTicket("GHIJKL"));
+
+        assertTrue(parkingService.enter(ParkingType.CAR, "ABCDEF").isFrequentUser());
+        assertTrue(parkingService.exit("ABCDEF").isFrequentUser());
+    }
+
+    @Test
+    public void writesAreUndoneOnRollback() {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            park("ABCDEF", System.currentTimeMillis());
+            assertTrue(store.isVehicleAlreadyInParking("ABCDEF"));
+        }
+
+        assertFalse(store.isVehicleAlreadyInParking("ABCDEF"));
+        assertNull(store.getTicket("ABCDEF"));
+        assertEquals(0, store.getNbTicket("ABCDEF"));
+        assertEquals(3, store.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void rolledBackTicketIsUnlinkedEvenIfNotTheLatest() throws Exception {
+        CountDownLatch saved = new CountDownLatch(1);
+        CountDownLatch overtaken = new CountDownLatch(1);
+        Thread slowGate = new Thread(() -> {
+            try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+                park("ABCDEF", System.currentTimeMillis() - 1000);
+                saved.countDown();
+                overtaken.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        slowGate.start();
+        saved.await();
+        // the ticket is closed and a newer one opened before the first unit of work rolls back
+        Ticket rolledBack = store.getTicket("ABCDEF");
+        rolledBack.setOutTimeMillis(System.currentTimeMillis());
+        store.updateTicket(rolledBack);
+        park("ABCDEF", System.currentTimeMillis());
+        overtaken.countDown();
+        slowGate.join();
+
+        assertEquals(1, store.getNbTicket("ABCDEF"));
+        assertNotEquals(rolledBack.getId(), store.getTicket("ABCDEF").getId());
+    }
+
+    @Test
+    public void concurrentEntriesOfTheSameVehicleOpenOneTicket() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<EntryResult>> entries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            entries.add(executor.submit(() -> {
+                start.await();
+                return parkingService.enter(ParkingType.CAR, "ABCDEF");
+            }));
+        }
+        start.countDown();
+        int entered = 0;
+        for (Future<EntryResult> entry : entries) {
+            EntryResult result = entry.get();
+            if (result.isEntered()) {
+                entered++;
+            } else {
+                assertEquals(EntryResult.Status.ALREADY_IN_PARKING, result.getStatus());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, entered);
+        assertEquals(1, store.getTicketCount());
+        assertEquals(2, store.countAvailable(ParkingType.CAR), "Spots of refused entries should be freed");
+    }
+
+    @Test
+    public void snapshotRestoresTicketsAndTakenSpots() throws Exception {
+        parkingService.enter(ParkingType.CAR, "ABCDEF");
+        parkingService.enter(ParkingType.CAR, "GHIJKL");
+        parkingService.exit("ABCDEF");
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            park("ROLLED", System.currentTimeMillis());
+        }
+        Path snapshot = directory.resolve("snapshot");
+        store.snapshot(snapshot);
+
+        InMemoryParkingStore loaded = InMemoryParkingStore.load(snapshot);
+
+        assertEquals(2, loaded.countAvailable(ParkingType.CAR));
+        assertEquals(2, loaded.countAvailable(ParkingType.BIKE));
+        assertEquals(1, loaded.getNextAvailableSlot(ParkingType.CAR));
+        assertTrue(loaded.isVehicleAlreadyInParking("GHIJKL"));
+        assertFalse(loaded.isVehicleAlreadyInParking("ABCDEF"));
+        assertNull(loaded.getTicket("ROLLED"));
+        Ticket ticket = loaded.getTicket("ABCDEF");
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertEquals(ParkingType.CAR, ticket.getParkingSpot().getParkingType());
+        assertTrue(ticket.hasOutTime());
+        assertEquals(1, loaded.getNbTicket("ABCDEF"));
+        assertEquals(3, loaded.getTicketCount());
+    }
+
+    @Test
+    public void concurrentEntriesGetDistinctSpots() throws Exception {
+        Map<ParkingType, Integer> spots = new EnumMap<>(ParkingType.class);
+        spots.put(ParkingType.CAR, 500);
+        InMemoryParkingStore bigStore = InMemoryParkingStore.withSpots(spots);
+        ParkingService service = new ParkingService(bigStore, bigStore);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<EntryResult>> entries = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String vehicleRegNumber = "V" + i;
+            entries.add(executor.submit(() -> service.enter(ParkingType.CAR, vehicleRegNumber)));
+        }
+        Set<Integer> parkingNumbers = new HashSet<>();
+        int full = 0;
+        for (Future<EntryResult> entry : entries) {
+            EntryResult result = entry.get();
+            if (result.isEntered()) {
+                assertTrue(parkingNumbers.add(result.getParkingSpot().getId()));
+            } else {
+                assertEquals(EntryResult.Status.PARKING_FULL, result.getStatus());
+                full++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(500, parkingNumbers.size());
+        assertEquals(100, full);
+        assertEquals(500, bigStore.getTicketCount());
+    }
+}
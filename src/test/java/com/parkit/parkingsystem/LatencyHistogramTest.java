@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.util.LatencyHistogram;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        SplittableRandom random = new SplittableRandom(7);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // from a few ns to a few minutes
+            values[i] = (long) Math.exp(random.nextDouble() * 26);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double percentile : new double[] { 1, 50, 90, 99, 99.9, 99.99, 100 }) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact, percentile + ": " + reported + " < " + exact);
+            assertTrue(reported <= exact + exact / 64, percentile + ": " + reported + " > " + exact);
+        }
+    }
+
+    @Test
+    public void recordsFromManyThreads() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        IntStream.range(0, 1_000_000).parallel().forEach(i -> histogram.record(i % 1000));
+
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(999, histogram.getMax());
+        assertEquals(499.5, histogram.getMean(), 1e-9);
+        assertEquals(499, histogram.getValueAtPercentile(50), 499 / 64);
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean());
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+}
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.LoadGenerator;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.LatencyHistogram;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadGeneratorTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static EntryResult entered(ParkingType parkingType, String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setInTime(Calendar.getInstance());
+        return EntryResult.entered(ticket, false);
+    }
+
+    private static ExitResult exited(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setOutTime(Calendar.getInstance());
+        return ExitResult.exited(ticket, false);
+    }
+
+    @Test
+    public void everyVehicleEntersThenLeaves() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        Map<String, AtomicInteger> visits = new ConcurrentHashMap<>();
+        AtomicInteger bikes = new AtomicInteger();
+        when(parkingService.enter(any(ParkingType.class), anyString())).thenAnswer(invocation -> {
+            ParkingType parkingType = invocation.getArgument(0);
+            String vehicleRegNumber = invocation.getArgument(1);
+            visits.computeIfAbsent(vehicleRegNumber, v -> new AtomicInteger()).incrementAndGet();
+            if (parkingType == ParkingType.BIKE) {
+                bikes.incrementAndGet();
+            }
+            return entered(parkingType, vehicleRegNumber);
+        });
+        when(parkingService.exit(anyString())).thenAnswer(invocation -> exited(invocation.getArgument(0)));
+        LoadGenerator.Profile profile = LoadGenerator.Profile.parse("rate=500", "duration=2", "warmup=0",
+                "cars=0.5", "repeat=0.5", "stay=0.02", "stayDistribution=fixed");
+
+        LoadGenerator.Report report = new LoadGenerator(parkingService, profile).run();
+
+        LoadGenerator.OperationStats enter = report.getStats(LoadGenerator.Operation.ENTER);
+        LoadGenerator.OperationStats exit = report.getStats(LoadGenerator.Operation.EXIT);
+        long entries = enter.getLatencies().getCount();
+        // 1000 arrivals expected from the Poisson process
+        assertTrue(entries > 800 && entries < 1200, "entries: " + entries);
+        assertEquals(entries, enter.getOutcomeCount(EntryResult.Status.ENTERED));
+        assertEquals(entries, exit.getOutcomeCount(ExitResult.Status.EXITED));
+        assertTrue(visits.size() < entries, "some vehicles came back");
+        assertTrue(visits.values().stream().allMatch(count -> count.get() >= 1));
+        assertTrue(bikes.get() > entries / 4 && bikes.get() < entries * 3 / 4, "bikes: " + bikes);
+        assertTrue(report.toString().contains("ENTERED=" + entries));
+        // exits after the last arrival count in the window they were recorded in
+        assertTrue(report.getThroughput(LoadGenerator.Operation.EXIT) <= report.getThroughput(LoadGenerator.Operation.ENTER));
+    }
+
+    @Test
+    public void stallIsChargedToEveryRequestDueDuringIt() throws Exception {
+        ParkingService parkingService = mock(ParkingService.class);
+        Object database = new Object();
+        AtomicInteger calls = new AtomicInteger();
+        when(parkingService.enter(any(ParkingType.class), anyString())).thenAnswer(invocation -> {
+            synchronized (database) {
+                if (calls.incrementAndGet() == 100) {
+                    // a lock held for 300 ms: every entry due meanwhile waits for it
+                    Thread.sleep(300);
+                }
+            }
+            return EntryResult.rejected(EntryResult.Status.PARKING_FULL, invocation.getArgument(1));
+        });
+        LoadGenerator.Profile profile = LoadGenerator.Profile.parse("rate=200", "duration=3", "warmup=0");
+
+        LoadGenerator.Report report = new LoadGenerator(parkingService, profile).run();
+
+        LatencyHistogram latencies = report.getStats(LoadGenerator.Operation.ENTER).getLatencies();
+        assertEquals(latencies.getCount(), report.getStats(LoadGenerator.Operation.ENTER).getOutcomeCount(EntryResult.Status.PARKING_FULL));
+        assertEquals(0, report.getStats(LoadGenerator.Operation.EXIT).getLatencies().getCount());
+        // about 60 of the 600 entries were due during the stall: they are all slow, not just the one that stalled
+        assertTrue(latencies.getValueAtPercentile(95) > 50 * MILLI, report.toString());
+        assertTrue(latencies.getValueAtPercentile(99) > 200 * MILLI, report.toString());
+        assertTrue(latencies.getValueAtPercentile(50) < 50 * MILLI, report.toString());
+        verify(parkingService, never()).exit(anyString());
+    }
+
+    @Test
+    public void invalidProfilesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("rate=0"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("repeat=1.5"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("trucks=0.1"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("stayDistribution=normal"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("duration"));
+        // the default warm-up is 10 s
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("duration=5"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Profile.parse("duration=5", "warmup=5"));
+        LoadGenerator.Profile profile = LoadGenerator.Profile.parse("duration=5", "warmup=1");
+        profile.setWarmupSeconds(6);
+        assertThrows(IllegalArgumentException.class, () -> new LoadGenerator(mock(ParkingService.class), profile));
+    }
+}
@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class MetricsTest {
+
+    @Test
+    public void operationsArePublishedWithJmx() throws Exception {
+        OperationMetrics metrics = Metrics.operation("MetricsTest.jmx");
+        metrics.record(System.nanoTime() - 2_000_000);
+        metrics.record(System.nanoTime());
+        metrics.error();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.JMX_DOMAIN + ":type=Operation,name=" + ObjectName.quote("MetricsTest.jmx"));
+
+        assertSame(metrics, Metrics.operation("MetricsTest.jmx"));
+        assertEquals(2L, server.getAttribute(name, "Count"));
+        assertEquals(1L, server.getAttribute(name, "ErrorCount"));
+        assertTrue((Double) server.getAttribute(name, "MaxMillis") >= 2);
+        assertTrue((Double) server.getAttribute(name, "P50Millis") < 2);
+        assertTrue(Metrics.snapshot().contains("MetricsTest.jmx"));
+    }
+
+    @Test
+    public void daoAndServiceCallsAreMeasured() throws Exception {
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenThrow(new SQLException("database down"));
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        OperationMetrics updateParking = Metrics.operation("ParkingSpotDAO.updateParking");
+        OperationMetrics isVehicleAlreadyInParking = Metrics.operation("TicketDAO.isVehicleAlreadyInParking");
+        OperationMetrics enter = Metrics.operation("ParkingService.enter");
+        long updateParkingCount = updateParking.getCount();
+        long updateParkingErrors = updateParking.getErrorCount();
+        long isVehicleAlreadyInParkingCount = isVehicleAlreadyInParking.getCount();
+        long enterCount = enter.getCount();
+        long enterErrors = enter.getErrorCount();
+
+        assertFalse(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+        EntryResult entry = new ParkingService(parkingSpotDAO, ticketDAO).enter(ParkingType.CAR, "ABCDEF");
+
+        assertEquals(EntryResult.Status.ERROR, entry.getStatus());
+        assertEquals(updateParkingCount + 1, updateParking.getCount());
+        assertEquals(updateParkingErrors + 1, updateParking.getErrorCount());
+        assertEquals(isVehicleAlreadyInParkingCount + 1, isVehicleAlreadyInParking.getCount());
+        assertEquals(enterCount + 1, enter.getCount());
+        assertEquals(enterErrors + 1, enter.getErrorCount());
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        OperationMetrics metrics = Metrics.operation("MetricsTest.allocation");
+        for (int i = 0; i < 100_000; i++) {
+            metrics.record(System.nanoTime() - i);
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            metrics.record(System.nanoTime() - i);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        assertEquals(1_100_000, metrics.getCount());
+        assertTrue(allocated < 10_000, allocated + " bytes allocated");
+    }
+}
@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RollupDAO;
+import com.parkit.parkingsystem.rollup.ParkingRollups;
+import com.parkit.parkingsystem.rollup.RollupRow;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParkingRollupsTest {
+
+    private final ParkingRollups rollups = new ParkingRollups();
+    private final RollupDAO rollupDAO = mock(RollupDAO.class);
+
+    @SuppressWarnings("unchecked")
+    private List<RollupRow> persistedRows(int times) throws Exception {
+        ArgumentCaptor<List<RollupRow>> rows = ArgumentCaptor.forClass(List.class);
+        verify(rollupDAO, times(times)).addRollups(rows.capture());
+        return rows.getValue();
+    }
+
+    private static RollupRow find(List<RollupRow> rows, RollupRow.Period period, ParkingType parkingType) {
+        return rows.stream().filter(row -> row.getPeriod() == period && row.getParkingType() == parkingType)
+                .findFirst().orElse(null);
+    }
+
+    @Test
+    public void entriesAndExitsAreCountedAsTheyHappen() {
+        long now = System.currentTimeMillis();
+        rollups.setOccupancy(ParkingType.CAR, 2);
+
+        rollups.recordEntry(ParkingType.CAR, now);
+        rollups.recordEntry(ParkingType.BIKE, now);
+        rollups.recordExit(ParkingType.CAR, now, 150);
+
+        assertEquals(2, rollups.getOccupancy(ParkingType.CAR));
+        assertEquals(1, rollups.getOccupancy(ParkingType.BIKE));
+        assertEquals(1, rollups.getVisitsToday(ParkingType.CAR));
+        assertEquals(150, rollups.getRevenueTodayCents(ParkingType.CAR));
+        assertEquals(150, rollups.getRevenueThisHourCents(ParkingType.CAR));
+        assertEquals(0, rollups.getRevenueTodayCents(ParkingType.BIKE));
+        assertEquals(Long.valueOf(150), rollups.getRevenueTodayCents().get("CAR"));
+    }
+
+    @Test
+    public void onlyWhatWasCountedSinceTheLastRunIsPersisted() throws Exception {
+        long now = System.currentTimeMillis();
+        rollups.recordExit(ParkingType.CAR, now, 150);
+
+        assertEquals(2, rollups.persist(rollupDAO));
+        List<RollupRow> rows = persistedRows(1);
+        RollupRow day = find(rows, RollupRow.Period.DAY, ParkingType.CAR);
+        assertEquals(LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(), day.getPeriodStartMillis());
+        assertEquals(1, day.getExits());
+        assertEquals(150, day.getRevenueCents());
+        assertEquals(150, find(rows, RollupRow.Period.HOUR, ParkingType.CAR).getRevenueCents());
+
+        assertEquals(0, rollups.persist(rollupDAO));
+        verify(rollupDAO, times(1)).addRollups(anyList());
+
+        rollups.recordExit(ParkingType.CAR, now, 200);
+        rollups.persist(rollupDAO);
+        day = find(persistedRows(2), RollupRow.Period.DAY, ParkingType.CAR);
+        assertEquals(1, day.getExits());
+        assertEquals(200, day.getRevenueCents());
+        assertEquals(350, rollups.getRevenueTodayCents(ParkingType.CAR));
+    }
+
+    @Test
+    public void failedRunIsRetriedWithTheNextIncrements() throws Exception {
+        long now = System.currentTimeMillis();
+        doThrow(new SQLException("Database down")).doNothing().when(rollupDAO).addRollups(anyList());
+        rollups.recordEntry(ParkingType.BIKE, now);
+
+        assertThrows(SQLException.class, () -> rollups.persist(rollupDAO));
+        rollups.recordEntry(ParkingType.BIKE, now);
+        rollups.persist(rollupDAO);
+
+        RollupRow day = find(persistedRows(2), RollupRow.Period.DAY, ParkingType.BIKE);
+        assertEquals(2, day.getVisits());
+    }
+
+    @Test
+    public void loadedTotalsCountTodayButAreNotPersistedAgain() throws Exception {
+        long today = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        rollups.load(Arrays.asList(new RollupRow(RollupRow.Period.DAY, today, ParkingType.CAR, 10, 8, 2_400)));
+
+        rollups.recordExit(ParkingType.CAR, System.currentTimeMillis(), 100);
+
+        assertEquals(2_500, rollups.getRevenueTodayCents(ParkingType.CAR));
+        assertEquals(10, rollups.getVisitsToday(ParkingType.CAR));
+        rollups.persist(rollupDAO);
+        RollupRow day = find(persistedRows(1), RollupRow.Period.DAY, ParkingType.CAR);
+        assertEquals(0, day.getVisits());
+        assertEquals(1, day.getExits());
+        assertEquals(100, day.getRevenueCents());
+    }
+}
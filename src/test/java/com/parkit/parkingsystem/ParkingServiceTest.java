@@ -3,9 +3,13 @@ package com.parkit.parkingsystem;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.EntryStore;
+import com.parkit.parkingsystem.store.SpotStore;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,7 +25,10 @@ import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.util.Calendar;
@@ -90,12 +97,14 @@ public class ParkingServiceTest {
         useVehicleRegistrationNumber();
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(1);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
         
         parkingService.processIncomingVehicle();
 
         verify(ticketDAO, Mockito.times(1)).getNbTicket(anyString());
         verify(ticketDAO, Mockito.times(1)).isVehicleAlreadyInParking(anyString());
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, Mockito.times(1)).claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE);
 
         assertEquals(1, parkingService.getNextParkingNumberIfAvailable().getId());
     }
@@ -105,7 +114,9 @@ public class ParkingServiceTest {
         useVehicleRegistrationNumber();
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(1);
         when(ticketDAO.getNbTicket(ticket.getVehicleRegNumber())).thenReturn(5);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
         String expectedOutput = "Welcome back! As a regular user of our parking, you will receive a 5% discount.";
 
         parkingService.processIncomingVehicle();
@@ -126,7 +137,23 @@ public class ParkingServiceTest {
 
         verify(ticketDAO, never()).getNbTicket(anyString());
         verify(ticketDAO, never()).getTicket(anyString());
-        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class), anyInt());
+
+        String output = outputStreamCaptor.toString().trim();
+        assertTrue(output.contains(expectedOutput));
+    }
+
+    @Test
+    public void testProcessIncomingVehicleWhenSpotTakenByAnotherGate() {
+        useVehicleRegistrationNumber();
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(0);
+        String expectedOutput = "Parking slots might be full";
+
+        parkingService.processIncomingVehicle();
+
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
 
         String output = outputStreamCaptor.toString().trim();
         assertTrue(output.contains(expectedOutput));
@@ -209,4 +236,83 @@ public class ParkingServiceTest {
         String output = outputStreamCaptor.toString().trim();
         assertTrue(output.contains(expectedOutput));
     }
+
+    @Test
+    public void enterReturnsClaimedSpotWithoutConsoleIO() {
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE, SpotStore.DEFAULT_ENTRANCE)).thenReturn(4);
+        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(5);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        EntryResult result = parkingService.enter(ParkingType.BIKE, "ABCDEF");
+
+        assertEquals(EntryResult.Status.ENTERED, result.getStatus());
+        assertEquals(4, result.getParkingSpot().getId());
+        assertEquals(ParkingType.BIKE, result.getParkingSpot().getParkingType());
+        assertNotNull(result.getInTime());
+        assertTrue(result.isFrequentUser());
+        verify(ticketDAO).saveTicket(any(Ticket.class));
+        verifyZeroInteractions(inputReaderUtil);
+        assertEquals("", outputStreamCaptor.toString());
+    }
+
+    @Test
+    public void enterWithEntryStoreMakesASingleCall() {
+        EntryStore entryStore = mock(EntryStore.class);
+        when(entryStore.enterVehicle(eq(ParkingType.CAR), eq("ABCDEF"), anyLong())).thenReturn(EntryResult.entered(ticket, true));
+        parkingService.setEntryStore(entryStore);
+        try {
+            EntryResult result = parkingService.enter(ParkingType.CAR, "ABCDEF");
+
+            assertEquals(EntryResult.Status.ENTERED, result.getStatus());
+            assertEquals(1, result.getParkingSpot().getId());
+            assertTrue(result.isFrequentUser());
+            verifyZeroInteractions(ticketDAO, parkingSpotDAO);
+        } finally {
+            parkingService.setEntryStore(null);
+        }
+    }
+
+    @Test
+    public void enterWhenParkingFull() {
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE)).thenReturn(0);
+
+        EntryResult result = parkingService.enter(ParkingType.CAR, "ABCDEF");
+
+        assertEquals(EntryResult.Status.PARKING_FULL, result.getStatus());
+        assertNull(result.getParkingSpot());
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void enterWithoutRegistrationNumberIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> parkingService.enter(ParkingType.CAR, " "));
+        verifyZeroInteractions(ticketDAO, parkingSpotDAO);
+    }
+
+    @Test
+    public void exitReturnsFareWithoutConsoleIO() {
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+
+        ExitResult result = parkingService.exit("ABCDEF");
+
+        assertEquals(ExitResult.Status.EXITED, result.getStatus());
+        assertEquals(ticket.getPrice(), result.getPrice());
+        assertNotNull(result.getOutTime());
+        assertFalse(result.isFrequentUser());
+        verify(parkingSpotDAO).updateParking(ticket.getParkingSpot());
+        verifyZeroInteractions(inputReaderUtil);
+        assertEquals("", outputStreamCaptor.toString());
+    }
+
+    @Test
+    public void exitOfVehicleNotInParking() {
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(null);
+
+        ExitResult result = parkingService.exit("ABCDEF");
+
+        assertEquals(ExitResult.Status.NOT_IN_PARKING, result.getStatus());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
 }
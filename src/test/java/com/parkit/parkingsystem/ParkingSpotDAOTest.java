@@ -0,0 +1,152 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that concurrent entry gates never get the same parking spot.
+ * The {@code parking} table is simulated in memory behind mocked JDBC objects.
+ */
+public class ParkingSpotDAOTest {
+
+    private static final int GATES = 64;
+    private static final int CAR_SPOTS = 500;
+    private static final int BIKE_SPOTS = 100;
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private AtomicBoolean[] parkingTable;
+    private final ThreadLocal<Integer> claimedParkingNumber = new ThreadLocal<>();
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        parkingTable = new AtomicBoolean[CAR_SPOTS + BIKE_SPOTS + 1];
+        for (int i = 1; i < parkingTable.length; i++) {
+            parkingTable[i] = new AtomicBoolean(true);
+        }
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+
+        PreparedStatement loadStatement = mock(PreparedStatement.class);
+        ResultSet parkingRows = mock(ResultSet.class);
+        AtomicInteger row = new AtomicInteger();
+        when(connection.prepareStatement(DBConstants.GET_PARKING_SPOTS)).thenReturn(loadStatement);
+        when(loadStatement.executeQuery()).thenReturn(parkingRows);
+        when(parkingRows.next()).thenAnswer(invocation -> row.incrementAndGet() < parkingTable.length);
+        when(parkingRows.getInt(1)).thenAnswer(invocation -> row.get());
+        when(parkingRows.getBoolean(2)).thenAnswer(invocation -> parkingTable[row.get()].get());
+        when(parkingRows.getString(3)).thenAnswer(invocation -> row.get() <= CAR_SPOTS ? "CAR" : "BIKE");
+
+        // update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true
+        PreparedStatement claimStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claimStatement);
+        doAnswer(invocation -> {
+            claimedParkingNumber.set(invocation.getArgument(1));
+            return null;
+        }).when(claimStatement).setInt(eq(1), anyInt());
+        when(claimStatement.executeUpdate())
+                .thenAnswer(invocation -> parkingTable[claimedParkingNumber.get()].compareAndSet(true, false) ? 1 : 0);
+
+        // update parking set AVAILABLE = ? where PARKING_NUMBER = ?
+        PreparedStatement updateStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateStatement);
+        when(updateStatement.executeUpdate()).thenReturn(1);
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    private List<Integer> claimConcurrently(ParkingType parkingType, int claimsPerGate) throws Exception {
+        List<Integer> claimed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+        try {
+            for (int gate = 0; gate < GATES; gate++) {
+                gates.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < claimsPerGate; i++) {
+                        int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(parkingType);
+                        if (parkingNumber > 0) {
+                            claimed.add(parkingNumber);
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            gates.shutdown();
+            assertTrue(gates.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        return claimed;
+    }
+
+    @Test
+    public void concurrentGatesNeverGetTheSameSpot() throws Exception {
+        List<Integer> claimed = claimConcurrently(ParkingType.CAR, 5);
+        Set<Integer> distinct = new HashSet<>(claimed);
+
+        assertEquals(GATES * 5, claimed.size());
+        assertEquals(claimed.size(), distinct.size(), "A parking spot was allocated twice");
+        distinct.forEach(parkingNumber -> assertTrue(parkingNumber <= CAR_SPOTS));
+    }
+
+    @Test
+    public void concurrentGatesFillTheLotExactlyOnce() throws Exception {
+        List<Integer> claimed = claimConcurrently(ParkingType.BIKE, 5);
+
+        assertEquals(BIKE_SPOTS, claimed.size());
+        assertEquals(BIKE_SPOTS, new HashSet<>(claimed).size(), "A parking spot was allocated twice");
+        assertEquals(0, parkingSpotDAO.claimNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void spotTakenOutsideTheIndexIsSkipped() {
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        // another process takes spot 1 directly in the database
+        parkingTable[1].set(false);
+
+        assertEquals(2, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(3, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void rolledBackUpdateRestoresThePreviousAvailability() {
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+
+        // spot 1 is already free: rolling back must leave it free
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, true)));
+        }
+
+        assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+}
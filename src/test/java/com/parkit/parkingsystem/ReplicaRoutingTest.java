@@ -0,0 +1,156 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ReplicaRoutingTest {
+
+    private static final long STALENESS_MILLIS = 200;
+
+    private static final List<String> unreachable = new ArrayList<>();
+
+    private static ConnectionPool pool(String url) {
+        return new ConnectionPool(() -> {
+            if (unreachable.contains(url)) {
+                throw new SQLException("Connection refused: " + url);
+            }
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            // tells which database the connection was opened on
+            when(connection.getCatalog()).thenReturn(url);
+            return connection;
+        }, 4, 100, 60_000, 60_000);
+    }
+
+    private static class ReplicatedDataBaseConfig extends DataBaseConfig {
+        private final String url;
+        private final List<String> replicaUrls;
+
+        private ReplicatedDataBaseConfig(String url, String... replicaUrls) {
+            this.url = url;
+            this.replicaUrls = Arrays.asList(replicaUrls);
+        }
+
+        @Override
+        protected String getUrl() {
+            return url;
+        }
+
+        @Override
+        protected ConnectionPool createPool() {
+            return pool(url);
+        }
+
+        @Override
+        protected ConnectionPool createReplicaPool(String replicaUrl) {
+            return pool(replicaUrl);
+        }
+
+        @Override
+        protected List<String> getReplicaUrls() {
+            return replicaUrls;
+        }
+
+        @Override
+        protected long getReplicaStalenessMillis() {
+            return STALENESS_MILLIS;
+        }
+    }
+
+    private final DataBaseConfig dataBaseConfig = new ReplicatedDataBaseConfig("jdbc:test:primary",
+            "jdbc:test:replica-1", "jdbc:test:replica-2");
+
+    @BeforeEach
+    private void setUpPerTest() {
+        DataBaseConfig.closePools();
+        unreachable.clear();
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        DataBaseConfig.closePools();
+    }
+
+    /**
+     * @return the URL of the database the connection was opened on.
+     */
+    private static String read(DataBaseConfig dataBaseConfig, String vehicleRegNumber) throws Exception {
+        Connection connection = dataBaseConfig.getReadConnection(vehicleRegNumber);
+        try {
+            return connection.getCatalog();
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+        }
+    }
+
+    @Test
+    public void readsAreSpreadOverTheReplicas() throws Exception {
+        assertEquals(2, dataBaseConfig.getReplicaCount());
+        assertEquals("jdbc:test:replica-1", read(dataBaseConfig, "ABCDEF"));
+        assertEquals("jdbc:test:replica-2", read(dataBaseConfig, "ABCDEF"));
+        assertEquals("jdbc:test:replica-1", read(dataBaseConfig, null));
+    }
+
+    @Test
+    public void readsGoToThePrimaryWithoutReplicas() throws Exception {
+        DataBaseConfig primaryOnly = new ReplicatedDataBaseConfig("jdbc:test:primary-only");
+
+        assertEquals(0, primaryOnly.getReplicaCount());
+        assertEquals("jdbc:test:primary-only", read(primaryOnly, "ABCDEF"));
+    }
+
+    @Test
+    public void recentlyWrittenVehicleIsReadFromThePrimary() throws Exception {
+        dataBaseConfig.recordWrite("ABCDEF");
+
+        assertEquals("jdbc:test:primary", read(dataBaseConfig, "ABCDEF"));
+        assertTrue(read(dataBaseConfig, "GHIJKL").startsWith("jdbc:test:replica"));
+
+        Thread.sleep(STALENESS_MILLIS + 50);
+
+        assertTrue(read(dataBaseConfig, "ABCDEF").startsWith("jdbc:test:replica"));
+    }
+
+    @Test
+    public void writesInAUnitOfWorkCountOnceCommitted() throws Exception {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            Connection connection = dataBaseConfig.getConnection();
+            dataBaseConfig.recordWrite("ABCDEF");
+
+            // the unit of work reads its own writes
+            assertSame(connection, dataBaseConfig.getReadConnection("GHIJKL"));
+            unitOfWork.commit();
+        }
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            dataBaseConfig.recordWrite("GHIJKL");
+            // rolled back: nothing was written
+        }
+
+        assertEquals("jdbc:test:primary", read(dataBaseConfig, "ABCDEF"));
+        assertTrue(read(dataBaseConfig, "GHIJKL").startsWith("jdbc:test:replica"));
+    }
+
+    @Test
+    public void unreachableReplicaFallsBackToThePrimary() throws Exception {
+        unreachable.add("jdbc:test:replica-1");
+
+        assertEquals("jdbc:test:primary", read(dataBaseConfig, "ABCDEF"));
+        assertEquals("jdbc:test:replica-2", read(dataBaseConfig, "ABCDEF"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.SchemaMigrator.Migration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+public class SchemaMigratorTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private Statement statement;
+    private ResultSet lockResult;
+    private PreparedStatement saveVersion;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+
+        PreparedStatement getLock = mock(PreparedStatement.class);
+        lockResult = mock(ResultSet.class);
+        when(connection.prepareStatement(startsWith("select GET_LOCK"))).thenReturn(getLock);
+        when(getLock.executeQuery()).thenReturn(lockResult);
+        when(lockResult.next()).thenReturn(true);
+
+        // no migration applied yet
+        PreparedStatement getAppliedVersions = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("select VERSION"))).thenReturn(getAppliedVersions);
+        when(getAppliedVersions.executeQuery()).thenReturn(mock(ResultSet.class));
+
+        saveVersion = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("insert into schema_version"))).thenReturn(saveVersion);
+    }
+
+    @Test
+    public void migrationsAreListedInVersionOrder() throws Exception {
+        List<Migration> migrations = SchemaMigrator.getMigrations();
+
+        assertFalse(migrations.isEmpty());
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).getVersion());
+            assertFalse(migrations.get(i).getStatements().isEmpty());
+        }
+    }
+
+    @Test
+    public void scriptIsSplitIntoStatementsWithoutComments() {
+        Migration migration = new Migration(1, "test", "-- first index\ncreate index A on ticket(ID);\n\n"
+                + "create index B\n on parking(TYPE);\n");
+
+        List<String> statements = migration.getStatements();
+
+        assertEquals(2, statements.size());
+        assertEquals("create index A on ticket(ID)", statements.get(0));
+        assertEquals("create index B\n on parking(TYPE)", statements.get(1));
+    }
+
+    @Test
+    public void delimiterCommandKeepsRoutineBodyInOneStatement() {
+        Migration migration = new Migration(1, "test", "DELIMITER //\ncreate procedure P()\nbegin\n"
+                + "    -- two statements\n    select 1;\n    select 2;\nend //\nDELIMITER ;\ncreate index A on ticket(ID);\n");
+
+        List<String> statements = migration.getStatements();
+
+        assertEquals(2, statements.size());
+        assertEquals("create procedure P()\nbegin\n    select 1;\n    select 2;\nend", statements.get(0));
+        assertEquals("create index A on ticket(ID)", statements.get(1));
+    }
+
+    @Test
+    public void checksumChangesWithTheScript() {
+        Migration migration = new Migration(1, "test", "create index A on ticket(ID);");
+        Migration sameMigration = new Migration(1, "test", "create index A on ticket(ID);");
+        Migration modifiedMigration = new Migration(1, "test", "create index A on ticket(PRICE);");
+
+        assertEquals(migration.getChecksum(), sameMigration.getChecksum());
+        assertNotEquals(migration.getChecksum(), modifiedMigration.getChecksum());
+    }
+
+    @Test
+    public void lockNotGrantedStopsTheMigration() throws Exception {
+        // GET_LOCK returns 0 when another instance held the lock until the timeout
+        when(lockResult.getInt(1)).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> new SchemaMigrator(dataBaseConfig).migrate());
+
+        verify(statement, never()).execute(anyString());
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void lockReleaseErrorDoesNotHideTheMigrationFailure() throws Exception {
+        when(lockResult.getInt(1)).thenReturn(1);
+        when(statement.execute(startsWith("create table if not exists schema_version"))).thenThrow(new SQLException("disk full"));
+        when(statement.execute(startsWith("select RELEASE_LOCK"))).thenThrow(new SQLException("connection lost"));
+
+        SQLException failure = assertThrows(SQLException.class, () -> new SchemaMigrator(dataBaseConfig).migrate());
+
+        assertEquals("disk full", failure.getMessage());
+        assertEquals(1, failure.getSuppressed().length);
+        assertEquals("connection lost", failure.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void migrationStoppedHalfwayIsResumed() throws Exception {
+        when(lockResult.getInt(1)).thenReturn(1);
+        // the columns of a migration stopped halfway are already there
+        when(statement.execute(contains("add column"))).thenThrow(new SQLException("Duplicate column name", "42S21", 1060));
+
+        int migrations = SchemaMigrator.getMigrations().size();
+
+        assertEquals(migrations, new SchemaMigrator(dataBaseConfig).migrate());
+        verify(saveVersion, times(migrations)).executeUpdate();
+    }
+}
@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.allocation.SpotAllocator;
+import com.parkit.parkingsystem.allocation.StandardAllocationStrategy;
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SpotAllocatorTest {
+
+    private static final int GATES = 8;
+    private static final int CAR_SPOTS_PER_ZONE = 100;
+
+    private SpotAvailabilityIndex spots;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        // car spots 1-2 in zone 0, 3-4 in zone 1, 5-6 in zone 2; bike spot 7 in zone 0
+        spots = new SpotAvailabilityIndex(7);
+        for (int number = 1; number <= 6; number++) {
+            spots.addSpot(number, ParkingType.CAR, (number - 1) / 2, true);
+        }
+        spots.addSpot(7, ParkingType.BIKE, 0, true);
+    }
+
+    @Test
+    public void lowestNumberTakesTheLowestFreeSpot() {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.LOWEST_NUMBER);
+
+        assertEquals(1, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(2, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(3, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(7, allocator.claim(ParkingType.BIKE, 2));
+        assertEquals(0, allocator.claim(ParkingType.BIKE, 2));
+    }
+
+    @Test
+    public void nearestToEntranceFillsTheZoneOfTheEntranceFirst() {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.NEAREST_TO_ENTRANCE);
+
+        assertEquals(5, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(6, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(3, allocator.claim(ParkingType.CAR, 2));
+        assertEquals(1, allocator.claim(ParkingType.CAR, 0));
+    }
+
+    @Test
+    public void unknownEntranceCountsAsZoneZero() {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.NEAREST_TO_ENTRANCE);
+
+        assertEquals(1, allocator.claim(ParkingType.CAR, 42));
+    }
+
+    @Test
+    public void roundRobinTakesEachZoneInTurn() {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.ROUND_ROBIN);
+
+        assertEquals(1, allocator.claim(ParkingType.CAR, 0));
+        assertEquals(3, allocator.claim(ParkingType.CAR, 0));
+        assertEquals(5, allocator.claim(ParkingType.CAR, 0));
+        assertEquals(2, allocator.claim(ParkingType.CAR, 0));
+    }
+
+    @Test
+    public void leastRecentlyUsedTakesTheSpotFreedLongestAgo() throws InterruptedException {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.LEAST_RECENTLY_USED);
+        assertEquals(1, allocator.claim(ParkingType.CAR, 0));
+        assertEquals(2, allocator.claim(ParkingType.CAR, 0));
+
+        spots.setAvailable(2, true);
+        Thread.sleep(5);
+        spots.setAvailable(1, true);
+
+        assertEquals(2, allocator.claim(ParkingType.CAR, 0));
+        assertEquals(1, allocator.claim(ParkingType.CAR, 0));
+        // zone 0 is full: the nearest zone next
+        assertEquals(3, allocator.claim(ParkingType.CAR, 0));
+    }
+
+    @Test
+    public void spotTakenOutsideTheAllocatorIsSkipped() {
+        SpotAllocator allocator = new SpotAllocator(spots, StandardAllocationStrategy.LOWEST_NUMBER);
+        spots.setAvailable(1, false);
+
+        assertEquals(2, allocator.claim(ParkingType.CAR, 0));
+        assertFalse(spots.isAvailable(2));
+    }
+
+    @Test
+    public void concurrentGatesNeverGetTheSameSpot() throws Exception {
+        int zones = 4;
+        SpotAvailabilityIndex lot = new SpotAvailabilityIndex(zones * CAR_SPOTS_PER_ZONE);
+        for (int number = 1; number <= zones * CAR_SPOTS_PER_ZONE; number++) {
+            lot.addSpot(number, ParkingType.CAR, (number - 1) / CAR_SPOTS_PER_ZONE, true);
+        }
+        SpotAllocator allocator = new SpotAllocator(lot, StandardAllocationStrategy.NEAREST_TO_ENTRANCE);
+        List<Integer> claimed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+        try {
+            for (int gate = 0; gate < GATES; gate++) {
+                int entrance = gate % zones;
+                gates.submit(() -> {
+                    start.await();
+                    int parkingNumber;
+                    while ((parkingNumber = allocator.claim(ParkingType.CAR, entrance)) != 0) {
+                        claimed.add(parkingNumber);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            gates.shutdown();
+            assertTrue(gates.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(zones * CAR_SPOTS_PER_ZONE, claimed.size());
+        assertEquals(claimed.size(), new HashSet<>(claimed).size(), "A parking spot was allocated twice");
+    }
+}
@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpotAvailabilityIndexTest {
+
+    private SpotAvailabilityIndex index;
+
+    @BeforeEach
+    private void setUpPerTest() {
+        // same layout as Data.sql: 1-3 are car spots, 4-5 are bike spots
+        index = new SpotAvailabilityIndex(5);
+        index.addSpot(1, ParkingType.CAR, true);
+        index.addSpot(2, ParkingType.CAR, true);
+        index.addSpot(3, ParkingType.CAR, true);
+        index.addSpot(4, ParkingType.BIKE, true);
+        index.addSpot(5, ParkingType.BIKE, true);
+    }
+
+    @Test
+    public void findsLowestAvailableSpotOfEachType() {
+        assertEquals(1, index.findFirstAvailable(ParkingType.CAR));
+        assertEquals(4, index.findFirstAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void skipsTakenSpots() {
+        index.setAvailable(1, false);
+        index.setAvailable(2, false);
+
+        assertEquals(3, index.findFirstAvailable(ParkingType.CAR));
+        assertEquals(1, index.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void returnsZeroWhenTypeIsFull() {
+        index.setAvailable(4, false);
+        index.setAvailable(5, false);
+
+        assertEquals(0, index.findFirstAvailable(ParkingType.BIKE));
+        assertEquals(1, index.findFirstAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void freedSpotBecomesAvailableAgain() {
+        index.setAvailable(1, false);
+        index.setAvailable(1, true);
+
+        assertTrue(index.isAvailable(1));
+        assertEquals(1, index.findFirstAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void findsSpotsBeyondTheFirstWord() {
+        SpotAvailabilityIndex largeIndex = new SpotAvailabilityIndex(200);
+        largeIndex.addSpot(130, ParkingType.CAR, true);
+        largeIndex.addSpot(199, ParkingType.CAR, true);
+
+        assertEquals(130, largeIndex.findFirstAvailable(ParkingType.CAR));
+        largeIndex.setAvailable(130, false);
+        assertEquals(199, largeIndex.findFirstAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void unknownSpotIsIgnored() {
+        assertFalse(index.setAvailable(6, false));
+        assertFalse(index.isAvailable(6));
+    }
+}
@@ -0,0 +1,175 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.tariff.TariffTable;
+import com.parkit.parkingsystem.tariff.Tariffs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TariffTableTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    @AfterEach
+    private void tearDown() {
+        Tariffs.install(TariffTable.fromFareConstants());
+    }
+
+    private static Properties flatTariff() {
+        Properties properties = new Properties();
+        properties.setProperty("free.parking.hours", "0.5");
+        properties.setProperty("frequent.user.reduction.rate", "0.95");
+        properties.setProperty("CAR.rate.per.hour", "1.5");
+        properties.setProperty("BIKE.rate.per.hour", "1.0");
+        return properties;
+    }
+
+    private static long at(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(PARIS).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void flatTariffIsNotCompiledIntoBands() {
+        TariffTable tariffTable = TariffTable.compile(flatTariff(), PARIS);
+
+        assertTrue(tariffTable.isFlat(ParkingType.CAR));
+        assertEquals(225, tariffTable.priceInCents(at("2024-06-03T10:00"), at("2024-06-03T11:30"), ParkingType.CAR, false));
+        assertEquals(0, tariffTable.priceInCents(at("2024-06-03T10:00"), at("2024-06-03T10:29"), ParkingType.CAR, false));
+    }
+
+    @Test
+    public void timeOfDayBandsSpanningMidnight() {
+        Properties properties = flatTariff();
+        properties.setProperty("CAR.band.night", "20:00-08:00 0.5");
+        TariffTable tariffTable = TariffTable.compile(properties, PARIS);
+
+        assertFalse(tariffTable.isFlat(ParkingType.CAR));
+        assertTrue(tariffTable.isFlat(ParkingType.BIKE));
+        // 2 hours at 1.5 then 2 hours at 0.5
+        assertEquals(400, tariffTable.priceInCents(at("2024-06-03T18:00"), at("2024-06-03T22:00"), ParkingType.CAR, false));
+        // 22:00 to 07:00 the next day, all at night rate
+        assertEquals(450, tariffTable.priceInCents(at("2024-06-03T22:00"), at("2024-06-04T07:00"), ParkingType.CAR, false));
+        assertEquals(380, tariffTable.priceInCents(at("2024-06-03T22:00"), at("2024-06-04T06:00"), ParkingType.CAR, true));
+    }
+
+    @Test
+    public void dailyCapAppliesToEachCalendarDay() {
+        Properties properties = flatTariff();
+        properties.setProperty("CAR.band.night", "20:00-08:00 0.5");
+        properties.setProperty("CAR.daily.cap", "12");
+        TariffTable tariffTable = TariffTable.compile(properties, PARIS);
+
+        // a full day costs 12 hours at 0.5 and 12 hours at 1.5 = 24, capped to 12
+        assertEquals(1200, tariffTable.priceInCents(at("2024-06-03T00:00"), at("2024-06-04T00:00"), ParkingType.CAR, false));
+        // first day from 19:00: 1.5 + 2 = 3.5, then 10 full days, then 00:00 to 09:00: 4 + 1.5 = 5.5
+        assertEquals(350 + 10 * 1200 + 550,
+                tariffTable.priceInCents(at("2024-06-03T19:00"), at("2024-06-14T09:00"), ParkingType.CAR, false));
+    }
+
+    @Test
+    public void staysAcrossDaylightSavingChangesAreBilledForTheTimeSpent() {
+        Properties properties = flatTariff();
+        properties.setProperty("CAR.band.night", "20:00-08:00 0.75");
+        TariffTable tariffTable = TariffTable.compile(properties, PARIS);
+        long halfHour = 30 * 60 * 1000L;
+        long hour = 2 * halfHour;
+
+        // clocks go back at 03:00: 02:50 summer time to 02:20 winter time is 30 minutes at night rate
+        long beforeFallBack = at("2026-10-25T02:50");
+        assertEquals(38, tariffTable.priceInCents(beforeFallBack, beforeFallBack + halfHour, ParkingType.CAR, false));
+        // clocks go forward at 02:00: 01:00 to 03:00 local is one hour
+        long beforeSpringForward = at("2026-03-29T01:00");
+        assertEquals(75, tariffTable.priceInCents(beforeSpringForward, beforeSpringForward + hour, ParkingType.CAR, false));
+        assertEquals(at("2026-03-29T03:00"), beforeSpringForward + hour);
+    }
+
+    @Test
+    public void daysOfTwentyFiveAndTwentyThreeHoursAreCappedAsCalendarDays() {
+        Properties properties = flatTariff();
+        properties.setProperty("CAR.band.night", "20:00-08:00 0.5");
+        TariffTable tariffTable = TariffTable.compile(properties, PARIS);
+
+        // 12 hours at 1.5 and 13 hours at 0.5
+        assertEquals(2450, tariffTable.priceInCents(at("2026-10-25T00:00"), at("2026-10-26T00:00"), ParkingType.CAR, false));
+        // 12 hours at 1.5 and 11 hours at 0.5
+        assertEquals(2350, tariffTable.priceInCents(at("2026-03-29T00:00"), at("2026-03-30T00:00"), ParkingType.CAR, false));
+        // 14 on the first afternoon, 24.5 and 24 for the full days, 10 on the last morning
+        assertEquals(7250, tariffTable.priceInCents(at("2026-10-24T12:00"), at("2026-10-27T12:00"), ParkingType.CAR, false));
+
+        properties.setProperty("CAR.daily.cap", "24.2");
+        TariffTable capped = TariffTable.compile(properties, PARIS);
+        assertEquals(1400 + 2420 + 2400 + 1000,
+                capped.priceInCents(at("2026-10-24T12:00"), at("2026-10-27T12:00"), ParkingType.CAR, false));
+    }
+
+    @Test
+    public void invalidTariffsAreRejected() {
+        Properties missingRate = flatTariff();
+        missingRate.remove("BIKE.rate.per.hour");
+        Properties invalidBand = flatTariff();
+        invalidBand.setProperty("CAR.band.night", "20h-8h 0.5");
+        Properties negativeRate = flatTariff();
+        negativeRate.setProperty("CAR.rate.per.hour", "-1");
+        Properties unknownProperty = flatTariff();
+        unknownProperty.setProperty("TRUCK.rate.per.hour", "3");
+
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(missingRate, PARIS));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(invalidBand, PARIS));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(negativeRate, PARIS));
+        assertThrows(IllegalArgumentException.class, () -> TariffTable.compile(unknownProperty, PARIS));
+    }
+
+    @Test
+    public void tariffIsSwappedWhilePricing() throws Exception {
+        Properties doubled = flatTariff();
+        doubled.setProperty("CAR.rate.per.hour", "3.0");
+        TariffTable flat = TariffTable.compile(flatTariff(), PARIS);
+        TariffTable expensive = TariffTable.compile(doubled, PARIS);
+        long inTime = at("2024-06-03T10:00");
+        long outTime = at("2024-06-03T12:00");
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Long> unexpected = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> pricers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread pricer = new Thread(() -> {
+                started.countDown();
+                while (running.get()) {
+                    long cents = fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.CAR, false);
+                    if (cents != 300 && cents != 600) {
+                        unexpected.set(cents);
+                    }
+                }
+            });
+            pricer.start();
+            pricers.add(pricer);
+        }
+        started.await();
+        for (int swap = 0; swap < 10_000; swap++) {
+            Tariffs.install(swap % 2 == 0 ? expensive : flat);
+        }
+        running.set(false);
+        for (Thread pricer : pricers) {
+            pricer.join();
+        }
+
+        assertNull(unexpected.get());
+        assertEquals(300, fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.CAR, false));
+    }
+}
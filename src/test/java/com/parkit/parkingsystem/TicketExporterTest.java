@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketPage;
+import com.parkit.parkingsystem.service.TicketExporter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TicketExporterTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long START = 1_700_000_000_000L;
+
+    private final List<Ticket> tickets = new ArrayList<>();
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        // seven tickets, two of them entering at the same time
+        for (int id = 1; id <= 7; id++) {
+            Ticket ticket = new Ticket();
+            ticket.setId(id);
+            ticket.setParkingSpot(new ParkingSpot(id % 2 == 0 ? 4 : 1,
+                    id % 2 == 0 ? ParkingType.BIKE : ParkingType.CAR, false));
+            ticket.setVehicleRegNumber("CAR" + id);
+            ticket.setInTimeMillis(START + (id == 3 ? 2 : id) * HOUR);
+            ticket.setOutTimeMillis(id == 7 ? Ticket.NO_TIME : START + (id + 1) * HOUR);
+            ticket.setPrice(id * 1.5);
+            tickets.add(ticket);
+        }
+        tickets.sort((a, b) -> a.getInTimeMillis() != b.getInTimeMillis()
+                ? Long.compare(a.getInTimeMillis(), b.getInTimeMillis()) : Integer.compare(a.getId(), b.getId()));
+
+        ticketDAO = mock(TicketDAO.class);
+        when(ticketDAO.readTicketPage(anyLong(), anyInt(), anyLong(), any(TicketPage.class))).thenAnswer(invocation -> {
+            long afterInTime = invocation.getArgument(0);
+            int afterId = invocation.getArgument(1);
+            long toInTime = invocation.getArgument(2);
+            TicketPage page = invocation.getArgument(3);
+            page.clear();
+            for (Ticket ticket : tickets) {
+                boolean after = ticket.getInTimeMillis() > afterInTime
+                        || (ticket.getInTimeMillis() == afterInTime && ticket.getId() > afterId);
+                if (after && ticket.getInTimeMillis() < toInTime && page.size() < page.capacity()) {
+                    page.add(ticket.getId(), ticket.getParkingSpot().getId(), ticket.getParkingSpot().getParkingType(),
+                            ticket.getVehicleRegNumber(), Math.round(ticket.getPrice() * 100),
+                            ticket.getInTimeMillis(), ticket.getOutTimeMillis());
+                }
+            }
+            return page.size();
+        });
+    }
+
+    @Test
+    public void csvExportReadsTheRangePageByPage() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = new TicketExporter(ticketDAO, 2).export(START + 2 * HOUR, START + 7 * HOUR, TicketExporter.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(5, exported);
+        assertEquals(6, lines.length);
+        assertEquals(TicketExporter.CSV_HEADER, lines[0]);
+        assertEquals("2,4,BIKE,CAR2,3.0," + new Timestamp(START + 2 * HOUR) + "," + new Timestamp(START + 3 * HOUR), lines[1]);
+        assertTrue(lines[2].startsWith("3,1,CAR,CAR3,4.5,"));
+        assertTrue(lines[5].startsWith("6,4,BIKE,CAR6,"));
+        // each page starts after the last ticket of the previous one
+        verify(ticketDAO).readTicketPage(eq(START + 2 * HOUR), eq(0), eq(START + 7 * HOUR), any(TicketPage.class));
+        verify(ticketDAO).readTicketPage(eq(START + 2 * HOUR), eq(3), eq(START + 7 * HOUR), any(TicketPage.class));
+        verify(ticketDAO).readTicketPage(eq(START + 5 * HOUR), eq(5), eq(START + 7 * HOUR), any(TicketPage.class));
+        verify(ticketDAO, times(3)).readTicketPage(anyLong(), anyInt(), anyLong(), any(TicketPage.class));
+    }
+
+    @Test
+    public void binaryExportHoldsTheTicketsInColumns() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = new TicketExporter(ticketDAO, 4).export(START, START + 100 * HOUR, TicketExporter.Format.BINARY, out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(7, exported);
+        assertEquals(TicketExporter.BINARY_MAGIC, in.readInt());
+        assertEquals(TicketExporter.BINARY_VERSION, in.readInt());
+        List<String> vehicleRegNumbers = new ArrayList<>();
+        List<Long> outTimes = new ArrayList<>();
+        int rows;
+        while ((rows = in.readInt()) > 0) {
+            int[] ids = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                ids[row] = in.readInt();
+            }
+            for (int row = 0; row < rows; row++) {
+                assertEquals(ids[row] % 2 == 0 ? 4 : 1, in.readInt());
+            }
+            for (int row = 0; row < rows; row++) {
+                assertEquals(ids[row] % 2 == 0 ? ParkingType.BIKE.ordinal() : ParkingType.CAR.ordinal(), in.readByte());
+            }
+            for (int row = 0; row < rows; row++) {
+                byte[] vehicleRegNumber = new byte[in.readUnsignedByte()];
+                in.readFully(vehicleRegNumber);
+                vehicleRegNumbers.add(new String(vehicleRegNumber, StandardCharsets.UTF_8));
+            }
+            for (int row = 0; row < rows; row++) {
+                assertEquals(ids[row] * 150L, in.readLong());
+            }
+            for (int row = 0; row < 2 * rows; row++) {
+                long time = in.readLong();
+                if (row >= rows) {
+                    outTimes.add(time);
+                }
+            }
+        }
+        assertEquals(7, in.readLong());
+        assertEquals(-1, in.read());
+        assertEquals(List.of("CAR1", "CAR2", "CAR3", "CAR4", "CAR5", "CAR6", "CAR7"), vehicleRegNumbers);
+        assertEquals(Ticket.NO_TIME, (long) outTimes.get(6));
+    }
+
+    @Test
+    public void readErrorFailsTheExport() throws Exception {
+        when(ticketDAO.readTicketPage(eq(START + 2 * HOUR), eq(2), anyLong(), any(TicketPage.class)))
+                .thenThrow(new SQLException("Connection lost"));
+
+        TicketExporter exporter = new TicketExporter(ticketDAO, 2);
+
+        SQLException e = assertThrows(SQLException.class,
+                () -> exporter.export(START, START + 100 * HOUR, TicketExporter.Format.CSV, new ByteArrayOutputStream()));
+        assertEquals("Connection lost", e.getMessage());
+    }
+}
@@ -0,0 +1,180 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.DurabilityPolicy;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketWriteBehind;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.store.SpotStore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketWriteBehindTest {
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement insertStatement;
+    @Mock
+    private PreparedStatement updateStatement;
+
+    private TicketWriteBehind writeBehind;
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        lenient().when(dataBaseConfig.getConnection()).thenReturn(connection);
+        lenient().when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(insertStatement);
+        lenient().when(connection.prepareStatement(DBConstants.UPDATE_OPEN_TICKET)).thenReturn(updateStatement);
+    }
+
+    @AfterEach
+    private void tearDown() throws Exception {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    private static Ticket ticket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(Calendar.getInstance());
+        return ticket;
+    }
+
+    @Test
+    public void writesQueuedTogetherAreSentAsOneBatchAndOneCommit() throws Exception {
+        // a long delay, so that the group is only closed by its size
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 60_000);
+
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            written.add(writeBehind.insert(ticket("ABC" + i)));
+        }
+        CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])).join();
+
+        verify(insertStatement, times(10)).addBatch();
+        verify(insertStatement, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
+    @Test
+    public void flushWritesWhatIsQueuedInOrder() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 500, 60_000);
+
+        Ticket exiting = ticket("ABCDEF");
+        writeBehind.insert(exiting);
+        exiting.setOutTime(Calendar.getInstance());
+        writeBehind.update(exiting);
+        writeBehind.flush();
+
+        // the insert batch is sent before the update batch, in the same transaction
+        InOrder inOrder = inOrder(insertStatement, updateStatement, connection);
+        inOrder.verify(insertStatement).executeBatch();
+        inOrder.verify(updateStatement).executeBatch();
+        inOrder.verify(connection).commit();
+        assertEquals(0, writeBehind.getQueuedWrites());
+    }
+
+    @Test
+    public void failedGroupIsRetriedThenReported() throws Exception {
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Deadlock found"));
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 500, 10);
+
+        CompletableFuture<Void> written = writeBehind.insert(ticket("ABCDEF"));
+
+        assertThrows(CompletionException.class, written::join);
+        verify(insertStatement, times(3)).executeBatch();
+        verify(connection, times(3)).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void failedRollbackDoesNotHideTheCause() throws Exception {
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Communications link failure"));
+        doThrow(new SQLException("No operations allowed after connection closed")).when(connection).rollback();
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 500, 10);
+
+        CompletableFuture<Void> written = writeBehind.insert(ticket("ABCDEF"));
+
+        CompletionException e = assertThrows(CompletionException.class, written::join);
+        assertEquals("Communications link failure", e.getCause().getMessage());
+        assertEquals("No operations allowed after connection closed", e.getCause().getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    public void malformedTicketFailsItsGroupButNotTheWriter() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 500, 10);
+        Ticket malformed = ticket("ABCDEF");
+        malformed.setParkingSpot(null);
+
+        CompletableFuture<Void> failed = writeBehind.insert(malformed);
+
+        assertThrows(CompletionException.class, failed::join);
+        verify(connection, times(1)).rollback();
+        writeBehind.insert(ticket("GHIJKL")).join();
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void lostGroupCommitInsertLetsTheVehicleEnterAgain() throws Exception {
+        // every read finds nothing, and every insert fails
+        PreparedStatement query = mock(PreparedStatement.class);
+        when(query.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(connection.prepareStatement(anyString())).thenReturn(query);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(insertStatement);
+        when(insertStatement.executeBatch()).thenThrow(new SQLException("Lock wait timeout exceeded"));
+        SpotStore spotStore = mock(SpotStore.class);
+        when(spotStore.updateParking(any(ParkingSpot.class))).thenReturn(true);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.setDurabilityPolicy(DurabilityPolicy.GROUP_COMMIT);
+        ticketDAO.setSpotStore(spotStore);
+        try {
+            assertFalse(ticketDAO.saveTicket(ticket("ABCDEF")));
+
+            assertFalse(ticketDAO.isVehicleAlreadyInParking("ABCDEF"));
+            verify(spotStore).updateParking(argThat(parkingSpot -> parkingSpot.getId() == 1 && parkingSpot.isAvailable()));
+        } finally {
+            ticketDAO.close();
+        }
+    }
+
+    @Test
+    public void closedWriterRefusesWrites() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 500, 10);
+        writeBehind.close();
+
+        assertThrows(IllegalStateException.class, () -> writeBehind.insert(ticket("ABCDEF")));
+        verify(dataBaseConfig, never()).getConnection();
+        verify(insertStatement, never()).addBatch();
+    }
+}
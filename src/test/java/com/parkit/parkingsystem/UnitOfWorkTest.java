@@ -0,0 +1,136 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UnitOfWorkTest {
+
+    private static final List<Connection> physicalConnections = new ArrayList<>();
+
+    private static DataBaseConfig dataBaseConfig = new DataBaseConfig() {
+        @Override
+        protected String getUrl() {
+            return "jdbc:test:unit-of-work";
+        }
+
+        @Override
+        protected ConnectionPool createPool() {
+            return new ConnectionPool(() -> {
+                Connection connection = mock(Connection.class);
+                when(connection.isValid(anyInt())).thenReturn(true);
+                when(connection.getAutoCommit()).thenReturn(true);
+                physicalConnections.add(connection);
+                return connection;
+            }, 4, 100, 60_000, 60_000);
+        }
+    };
+
+    @BeforeEach
+    private void setUpPerTest() throws Exception {
+        // a new pool for each test, so that each test sees its own physical connections
+        DataBaseConfig.closePools();
+        physicalConnections.clear();
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        DataBaseConfig.closePools();
+    }
+
+    @Test
+    public void daoCallsShareOneConnectionAndOneCommit() throws Exception {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            Connection first = dataBaseConfig.getConnection();
+            dataBaseConfig.closeConnection(first);
+            Connection second = dataBaseConfig.getConnection();
+            dataBaseConfig.closeConnection(second);
+
+            assertSame(first, second);
+            unitOfWork.commit();
+        }
+
+        assertEquals(1, physicalConnections.size());
+        Connection physical = physicalConnections.get(0);
+        verify(physical).setAutoCommit(false);
+        verify(physical, times(1)).commit();
+        verify(physical, never()).rollback();
+        assertFalse(UnitOfWork.isActive());
+    }
+
+    @Test
+    public void closingWithoutCommitRollsBackAndUndoesInMemoryChanges() throws Exception {
+        List<String> undone = new ArrayList<>();
+
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            dataBaseConfig.getConnection();
+            UnitOfWork.onRollback(() -> undone.add("first"));
+            UnitOfWork.onRollback(() -> undone.add("second"));
+        }
+
+        verify(physicalConnections.get(0)).rollback();
+        verify(physicalConnections.get(0), never()).commit();
+        assertEquals(List.of("second", "first"), undone);
+    }
+
+    @Test
+    public void failedStepPreventsCommit() throws Exception {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            dataBaseConfig.getConnection();
+            UnitOfWork.setRollbackOnly();
+
+            assertThrows(SQLException.class, unitOfWork::commit);
+        }
+
+        verify(physicalConnections.get(0)).rollback();
+        verify(physicalConnections.get(0), never()).commit();
+    }
+
+    @Test
+    public void nestedUnitOfWorkJoinsTheOuterOne() throws Exception {
+        try (UnitOfWork outer = UnitOfWork.begin()) {
+            Connection outerConnection = dataBaseConfig.getConnection();
+            try (UnitOfWork inner = UnitOfWork.begin()) {
+                assertSame(outerConnection, dataBaseConfig.getConnection());
+                inner.commit();
+            }
+            verify(physicalConnections.get(0), never()).commit();
+            outer.commit();
+        }
+
+        verify(physicalConnections.get(0), times(1)).commit();
+    }
+
+    @Test
+    public void unitOfWorkWithoutDatabaseAccessBorrowsNothing() throws Exception {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin()) {
+            unitOfWork.commit();
+        }
+
+        assertTrue(physicalConnections.isEmpty());
+    }
+
+    @Test
+    public void rollbackActionsAreIgnoredOutsideAUnitOfWork() {
+        List<String> undone = new ArrayList<>();
+
+        UnitOfWork.onRollback(() -> undone.add("ignored"));
+        UnitOfWork.setRollbackOnly();
+
+        assertTrue(undone.isEmpty());
+        assertFalse(UnitOfWork.isActive());
+    }
+}
@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.cache.VisitCounterCache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class VisitCounterCacheTest {
+
+    private static final long TODAY = 20_000;
+
+    private VisitCounterCache visitCounterCache;
+
+    /**
+     * @return the epoch millis of noon on the day, in the system time zone.
+     */
+    private static long at(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @BeforeEach
+    private void setUpPerTest() {
+        visitCounterCache = new VisitCounterCache(2);
+    }
+
+    @Test
+    public void unknownVehicleIsNotCounted() {
+        assertEquals(-1, visitCounterCache.count("ABCDEF", TODAY));
+    }
+
+    @Test
+    public void countsLoadedVisitsWithinTheWindow() {
+        visitCounterCache.load("ABCDEF", TODAY, Arrays.asList(at(TODAY), at(TODAY - 1), at(TODAY - 30), at(TODAY - 31)));
+
+        assertEquals(3, visitCounterCache.count("ABCDEF", TODAY));
+    }
+
+    @Test
+    public void recordedVisitIsCounted() {
+        visitCounterCache.load("ABCDEF", TODAY, Collections.emptyList());
+
+        visitCounterCache.recordVisit("ABCDEF", at(TODAY));
+        visitCounterCache.recordVisit("GHIJKL", at(TODAY));
+
+        assertEquals(1, visitCounterCache.count("ABCDEF", TODAY));
+        assertEquals(-1, visitCounterCache.count("GHIJKL", TODAY));
+    }
+
+    @Test
+    public void oldVisitsExpireAsDaysPass() {
+        visitCounterCache.load("ABCDEF", TODAY, Arrays.asList(at(TODAY - 10), at(TODAY)));
+
+        assertEquals(2, visitCounterCache.count("ABCDEF", TODAY + 20));
+        assertEquals(1, visitCounterCache.count("ABCDEF", TODAY + 21));
+        assertEquals(0, visitCounterCache.count("ABCDEF", TODAY + 100));
+    }
+
+    @Test
+    public void leastRecentlyUsedVehicleIsEvicted() {
+        visitCounterCache.load("AAAAAA", TODAY, Collections.singletonList(at(TODAY)));
+        visitCounterCache.load("BBBBBB", TODAY, Collections.singletonList(at(TODAY)));
+        visitCounterCache.count("AAAAAA", TODAY);
+
+        visitCounterCache.load("CCCCCC", TODAY, Collections.singletonList(at(TODAY)));
+
+        assertEquals(2, visitCounterCache.size());
+        assertEquals(1, visitCounterCache.count("AAAAAA", TODAY));
+        assertEquals(-1, visitCounterCache.count("BBBBBB", TODAY));
+    }
+
+    @Test
+    public void exportedVisitsCountTheSameOnceImported() {
+        visitCounterCache.load("AAAAAA", TODAY, Arrays.asList(at(TODAY), at(TODAY), at(TODAY - 30)));
+        visitCounterCache.load("BBBBBB", TODAY, Collections.singletonList(at(TODAY - 5)));
+        visitCounterCache.count("AAAAAA", TODAY);
+
+        Map<String, int[]> visits = visitCounterCache.exportVisits(TODAY);
+        VisitCounterCache restarted = new VisitCounterCache(2);
+        visits.forEach((vehicleRegNumber, visitsPerDay) -> restarted.importVisits(vehicleRegNumber, TODAY, visitsPerDay));
+        restarted.load("CCCCCC", TODAY, Collections.emptyList());
+
+        assertEquals(Arrays.asList("BBBBBB", "AAAAAA"), Arrays.asList(visits.keySet().toArray()));
+        assertEquals(3, restarted.count("AAAAAA", TODAY));
+        assertEquals(2, restarted.count("AAAAAA", TODAY + 1));
+        assertEquals(-1, restarted.count("BBBBBB", TODAY));
+    }
+
+    @Test
+    public void visitRecordedBeforeLoadIsCountedOnce() {
+        visitCounterCache.recordVisit("ABCDEF", at(TODAY));
+        visitCounterCache.recordVisit("GHIJKL", at(TODAY));
+        assertEquals(-1, visitCounterCache.count("ABCDEF", TODAY));
+
+        // the database had committed the visit of ABCDEF, with its in-time rounded to the second, not that of GHIJKL
+        visitCounterCache.load("ABCDEF", TODAY, Arrays.asList(at(TODAY - 1), at(TODAY) + 400));
+        visitCounterCache.load("GHIJKL", TODAY, Collections.singletonList(at(TODAY - 1)));
+
+        assertEquals(2, visitCounterCache.count("ABCDEF", TODAY));
+        assertEquals(2, visitCounterCache.count("GHIJKL", TODAY));
+    }
+
+    @Test
+    public void laterLoadDoesNotReplaceCountedVisits() {
+        visitCounterCache.load("ABCDEF", TODAY, Collections.emptyList());
+        visitCounterCache.recordVisit("ABCDEF", at(TODAY));
+
+        // read from the database before the visit was saved
+        visitCounterCache.load("ABCDEF", TODAY, Collections.emptyList());
+
+        assertEquals(1, visitCounterCache.count("ABCDEF", TODAY));
+    }
+}
@@ -1,14 +1,19 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.config.SchemaMigrator;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.CacheSnapshotter;
+import com.parkit.parkingsystem.dao.ParkingEntryDAO;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.EntryResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.store.SpotStore;
 import com.parkit.parkingsystem.util.FormatUtil;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import com.parkit.parkingsystem.integration.service.TestDataInsertionService;
@@ -25,13 +30,22 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 /**
  * Integration tests for database interactions.
@@ -58,6 +72,7 @@ public class ParkingDataBaseIT {
         ticketDAO = new TicketDAO();
         parkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
         ticketDAO.dataBaseConfig = dataBaseTestConfig;
+        new SchemaMigrator(dataBaseTestConfig).migrate();
         dataBasePrepareService = new DataBasePrepareService();
         testDataInsertionService = new TestDataInsertionService();
     }
@@ -66,6 +81,9 @@ public class ParkingDataBaseIT {
     private void setUpPerTest() throws Exception {
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn(VEHICLE_REG_NUMBER);
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadActiveTicketIndex();
+        ticketDAO.clearVisitCounters();
     }
 
     @AfterAll
@@ -100,7 +118,7 @@ public class ParkingDataBaseIT {
         parkingService.processIncomingVehicle();
 
         Ticket ticket = ticketDAO.getTicket(VEHICLE_REG_NUMBER);
-        verify(spyParkingSpotDAO).updateParking(any(ParkingSpot.class));
+        verify(spyParkingSpotDAO).claimNextAvailableSlot(ParkingType.CAR, SpotStore.DEFAULT_ENTRANCE);
 
         assertEquals(false, parkingSpot.isAvailable(), "Parking spot should be marked as unavailable");
         assertNotNull(ticket, "Ticket should exist in the database");
@@ -109,12 +127,107 @@ public class ParkingDataBaseIT {
         assertNull(ticket.getOutTime(), "Out-time should not be recorded yet");
     }
 
+    // The ENTER_VEHICLE procedure claims the lowest free spot and saves the ticket in one call.
+    @Test
+    public void testParkingACarInOneCall() {
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        parkingService.setEntryStore(new ParkingEntryDAO(parkingSpotDAO, ticketDAO));
+
+        EntryResult result = parkingService.enter(ParkingType.CAR, VEHICLE_REG_NUMBER);
+        EntryResult secondEntry = parkingService.enter(ParkingType.CAR, VEHICLE_REG_NUMBER);
+
+        assertEquals(EntryResult.Status.ENTERED, result.getStatus());
+        assertEquals(1, result.getParkingSpot().getId());
+        assertEquals(EntryResult.Status.ALREADY_IN_PARKING, secondEntry.getStatus());
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR), "Spot 1 should be marked as unavailable");
+        Ticket ticket = ticketDAO.getTicket(VEHICLE_REG_NUMBER);
+        assertNotNull(ticket, "Ticket should exist in the database");
+        assertEquals(1, ticket.getParkingSpot().getId());
+        assertNull(ticket.getOutTime(), "Out-time should not be recorded yet");
+        assertEquals(1, ticketDAO.getNbTicket(VEHICLE_REG_NUMBER));
+    }
+
+    // Gates entering at the same time never fail, even when their duplicate checks lock the same index gap.
+    @Test
+    public void testConcurrentEntriesInOneCall() throws Exception {
+        ParkingEntryDAO parkingEntryDAO = new ParkingEntryDAO(parkingSpotDAO, ticketDAO);
+        int gates = 8;
+        for (int round = 0; round < 5; round++) {
+            dataBasePrepareService.clearDataBaseEntries();
+            parkingSpotDAO.loadAvailabilityIndex();
+            ticketDAO.loadActiveTicketIndex();
+            List<EntryResult> samePlate = enterConcurrently(parkingEntryDAO, gates, gate -> VEHICLE_REG_NUMBER);
+            List<EntryResult> distinctPlates = enterConcurrently(parkingEntryDAO, gates, gate -> "GATE" + gate);
+
+            assertEquals(1, countStatus(samePlate, EntryResult.Status.ENTERED), "The vehicle should enter once");
+            assertEquals(gates - 1, countStatus(samePlate, EntryResult.Status.ALREADY_IN_PARKING));
+            // the two car spots left
+            assertEquals(2, countStatus(distinctPlates, EntryResult.Status.ENTERED));
+            assertEquals(gates - 2, countStatus(distinctPlates, EntryResult.Status.PARKING_FULL));
+        }
+    }
+
+    private static List<EntryResult> enterConcurrently(ParkingEntryDAO parkingEntryDAO, int gates,
+            IntFunction<String> plateOfGate) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<EntryResult>> futures = new ArrayList<>();
+        try {
+            for (int gate = 0; gate < gates; gate++) {
+                String plate = plateOfGate.apply(gate);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return parkingEntryDAO.enterVehicle(ParkingType.CAR, plate, System.currentTimeMillis());
+                }));
+            }
+            start.countDown();
+            List<EntryResult> results = new ArrayList<>();
+            for (Future<EntryResult> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long countStatus(List<EntryResult> results, EntryResult.Status status) {
+        return results.stream().filter(result -> result.getStatus() == status).count();
+    }
+
+    // A restart from a snapshot sees the entries and exits made after the snapshot was taken.
+    @Test
+    public void testWarmStartFromSnapshot() throws Exception {
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        parkingService.enter(ParkingType.CAR, VEHICLE_REG_NUMBER);
+        Path snapshotFile = Files.createTempFile("cache", ".snapshot");
+        try {
+            new CacheSnapshotter(parkingSpotDAO, ticketDAO).snapshot(snapshotFile);
+            parkingService.enter(ParkingType.CAR, "GHIJKL");
+            parkingService.exit(VEHICLE_REG_NUMBER);
+
+            ParkingSpotDAO restartedParkingSpotDAO = new ParkingSpotDAO();
+            TicketDAO restartedTicketDAO = new TicketDAO();
+            restartedParkingSpotDAO.dataBaseConfig = dataBaseTestConfig;
+            restartedTicketDAO.dataBaseConfig = dataBaseTestConfig;
+            assertTrue(new CacheSnapshotter(restartedParkingSpotDAO, restartedTicketDAO).warmStart(snapshotFile));
+
+            assertNull(restartedTicketDAO.getOpenTicket(VEHICLE_REG_NUMBER), "Exit after the snapshot should be caught up");
+            assertEquals(2, restartedTicketDAO.getOpenTicket("GHIJKL").getParkingSpot().getId());
+            assertEquals(1, restartedParkingSpotDAO.getNextAvailableSlot(ParkingType.CAR), "Spot 1 should be free again");
+            assertEquals(1, restartedTicketDAO.getNbTicket(VEHICLE_REG_NUMBER));
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
     // Verifies that the generated fare and exit time are correctly stored  in the database.
     @Test
-    public void testParkingLotExit() {
+    public void testParkingLotExit() throws Exception {
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
         inTime.add(Calendar.HOUR, -1);
         testDataInsertionService.insertTestTicket(VEHICLE_REG_NUMBER, inTime, null, 0);
+        ticketDAO.loadActiveTicketIndex();
 
         parkingService.processExitingVehicle();    
         
@@ -127,7 +240,7 @@ public class ParkingDataBaseIT {
 
     // The price should be the discount price for a recurring user.
     @Test
-    public void testParkingLotExitRecurringUser() throws InterruptedException {
+    public void testParkingLotExitRecurringUser() throws Exception {
         ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
         inTime.add(Calendar.HOUR, -1);
         int entry = 1;
@@ -139,6 +252,7 @@ public class ParkingDataBaseIT {
 
         // final ticket for the vehicle to trigger the discount, only entry is recorded
         testDataInsertionService.insertTestTicket(VEHICLE_REG_NUMBER, inTime, null, 0);
+        ticketDAO.loadActiveTicketIndex();
 
         parkingService.processExitingVehicle();
         
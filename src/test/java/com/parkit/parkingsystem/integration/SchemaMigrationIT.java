@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem.integration;
+
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.integration.service.TestDataInsertionService;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Checks that the migrations are applied to the test database and that the hot queries
+ * are served by an index rather than a full table scan.
+ */
+public class SchemaMigrationIT {
+
+    private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+    private static DataBasePrepareService dataBasePrepareService = new DataBasePrepareService();
+
+    @BeforeAll
+    private static void setUp() throws Exception {
+        new SchemaMigrator(dataBaseTestConfig).migrate();
+        dataBasePrepareService.clearDataBaseEntries();
+
+        TestDataInsertionService testDataInsertionService = new TestDataInsertionService();
+        Calendar inTime = Calendar.getInstance();
+        for (int i = 0; i < 50; i++) {
+            inTime.add(Calendar.HOUR, -1);
+            testDataInsertionService.insertTestTicket("VEHICLE" + i, inTime, null, 0);
+        }
+    }
+
+    @AfterAll
+    private static void tearDown() {
+        dataBasePrepareService.clearDataBaseEntries();
+    }
+
+    /**
+     * @return the access type chosen by MySQL for the given table in the plan of the query.
+     */
+    private String explainAccessType(String query, String table, Object... parameters) throws Exception {
+        Connection con = null;
+        try {
+            con = dataBaseTestConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement("explain " + query);
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            ResultSet rs = ps.executeQuery();
+            String accessType = null;
+            while (rs.next()) {
+                if (table.equals(rs.getString("table"))) {
+                    accessType = rs.getString("type");
+                }
+            }
+            dataBaseTestConfig.closeResultSet(rs);
+            dataBaseTestConfig.closePreparedStatement(ps);
+            return accessType;
+        } finally {
+            dataBaseTestConfig.closeConnection(con);
+        }
+    }
+
+    @Test
+    public void migrationsAreAppliedOnlyOnce() throws Exception {
+        assertEquals(0, new SchemaMigrator(dataBaseTestConfig).migrate());
+    }
+
+    @Test
+    public void getTicketUsesAnIndex() throws Exception {
+        assertNotEquals("ALL", explainAccessType(DBConstants.GET_TICKET, "t", "VEHICLE1"));
+    }
+
+    @Test
+    public void getNbTicketsUsesAnIndex() throws Exception {
+        Timestamp since = new Timestamp(System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000));
+
+        assertNotEquals("ALL", explainAccessType(DBConstants.GET_NB_TICKETS, "ticket", "VEHICLE1", since));
+        assertNotEquals("ALL", explainAccessType(DBConstants.GET_TICKET_IN_TIMES, "ticket", "VEHICLE1", since));
+    }
+
+    @Test
+    public void checkVehicleInWithoutOutUsesAnIndex() throws Exception {
+        assertNotEquals("ALL", explainAccessType(DBConstants.CHECK_VEHICLE_IN_WITHOUT_OUT, "ticket", "VEHICLE1"));
+    }
+
+    @Test
+    public void getNextParkingSpotUsesAnIndex() throws Exception {
+        assertNotEquals("ALL", explainAccessType(DBConstants.GET_NEXT_PARKING_SPOT, "parking", "CAR"));
+    }
+}